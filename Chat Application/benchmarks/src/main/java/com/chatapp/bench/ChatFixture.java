@@ -0,0 +1,58 @@
+package com.chatapp.bench;
+
+import com.chatapp.model.entity.Chat;
+import com.chatapp.model.entity.User;
+import com.chatapp.service.AdminChatService;
+import com.chatapp.service.UserProfileService;
+import com.chatapp.util.HibernateUtil;
+
+import java.io.File;
+
+/**
+ * An active chat with one subscribed sender, in an in-memory database.
+ * Server settings are read once per JVM, so they are set here before any
+ * server class is loaded; each benchmark runs in its own fork.
+ */
+class ChatFixture {
+
+    static {
+        System.setProperty("chatapp.db.url", "jdbc:h2:mem:chatapp-bench;DB_CLOSE_DELAY=-1");
+        System.setProperty("chatapp.db.driver", "org.h2.Driver");
+        System.setProperty("chatapp.db.user", "sa");
+        System.setProperty("chatapp.db.password", "");
+        System.setProperty("chatapp.db.schema", "create");
+        System.setProperty("chatapp.db.showSql", "false");
+        // Measure the path itself, not the limits and batching in front of it
+        System.setProperty("chatapp.rate.messagesPerSecond", "0");
+        System.setProperty("chatapp.rate.membershipPerSecond", "0");
+        System.setProperty("chatapp.delivery.batchWindowMs", "0");
+        System.setProperty("chatapp.delivery.queueCapacity", "65536");
+    }
+
+    final User sender;
+    final Chat chat;
+
+    ChatFixture() {
+        UserProfileService userProfileService = new UserProfileService();
+        AdminChatService adminChatService = new AdminChatService();
+        String name = "bench-" + System.nanoTime();
+        try {
+            sender = userProfileService.register(name + "@bench.test", name, "benchmark", "Bench", null);
+        } catch (Exception e) {
+            throw new IllegalStateException("Could not create the benchmark user", e);
+        }
+        Chat created = adminChatService.createChat(name);
+        adminChatService.subscribeUserToChat(sender, created);
+        chat = adminChatService.startChat(created);
+    }
+
+    /**
+     * Delete the transcript written during the run and close the database
+     */
+    void close() {
+        new AdminChatService().getActiveChat(chat.getId())
+                .map(Chat::getFilePath)
+                .ifPresent(path -> new File(path).delete());
+        HibernateUtil.shutdown();
+    }
+}
@@ -0,0 +1,147 @@
+package com.chatapp.bench;
+
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.PresenceEvent;
+import com.chatapp.rmi.CallbackDispatcher;
+import com.chatapp.rmi.ChatActors;
+import com.chatapp.rmi.ClusterRelay;
+import com.chatapp.rmi.RateLimiter;
+import com.chatapp.rmi.SessionRegistry;
+import com.chatapp.rmi.UserClientCallback;
+import com.chatapp.rmi.UserRemoteImpl;
+import com.chatapp.service.UserProfileService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.rmi.RemoteException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * One chat line through {@link UserRemoteImpl#sendMessage}: session and chat
+ * lookup, transcript append, fan-out, and delivery to every participant's
+ * callback. The callbacks are in-process stubs, so the numbers exclude the
+ * network but include the outbox hand-off to the delivery workers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FanOutBenchmark {
+
+    private static final long FIRST_SYNTHETIC_USER_ID = 1_000_000;
+
+    @Param({"1", "10", "100", "1000"})
+    private int participants;
+
+    private ChatFixture fixture;
+    private UserRemoteImpl service;
+    private final AtomicLong delivered = new AtomicLong();
+    private long expected;
+
+    @Setup(Level.Trial)
+    public void setUp() throws RemoteException {
+        fixture = new ChatFixture();
+
+        SessionRegistry sessions = new SessionRegistry(new UserProfileService());
+        CallbackDispatcher dispatcher = new CallbackDispatcher(sessions);
+        ChatActors chatActors = new ChatActors();
+        service = new UserRemoteImpl(sessions, dispatcher, chatActors, new RateLimiter(),
+                new ClusterRelay(sessions, dispatcher, chatActors));
+
+        // The sender plus stub users that only exist on the server's side of the chat
+        long chatId = fixture.chat.getId();
+        UserClientCallback callback = new CountingCallback(delivered);
+        for (int i = 0; i < participants; i++) {
+            long userId = i == 0 ? fixture.sender.getId() : FIRST_SYNTHETIC_USER_ID + i;
+            dispatcher.register(userId, callback);
+            sessions.joinChat(chatId, userId);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        fixture.close();
+    }
+
+    /**
+     * Send one message and wait until every participant has received it
+     */
+    @Benchmark
+    public void sendAndDeliver() throws RemoteException {
+        expected += participants;
+        service.sendMessage(fixture.sender.getId(), fixture.chat.getId(), "The quick brown fox jumps over the lazy dog");
+        while (delivered.get() < expected) {
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Counts deliveries; shared by all participants
+     */
+    private static class CountingCallback implements UserClientCallback {
+
+        private final AtomicLong delivered;
+
+        CountingCallback(AtomicLong delivered) {
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void receiveMessage(ChatMessage message) {
+            delivered.incrementAndGet();
+        }
+
+        @Override
+        public void receiveMessages(List<ChatMessage> messages) {
+            delivered.addAndGet(messages.size());
+        }
+
+        @Override
+        public void userJoined(PresenceEvent event) {
+        }
+
+        @Override
+        public void userLeft(PresenceEvent event) {
+        }
+
+        @Override
+        public void subscriptionChanged(boolean subscribed, long chatId) {
+        }
+
+        @Override
+        public void chatStarted(ChatSummary chat) {
+        }
+
+        @Override
+        public void chatEnded(ChatSummary chat) {
+        }
+
+        @Override
+        public void deliveryGap(int droppedCount) {
+        }
+
+        @Override
+        public void userRemoved() {
+        }
+
+        @Override
+        public void serverShuttingDown() {
+        }
+    }
+}
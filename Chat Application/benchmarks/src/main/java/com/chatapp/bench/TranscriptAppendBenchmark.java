@@ -0,0 +1,101 @@
+package com.chatapp.bench;
+
+import com.chatapp.model.entity.Chat;
+import com.chatapp.service.UserChatService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of appending one line to a chat transcript.
+ * "service" is what the server does today (open, append, close per line);
+ * the others keep the file open and differ in how the line reaches it. Every
+ * strategy hands each line to the OS before returning, as the service does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TranscriptAppendBenchmark {
+
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final String MESSAGE = "The quick brown fox jumps over the lazy dog";
+
+    @Param({"service", "bufferedWriter", "fileChannel"})
+    private String strategy;
+
+    private Path transcript;
+    private Chat chat;
+    private UserChatService userChatService;
+    private Writer writer;
+    private FileChannel channel;
+    private long sequence;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        transcript = Files.createTempFile("chatapp-transcript", ".txt");
+
+        // With a file path already set the service appends without touching the database
+        chat = new Chat("bench");
+        chat.setFilePath(transcript.toString());
+        userChatService = new UserChatService();
+
+        writer = Files.newBufferedWriter(transcript, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        channel = FileChannel.open(transcript, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        writer.close();
+        channel.close();
+        Files.deleteIfExists(transcript);
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        sequence++;
+        switch (strategy) {
+            case "service":
+                userChatService.appendMessageToChatTranscript(chat, sequence, "Bench", MESSAGE);
+                break;
+            case "bufferedWriter":
+                writer.write(line());
+                writer.flush();
+                break;
+            default:
+                channel.write(ByteBuffer.wrap(line().getBytes(StandardCharsets.UTF_8)));
+                break;
+        }
+    }
+
+    // Same format as the service writes
+    private String line() {
+        String timestamp = LocalDateTime.now().format(TIME_FORMATTER);
+        return String.format("[%s] #%d %s: %s\n", timestamp, sequence, "Bench", MESSAGE);
+    }
+}
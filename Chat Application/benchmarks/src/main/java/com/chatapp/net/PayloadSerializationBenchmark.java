@@ -0,0 +1,84 @@
+package com.chatapp.net;
+
+import com.chatapp.model.dto.ChatMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding one {@link ChatMessage}, as RMI does it (object
+ * streams over its Externalizable form) and as the NIO transport does it
+ * ({@link FrameCodec}). Lives in the codec's package to reach its frame classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PayloadSerializationBenchmark {
+
+    @Param({"16", "256", "4096"})
+    private int payloadChars;
+
+    private ChatMessage message;
+    private byte[] serialized;
+    private byte[] frameBody;
+
+    @Setup
+    public void setUp() throws IOException {
+        char[] text = new char[payloadChars];
+        Arrays.fill(text, 'x');
+        message = new ChatMessage(42, 1234, 7, "Bench", new String(text), System.currentTimeMillis(),
+                "0123456789abcdef0123456789abcdef");
+        serialized = javaWrite();
+
+        ByteBuffer frame = frameWrite();
+        frameBody = Arrays.copyOfRange(frame.array(), FrameCodec.HEADER_BYTES, frame.limit());
+    }
+
+    @Benchmark
+    public byte[] javaWrite() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(message);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Benchmark
+    public Object javaRead() throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+            return in.readObject();
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer frameWrite() throws IOException {
+        FrameCodec.FrameWriter out = new FrameCodec.FrameWriter();
+        out.writeObject(message);
+        return out.toFrame();
+    }
+
+    @Benchmark
+    public Object frameRead() throws IOException {
+        return new FrameCodec.FrameReader(frameBody).readObject();
+    }
+}
@@ -4,6 +4,7 @@ import com.chatapp.gui.LoginFrame;
 import com.chatapp.rmi.RMIServer;
 
 import javax.swing.*;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -31,11 +32,15 @@ public class ChatApp {
         startServer(executor);
 
         try {
-            // Wait for server to fully initialize
+            // Wait until the server is bound and listening, however long that takes
             System.out.println("Waiting for server to initialize...");
-            Thread.sleep(3000); // 3-second delay
+            RMIServer.ready().get();
+        } catch (ExecutionException e) {
+            System.err.println("Server failed to start, not opening the client: " + e.getCause().getMessage());
+            System.exit(1);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
+            return;
         }
 
         // Then start the client
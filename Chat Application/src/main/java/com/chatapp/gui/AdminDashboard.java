@@ -1,8 +1,14 @@
 package com.chatapp.gui;
 
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.CompressionStats;
+import com.chatapp.model.dto.PresenceEvent;
+import com.chatapp.model.dto.UserSummary;
 import com.chatapp.rmi.AdminClientCallback;
 import com.chatapp.rmi.AdminRemoteInterface;
+import com.chatapp.rmi.CompressingSocketFactory;
 import com.chatapp.rmi.UserClientCallback;
+import com.chatapp.util.TimeUtil;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -16,7 +22,6 @@ import java.awt.event.WindowEvent;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.List;
-import java.util.Map;
 import java.util.Vector;
 
 /**
@@ -30,6 +35,7 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
     private final long adminId;
     private final AdminRemoteInterface adminService;
     private AdminClientCallback callbackStub;
+    private LeaseRenewer leaseRenewer;
 
     private JTabbedPane tabbedPane;
     private JTable usersTable;
@@ -43,6 +49,8 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
     private JButton unsubscribeUserButton;
     private JButton removeUserButton;
     private JButton refreshButton;
+    private DefaultTableModel trafficTableModel;
+    private JLabel compressionLabel;
 
     private boolean isInChat = false;
     private ChatFrame chatFrame;
@@ -59,14 +67,21 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
 
     private void setupCallbacks() {
         try {
-            callbackStub = (AdminClientCallback) UnicastRemoteObject.exportObject(this, 0);
+            callbackStub = (AdminClientCallback) UnicastRemoteObject.exportObject(this, 0,
+                    CompressingSocketFactory.forExport(), CompressingSocketFactory.forExport());
             adminService.registerAdminClient(adminId, callbackStub);
 
+            // Renew the server-side lease so this client isn't expired as dead
+            leaseRenewer = new LeaseRenewer(() -> adminService.renewAdminLease(adminId),
+                    () -> adminService.registerAdminClient(adminId, callbackStub));
+            leaseRenewer.start();
+
             // Add shutdown hook to unregister client
             addWindowListener(new WindowAdapter() {
                 @Override
                 public void windowClosing(WindowEvent e) {
                     try {
+                        leaseRenewer.stop();
                         adminService.unregisterAdminClient(adminId);
                         UnicastRemoteObject.unexportObject(AdminDashboard.this, true);
                     } catch (Exception ex) {
@@ -100,6 +115,10 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
         JPanel chatsPanel = createChatsPanel();
         tabbedPane.addTab("Chats", chatsPanel);
 
+        // Create Traffic panel
+        JPanel trafficPanel = createTrafficPanel();
+        tabbedPane.addTab("Traffic", trafficPanel);
+
         getContentPane().add(tabbedPane);
     }
 
@@ -277,26 +296,61 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
         return panel;
     }
 
+    private JPanel createTrafficPanel() {
+        JPanel panel = new JPanel(new BorderLayout(10, 10));
+        panel.setBorder(new EmptyBorder(10, 10, 10, 10));
+
+        compressionLabel = new JLabel(" ");
+        panel.add(compressionLabel, BorderLayout.NORTH);
+
+        // Bytes through the server's compressing sockets, before and after compression
+        String[] columnNames = {"Direction", "Raw Bytes", "Wire Bytes", "Wire / Raw"};
+        trafficTableModel = new DefaultTableModel(columnNames, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) {
+                return false;
+            }
+        };
+
+        JTable trafficTable = new JTable(trafficTableModel);
+        panel.add(new JScrollPane(trafficTable), BorderLayout.CENTER);
+
+        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton refreshTrafficButton = new JButton("Refresh");
+        buttonsPanel.add(refreshTrafficButton);
+        panel.add(buttonsPanel, BorderLayout.SOUTH);
+
+        refreshTrafficButton.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                loadTrafficData();
+            }
+        });
+
+        return panel;
+    }
+
     private void loadData() {
         loadUsersData();
         loadChatsData();
+        loadTrafficData();
     }
 
     private void loadUsersData() {
         try {
-            List<Map<String, Object>> users = adminService.getAllUsers();
+            List<UserSummary> users = adminService.getAllUsers();
 
             // Clear table model
             usersTableModel.setRowCount(0);
 
             // Add users to table
-            for (Map<String, Object> user : users) {
+            for (UserSummary user : users) {
                 Vector<Object> row = new Vector<>();
-                row.add(user.get("id"));
-                row.add(user.get("email"));
-                row.add(user.get("username"));
-                row.add(user.get("nickName"));
-                row.add(user.get("isAdmin"));
+                row.add(user.getId());
+                row.add(user.getEmail());
+                row.add(user.getUsername());
+                row.add(user.getNickName());
+                row.add(user.isAdmin());
 
                 usersTableModel.addRow(row);
             }
@@ -310,23 +364,22 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
 
     private void loadChatsData() {
         try {
-            List<Map<String, Object>> chats = adminService.getAdminChatList();
+            List<ChatSummary> chats = adminService.getAdminChatList();
 
             // Clear table model
             chatsTableModel.setRowCount(0);
 
             // Add chats to table
-            for (Map<String, Object> chat : chats) {
+            for (ChatSummary chat : chats) {
                 Vector<Object> row = new Vector<>();
-                row.add(chat.get("id"));
-                row.add(chat.get("name"));
-                row.add(chat.get("createdAt"));
+                row.add(chat.getId());
+                row.add(chat.getName());
+                row.add(TimeUtil.format(chat.getCreatedAt()));
 
-                boolean isActive = (boolean) chat.get("isActive");
-                String status = isActive ? "Active" : "Inactive";
+                String status = chat.isActive() ? "Active" : "Inactive";
                 row.add(status);
 
-                row.add(chat.get("subscriberCount"));
+                row.add(chat.getSubscriberCount());
 
                 chatsTableModel.addRow(row);
             }
@@ -338,6 +391,34 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
         }
     }
 
+    private void loadTrafficData() {
+        try {
+            CompressionStats stats = adminService.getCompressionStats();
+
+            compressionLabel.setText(stats.isEnabled()
+                    ? String.format("Compression is on; wire / raw over both directions: %.2f", stats.getRatio())
+                    : "Compression is off (start the server with -Dchatapp.rmi.compress=true)");
+
+            trafficTableModel.setRowCount(0);
+            trafficTableModel.addRow(trafficRow("Sent", stats.getRawBytesWritten(), stats.getWireBytesWritten()));
+            trafficTableModel.addRow(trafficRow("Received", stats.getRawBytesRead(), stats.getWireBytesRead()));
+        } catch (RemoteException e) {
+            JOptionPane.showMessageDialog(this,
+                    "Failed to load traffic stats: " + e.getMessage(),
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    private static Vector<Object> trafficRow(String direction, long rawBytes, long wireBytes) {
+        Vector<Object> row = new Vector<>();
+        row.add(direction);
+        row.add(rawBytes);
+        row.add(wireBytes);
+        row.add(rawBytes == 0 ? "-" : String.format("%.2f", (double) wireBytes / rawBytes));
+        return row;
+    }
+
     private void removeSelectedUser() {
         int selectedRow = usersTable.getSelectedRow();
         if (selectedRow == -1) {
@@ -528,7 +609,7 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
         long chatId = (long) chatsTableModel.getValueAt(selectedRow, 0);
 
         try {
-            List<Map<String, Object>> users = adminService.getAllUsers();
+            List<UserSummary> users = adminService.getAllUsers();
             if (users.isEmpty()) {
                 JOptionPane.showMessageDialog(this,
                         "No users available",
@@ -541,9 +622,9 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
             long[] userIds = new long[users.size()];
 
             for (int i = 0; i < users.size(); i++) {
-                Map<String, Object> user = users.get(i);
-                userNames[i] = user.get("username") + " (" + user.get("nickName") + ")";
-                userIds[i] = (long) user.get("id");
+                UserSummary user = users.get(i);
+                userNames[i] = user.getUsername() + " (" + user.getNickName() + ")";
+                userIds[i] = user.getId();
             }
 
             String selectedUser = (String) JOptionPane.showInputDialog(
@@ -593,21 +674,21 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
 
     // AdminClientCallback implementation
     @Override
-    public void userJoinedChat(Map<String, Object> userData) throws RemoteException {
+    public void userJoinedChat(PresenceEvent event) throws RemoteException {
         // Update UI or show notification as needed
         loadChatsData(); // Refresh to show updated subscriber count
     }
 
     @Override
-    public void userLeftChat(Map<String, Object> userData) throws RemoteException {
+    public void userLeftChat(PresenceEvent event) throws RemoteException {
         // Update UI or show notification as needed
         loadChatsData(); // Refresh to show updated subscriber count
     }
 
     @Override
-    public void chatStarted(Map<String, Object> chatData) throws RemoteException {
-        String chatName = (String) chatData.get("chatName");
-        String startTime = (String) chatData.get("startTime");
+    public void chatStarted(ChatSummary chat) throws RemoteException {
+        String chatName = chat.getName();
+        String startTime = TimeUtil.format(chat.getStartedAt());
 
         JOptionPane.showMessageDialog(this,
                 "Chat '" + chatName + "' has started at " + startTime,
@@ -618,9 +699,9 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
     }
 
     @Override
-    public void chatEnded(Map<String, Object> chatData) throws RemoteException {
-        String chatName = (String) chatData.get("chatName");
-        String endTime = (String) chatData.get("endTime");
+    public void chatEnded(ChatSummary chat) throws RemoteException {
+        String chatName = chat.getName();
+        String endTime = TimeUtil.format(chat.getEndedAt());
 
         JOptionPane.showMessageDialog(this,
                 "Chat '" + chatName + "' has ended at " + endTime,
@@ -631,11 +712,11 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
     }
 
     @Override
-    public void userRegistered(Map<String, Object> userData) throws RemoteException {
+    public void userRegistered(UserSummary user) throws RemoteException {
         // Load user data to show the newly registered user
         loadUsersData();
 
-        String username = (String) userData.get("username");
+        String username = user.getUsername();
         JOptionPane.showMessageDialog(this,
                 "New user registered: " + username,
                 "User Registered",
@@ -643,11 +724,24 @@ public class AdminDashboard extends JFrame implements AdminClientCallback {
     }
 
     @Override
-    public void chatActivityUpdate(Map<String, Object> activityData) throws RemoteException {
+    public void chatActivityUpdate(ChatSummary chat) throws RemoteException {
         // Update any activity metrics or refresh the chat list
         loadChatsData();
     }
 
+    @Override
+    public void serverShuttingDown() throws RemoteException {
+        if (leaseRenewer != null) {
+            leaseRenewer.stop();
+        }
+
+        // Not shown from the callback itself, so the server isn't kept waiting until the dialog is closed
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                "The chat server is shutting down.",
+                "Server Shutting Down",
+                JOptionPane.WARNING_MESSAGE));
+    }
+
 
     public void chatClosed() {
         isInChat = false;
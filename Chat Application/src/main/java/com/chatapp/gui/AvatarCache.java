@@ -0,0 +1,107 @@
+package com.chatapp.gui;
+
+import com.chatapp.model.dto.AvatarImage;
+import com.chatapp.rmi.UserRemoteInterface;
+
+import javax.swing.*;
+import java.awt.*;
+import java.rmi.RemoteException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client-side cache of profile pictures keyed by content hash.
+ * Messages and presence events carry the sender's avatar hash, so a picture
+ * is only downloaded the first time that hash is seen.
+ */
+public class AvatarCache {
+
+    private static final int ICON_SIZE = 20;
+    private static final int MAX_ENTRIES = Integer.getInteger("chatapp.avatarCache.maxEntries", 512);
+
+    private final UserRemoteInterface userService;
+
+    // Least recently used icons are evicted once the cache is full
+    private final Map<String, ImageIcon> iconsByHash = new LinkedHashMap<String, ImageIcon>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ImageIcon> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    // Last hash downloaded for each user, sent back as the known hash on the next fetch
+    private final Map<Long, String> hashByUser = new ConcurrentHashMap<>();
+
+    // Hashes with a fetch in flight, so a burst of messages triggers one download
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public AvatarCache(UserRemoteInterface userService) {
+        this.userService = userService;
+    }
+
+    /**
+     * Get the icon for a picture hash, or null if it has not been downloaded
+     */
+    public ImageIcon getIcon(String hash) {
+        if (hash == null) {
+            return null;
+        }
+        synchronized (iconsByHash) {
+            return iconsByHash.get(hash);
+        }
+    }
+
+    /**
+     * Download the pictures of the given users that are not cached yet, keyed by
+     * user id with the hash they advertised. Runs in the background.
+     */
+    public void prefetch(Map<Long, String> advertisedHashes) {
+        Map<Long, String> knownHashes = new HashMap<>();
+        for (Map.Entry<Long, String> entry : advertisedHashes.entrySet()) {
+            String hash = entry.getValue();
+            if (hash != null && getIcon(hash) == null && pending.add(hash)) {
+                String previous = hashByUser.get(entry.getKey());
+                knownHashes.put(entry.getKey(), getIcon(previous) != null ? previous : null);
+            }
+        }
+
+        if (knownHashes.isEmpty()) {
+            return;
+        }
+
+        new SwingWorker<Void, Void>() {
+            @Override
+            protected Void doInBackground() {
+                try {
+                    List<AvatarImage> avatars = userService.getUserProfilePictures(knownHashes);
+                    for (AvatarImage avatar : avatars) {
+                        hashByUser.put(avatar.getUserId(), avatar.getContentHash());
+                        if (!avatar.isNotModified()) {
+                            put(avatar.getContentHash(), avatar.getImageData());
+                        }
+                    }
+                } catch (RemoteException e) {
+                    System.err.println("Failed to load profile pictures: " + e.getMessage());
+                } finally {
+                    for (Map.Entry<Long, String> entry : advertisedHashes.entrySet()) {
+                        if (knownHashes.containsKey(entry.getKey())) {
+                            pending.remove(entry.getValue());
+                        }
+                    }
+                }
+                return null;
+            }
+        }.execute();
+    }
+
+    private void put(String hash, byte[] imageData) {
+        Image image = new ImageIcon(imageData).getImage().getScaledInstance(ICON_SIZE, ICON_SIZE, Image.SCALE_SMOOTH);
+        synchronized (iconsByHash) {
+            iconsByHash.put(hash, new ImageIcon(image));
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.chatapp.gui;
 
+import com.chatapp.model.dto.ChatMessage;
 import com.chatapp.rmi.UserRemoteInterface;
 import com.chatapp.rmi.AdminRemoteInterface;
+import com.chatapp.util.TimeUtil;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
@@ -15,6 +17,10 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.rmi.RemoteException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Chat Interface GUI for the Chat Application
@@ -42,6 +48,11 @@ public class ChatFrame extends JFrame {
     private SimpleAttributeSet systemStyle;
     private SimpleAttributeSet selfStyle;
 
+    private AvatarCache avatarCache;
+
+    // Highest message sequence shown so far; written on the event dispatch thread only
+    private volatile long lastSequence = 0;
+
     /**
      * Constructor for ChatFrame that works with either user or admin service
      */
@@ -67,6 +78,33 @@ public class ChatFrame extends JFrame {
         });
     }
 
+    public long getChatId() {
+        return chatId;
+    }
+
+    /**
+     * Sequence of the latest message shown, for resuming after a reconnect
+     */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * Show senders' profile pictures next to their messages
+     */
+    public void setAvatarCache(AvatarCache avatarCache) {
+        this.avatarCache = avatarCache;
+    }
+
+    /**
+     * Start downloading a participant's picture before their first message arrives
+     */
+    public void prefetchAvatar(long userId, String avatarHash) {
+        if (avatarCache != null && avatarHash != null) {
+            avatarCache.prefetch(Collections.singletonMap(userId, avatarHash));
+        }
+    }
+
     private void initStyles() {
         userStyle = new SimpleAttributeSet();
         StyleConstants.setForeground(userStyle, Color.BLUE);
@@ -150,7 +188,7 @@ public class ChatFrame extends JFrame {
                         appendSystemMessage("Admin messaging not implemented in this version");
                     } else {
                         // User message sending
-                        ((UserRemoteInterface)remoteService).sendMessage(userId, message);
+                        ((UserRemoteInterface)remoteService).sendMessage(userId, chatId, message);
                     }
 
                     // If message is "Bye", close the chat window
@@ -182,7 +220,7 @@ public class ChatFrame extends JFrame {
 
                     } else {
                         // User leaving chat
-                        ((UserRemoteInterface)remoteService).leaveChat(userId);
+                        ((UserRemoteInterface)remoteService).leaveChat(userId, chatId);
                     }
                 } catch (RemoteException e) {
                     // Log error but continue with closing
@@ -202,7 +240,7 @@ public class ChatFrame extends JFrame {
         if (parent instanceof AdminDashboard) {
             ((AdminDashboard) parent).chatClosed();
         } else if (parent instanceof UserDashboard) {
-            ((UserDashboard) parent).chatClosed();
+            ((UserDashboard) parent).chatClosed(this);
         }
     }
 
@@ -216,6 +254,54 @@ public class ChatFrame extends JFrame {
         appendToChat(message + "\n", null);
     }
 
+    /**
+     * Render a batch of messages in a single pass on the event dispatch thread
+     */
+    public void appendUserMessages(List<ChatMessage> messages) {
+        SwingUtilities.invokeLater(() -> {
+            Document doc = chatTextPane.getDocument();
+            Map<Long, String> missingAvatars = new HashMap<>();
+            try {
+                for (ChatMessage message : messages) {
+                    // A replay after reconnecting can overlap messages already shown
+                    if (message.getSequence() > 0) {
+                        if (message.getSequence() <= lastSequence) {
+                            continue;
+                        }
+                        lastSequence = message.getSequence();
+                    }
+
+                    String userName = message.getNickName();
+                    SimpleAttributeSet style = userName.equals(nickName) ? selfStyle : userStyle;
+                    doc.insertString(doc.getLength(), "[" + TimeUtil.format(message.getTimestamp()) + "] ", style);
+
+                    if (avatarCache != null && message.hasProfilePicture()) {
+                        ImageIcon icon = avatarCache.getIcon(message.getAvatarHash());
+                        if (icon != null) {
+                            SimpleAttributeSet iconStyle = new SimpleAttributeSet();
+                            StyleConstants.setIcon(iconStyle, icon);
+                            doc.insertString(doc.getLength(), " ", iconStyle);
+                            doc.insertString(doc.getLength(), " ", null);
+                        } else {
+                            missingAvatars.put(message.getUserId(), message.getAvatarHash());
+                        }
+                    }
+
+                    doc.insertString(doc.getLength(), userName + ": ", style);
+                    doc.insertString(doc.getLength(), message.getMessage() + "\n", null);
+                }
+                chatTextPane.setCaretPosition(doc.getLength());
+            } catch (BadLocationException e) {
+                e.printStackTrace();
+            }
+
+            // Pictures not cached yet show up from the sender's next message
+            if (!missingAvatars.isEmpty()) {
+                avatarCache.prefetch(missingAvatars);
+            }
+        });
+    }
+
     public void appendToChat(String text, SimpleAttributeSet style) {
         Document doc = chatTextPane.getDocument();
         try {
@@ -0,0 +1,71 @@
+package com.chatapp.gui;
+
+import java.rmi.RemoteException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a dashboard's callback registration alive on the server.
+ * Renews the lease at a third of the duration the server reports, and
+ * registers again if the server says the lease has already lapsed.
+ */
+public class LeaseRenewer {
+
+    private static final long RETRY_DELAY_MILLIS = 5_000;
+
+    /**
+     * Renews the lease, returning its duration or 0 if it lapsed
+     */
+    public interface Renewal {
+        long renew() throws RemoteException;
+    }
+
+    /**
+     * Registers the callback again after a lapsed lease
+     */
+    public interface Registration {
+        void register() throws RemoteException;
+    }
+
+    private final Renewal renewal;
+    private final Registration registration;
+    private final ScheduledExecutorService scheduler;
+
+    public LeaseRenewer(Renewal renewal, Registration registration) {
+        this.renewal = renewal;
+        this.registration = registration;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler.execute(this::renew);
+    }
+
+    public void stop() {
+        scheduler.shutdownNow();
+    }
+
+    private void renew() {
+        long nextDelay;
+        try {
+            long leaseMillis = renewal.renew();
+            if (leaseMillis == 0) {
+                registration.register();
+                leaseMillis = renewal.renew();
+            }
+            nextDelay = leaseMillis > 0 ? leaseMillis / 3 : RETRY_DELAY_MILLIS;
+        } catch (RemoteException e) {
+            System.err.println("Failed to renew lease: " + e.getMessage());
+            nextDelay = RETRY_DELAY_MILLIS;
+        }
+
+        if (!scheduler.isShutdown()) {
+            scheduler.schedule(this::renew, nextDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
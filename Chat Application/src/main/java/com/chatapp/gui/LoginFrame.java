@@ -1,13 +1,19 @@
 package com.chatapp.gui;
 
+import com.chatapp.model.dto.UserSummary;
+import com.chatapp.net.ClusterBus;
+import com.chatapp.net.NioUserClient;
 import com.chatapp.rmi.AdminRemoteInterface;
 import com.chatapp.rmi.UserRemoteInterface;
+import com.chatapp.util.ConsistentHashRing;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
@@ -22,9 +28,15 @@ public class LoginFrame extends JFrame {
     private static final int width = 500;
     private static final int height = 350;
     private static final String Rmihost = "localhost";
-    private static final int rmiport = 1099;
+    private static final int rmiport = Integer.getInteger("chatapp.rmi.port", 1099);
     private static final String userservicename = "UserService";
     private static final String adminservicename = "AdminService";
+    // Set chatapp.transport=nio to reach the user service over the NIO listener instead of RMI
+    private static final boolean useNio = "nio".equalsIgnoreCase(System.getProperty("chatapp.transport"));
+    private static final int nioport = Integer.getInteger("chatapp.nio.port", 1100);
+    // RMI registries of the cluster's nodes ("1=host:port,2=host:port"); users log in on the node their name hashes to
+    private static final Map<Integer, InetSocketAddress> clusterServers =
+            ClusterBus.parseNodes(System.getProperty("chatapp.cluster.servers", ""));
 
     private JTextField usernameField;
     private JPasswordField passwordField;
@@ -45,9 +57,11 @@ public class LoginFrame extends JFrame {
     private void initializeRMI() {
         try {
             Registry registry = LocateRegistry.getRegistry(Rmihost, rmiport);
-            userService = (UserRemoteInterface) registry.lookup(userservicename);
+            userService = useNio
+                    ? NioUserClient.connect(Rmihost, nioport)
+                    : (UserRemoteInterface) registry.lookup(userservicename);
             adminService = (AdminRemoteInterface) registry.lookup(adminservicename);
-        } catch (RemoteException | NotBoundException e) {
+        } catch (IOException | NotBoundException e) {
             JOptionPane.showMessageDialog(this,
                     "Failed to connect to the chat server: " + e.getMessage(),
                     "Connection Error",
@@ -133,14 +147,15 @@ public class LoginFrame extends JFrame {
         }
 
         try {
-            Map<String, Object> userData = userService.login(username, password);
+            UserRemoteInterface nodeService = userServiceFor(username);
+            UserSummary userData = nodeService.login(username, password);
 
             // Open user dashboard
-            long userId = (long) userData.get("id");
-            String nickName = (String) userData.get("nickName");
+            long userId = userData.getId();
+            String nickName = userData.getNickName();
 
             SwingUtilities.invokeLater(() -> {
-                new UserDashboard(userId, userService, nickName);
+                new UserDashboard(userId, nodeService, nickName);
                 dispose(); // Close the login window
             });
 
@@ -149,6 +164,29 @@ public class LoginFrame extends JFrame {
         }
     }
 
+    /**
+     * The user service of the cluster node a user belongs on, or of the
+     * configured server when there is no cluster or that node is down
+     */
+    private UserRemoteInterface userServiceFor(String username) {
+        if (clusterServers.isEmpty()) {
+            return userService;
+        }
+        int[] nodeIds = clusterServers.keySet().stream().mapToInt(Integer::intValue).toArray();
+        int node = new ConsistentHashRing(nodeIds).ownerOf(username);
+        InetSocketAddress server = clusterServers.get(node);
+        try {
+            if (useNio) {
+                return NioUserClient.connect(server.getHostString(), nioport);
+            }
+            Registry registry = LocateRegistry.getRegistry(server.getHostString(), server.getPort());
+            return (UserRemoteInterface) registry.lookup(userservicename);
+        } catch (IOException | NotBoundException e) {
+            System.err.println("Cluster node " + node + " is unavailable, using " + Rmihost + ": " + e.getMessage());
+            return userService;
+        }
+    }
+
     private void handleAdminLogin() {
         String username = usernameField.getText().trim();
         String password = new String(passwordField.getPassword());
@@ -159,10 +197,10 @@ public class LoginFrame extends JFrame {
         }
 
         try {
-            Map<String, Object> adminData = adminService.adminLogin(username, password);
+            UserSummary adminData = adminService.adminLogin(username, password);
 
             // Open admin dashboard
-            long adminId = (long) adminData.get("id");
+            long adminId = adminData.getId();
 
             SwingUtilities.invokeLater(() -> {
                 new AdminDashboard(adminId, adminService);
@@ -1,7 +1,14 @@
 package com.chatapp.gui;
 
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.PresenceEvent;
+import com.chatapp.model.dto.UserSummary;
+import com.chatapp.net.NioUserClient;
+import com.chatapp.rmi.CompressingSocketFactory;
 import com.chatapp.rmi.UserClientCallback;
 import com.chatapp.rmi.UserRemoteInterface;
+import com.chatapp.util.TimeUtil;
 
 import javax.imageio.ImageIO;
 import javax.swing.*;
@@ -20,9 +27,13 @@ import java.io.File;
 import java.io.IOException;
 import java.rmi.RemoteException;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * User Dashboard GUI for the Chat Application
@@ -36,6 +47,7 @@ public class UserDashboard extends JFrame implements UserClientCallback {
     private final UserRemoteInterface userService;
     private final String nickName;
     private UserClientCallback callbackStub;
+    private LeaseRenewer leaseRenewer;
 
     private JTabbedPane tabbedPane;
     private JTable chatsTable;
@@ -51,12 +63,14 @@ public class UserDashboard extends JFrame implements UserClientCallback {
     private JLabel imageLabel;
     private byte[] profilePictureBytes;
 
-    private boolean isInChat = false;
-    private ChatFrame chatFrame;
+    // Open chat windows, keyed by chat id
+    private final Map<Long, ChatFrame> chatFrames = new ConcurrentHashMap<>();
+    private AvatarCache avatarCache;
 
     public UserDashboard(long userId, UserRemoteInterface userService, String nickName) {
         this.userId = userId;
         this.userService = userService;
+        this.avatarCache = new AvatarCache(userService);
         this.nickName = nickName;
 
         setupCallbacks();
@@ -67,23 +81,37 @@ public class UserDashboard extends JFrame implements UserClientCallback {
 
     private void setupCallbacks() {
         try {
-            callbackStub = (UserClientCallback) UnicastRemoteObject.exportObject(this, 0);
+            // Over the NIO transport callbacks arrive on the client's own connection
+            callbackStub = NioUserClient.isNioClient(userService)
+                    ? this
+                    : (UserClientCallback) UnicastRemoteObject.exportObject(this, 0,
+                            CompressingSocketFactory.forExport(), CompressingSocketFactory.forExport());
             userService.registerClient(userId, callbackStub);
 
+            // Renew the server-side lease so this client isn't expired as dead
+            leaseRenewer = new LeaseRenewer(() -> userService.renewLease(userId), () -> {
+                userService.registerClient(userId, callbackStub);
+                resumeOpenChats();
+            });
+            leaseRenewer.start();
+
             // Add shutdown hook to unregister client
             addWindowListener(new WindowAdapter() {
                 @Override
                 public void windowClosing(WindowEvent e) {
                     try {
+                        leaseRenewer.stop();
                         userService.unregisterClient(userId);
-                        if (isInChat) {
+                        for (Long chatId : chatFrames.keySet()) {
                             try {
-                                userService.leaveChat(userId);
+                                userService.leaveChat(userId, chatId);
                             } catch (Exception ex) {
                                 // Ignore if already left
                             }
                         }
-                        UnicastRemoteObject.unexportObject(UserDashboard.this, true);
+                        if (callbackStub != UserDashboard.this) {
+                            UnicastRemoteObject.unexportObject(UserDashboard.this, true);
+                        }
                     } catch (Exception ex) {
                         ex.printStackTrace();
                     }
@@ -98,6 +126,19 @@ public class UserDashboard extends JFrame implements UserClientCallback {
         }
     }
 
+    /**
+     * After registering again, ask for whatever each open chat missed while we were away
+     */
+    private void resumeOpenChats() {
+        for (ChatFrame chatFrame : chatFrames.values()) {
+            try {
+                userService.resume(userId, chatFrame.getChatId(), chatFrame.getLastSequence());
+            } catch (RemoteException e) {
+                chatFrame.appendSystemMessage("Could not catch up on missed messages: " + e.getMessage());
+            }
+        }
+    }
+
     private void setupUI() {
         setTitle("Chat Application - User Dashboard");
         setSize(WIDTH, HEIGHT);
@@ -152,7 +193,7 @@ public class UserDashboard extends JFrame implements UserClientCallback {
 
         // Create buttons panel
         JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 10, 10));
-        joinChatButton = new JButton("Join Active Chat");
+        joinChatButton = new JButton("Join Selected Chat");
         subscribeButton = new JButton("Subscribe to Chat");
         unsubscribeButton = new JButton("Unsubscribe from Chat");
         JButton refreshButton = new JButton("Refresh");
@@ -168,7 +209,7 @@ public class UserDashboard extends JFrame implements UserClientCallback {
         joinChatButton.addActionListener(new ActionListener() {
             @Override
             public void actionPerformed(ActionEvent e) {
-                joinActiveChat();
+                joinSelectedChat();
             }
         });
 
@@ -294,9 +335,9 @@ public class UserDashboard extends JFrame implements UserClientCallback {
 
     private void loadUserProfile() {
         try {
-            Map<String, Object> profile = userService.getUserProfile(userId);
-            usernameField.setText((String) profile.get("username"));
-            nickNameField.setText((String) profile.get("nickName"));
+            UserSummary profile = userService.getUserProfile(userId);
+            usernameField.setText(profile.getUsername());
+            nickNameField.setText(profile.getNickName());
 
         } catch (RemoteException e) {
             JOptionPane.showMessageDialog(this,
@@ -308,20 +349,19 @@ public class UserDashboard extends JFrame implements UserClientCallback {
 
     private void loadChatsData() {
         try {
-            List<Map<String, Object>> chats = userService.getAllChats();
+            List<ChatSummary> chats = userService.getAllChats();
 
             // Clear table model
             chatsTableModel.setRowCount(0);
 
             // Add chats to table
-            for (Map<String, Object> chat : chats) {
+            for (ChatSummary chat : chats) {
                 Vector<Object> row = new Vector<>();
-                row.add(chat.get("id"));
-                row.add(chat.get("name"));
-                row.add(chat.get("createdAt"));
+                row.add(chat.getId());
+                row.add(chat.getName());
+                row.add(TimeUtil.format(chat.getCreatedAt()));
 
-                boolean isActive = (boolean) chat.get("isActive");
-                String status = isActive ? "Active" : "Inactive";
+                String status = chat.isActive() ? "Active" : "Inactive";
                 row.add(status);
 
                 chatsTableModel.addRow(row);
@@ -334,27 +374,36 @@ public class UserDashboard extends JFrame implements UserClientCallback {
         }
     }
 
-    private void joinActiveChat() {
-        if (isInChat) {
+    private void joinSelectedChat() {
+        int selectedRow = chatsTable.getSelectedRow();
+        if (selectedRow == -1) {
             JOptionPane.showMessageDialog(this,
-                    "You are already in a chat",
-                    "Information",
-                    JOptionPane.INFORMATION_MESSAGE);
+                    "Please select an active chat to join",
+                    "Selection Required",
+                    JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+
+        long selectedChatId = (long) chatsTableModel.getValueAt(selectedRow, 0);
+        ChatFrame openFrame = chatFrames.get(selectedChatId);
+        if (openFrame != null) {
+            openFrame.toFront();
             return;
         }
 
         try {
-            Map<String, Object> chatData = userService.joinChat(userId);
+            ChatSummary chatData = userService.joinChat(userId, selectedChatId);
 
-            String chatName = (String) chatData.get("chatName");
-            long chatId = (long) chatData.get("chatId");
-            String startTime = (String) chatData.get("startTime");
+            String chatName = chatData.getName();
+            long chatId = chatData.getId();
+            String startTime = TimeUtil.format(chatData.getStartedAt());
 
             // Add the missing isAdmin parameter (false for regular users)
-            chatFrame = new ChatFrame(chatId, chatName, userId, nickName, userService, this, false);
+            ChatFrame chatFrame = new ChatFrame(chatId, chatName, userId, nickName, userService, this, false);
+            chatFrame.setAvatarCache(avatarCache);
             chatFrame.appendSystemMessage("Chat started at: " + startTime);
+            chatFrames.put(chatId, chatFrame);
             chatFrame.setVisible(true);
-            isInChat = true;
 
         } catch (RemoteException e) {
             JOptionPane.showMessageDialog(this,
@@ -529,47 +578,62 @@ public class UserDashboard extends JFrame implements UserClientCallback {
         }
     }
 
-    public void chatClosed() {
-        isInChat = false;
-        chatFrame = null;
+    public void chatClosed(ChatFrame chatFrame) {
+        chatFrames.remove(chatFrame.getChatId(), chatFrame);
     }
 
     // UserClientCallback implementation
     @Override
-    public void receiveMessage(Map<String, Object> messageData) throws RemoteException {
-        if (isInChat && chatFrame != null) {
-            String nickName = (String) messageData.get("nickName");
-            String message = (String) messageData.get("message");
-            String timestamp = (String) messageData.get("timestamp");
+    public void receiveMessage(ChatMessage message) throws RemoteException {
+        ChatFrame chatFrame = chatFrames.get(message.getChatId());
+        if (chatFrame != null) {
+            chatFrame.appendUserMessages(Collections.singletonList(message));
+        }
+    }
+
+    @Override
+    public void receiveMessages(List<ChatMessage> messages) throws RemoteException {
+        // A batch can mix chats; hand each window its own messages in order
+        Map<Long, List<ChatMessage>> messagesByChat = new LinkedHashMap<>();
+        for (ChatMessage message : messages) {
+            messagesByChat.computeIfAbsent(message.getChatId(), id -> new ArrayList<>()).add(message);
+        }
 
-            chatFrame.appendUserMessage(nickName, message, timestamp);
+        for (Map.Entry<Long, List<ChatMessage>> entry : messagesByChat.entrySet()) {
+            ChatFrame chatFrame = chatFrames.get(entry.getKey());
+            if (chatFrame != null) {
+                chatFrame.appendUserMessages(entry.getValue());
+            }
         }
     }
 
     @Override
-    public void userJoined(Map<String, Object> userData) throws RemoteException {
-        if (isInChat && chatFrame != null) {
-            String nickName = (String) userData.get("nickName");
-            String timestamp = (String) userData.get("timestamp");
+    public void userJoined(PresenceEvent event) throws RemoteException {
+        ChatFrame chatFrame = chatFrames.get(event.getChatId());
+        if (chatFrame != null) {
+            String nickName = event.getNickName();
+            String timestamp = TimeUtil.format(event.getTimestamp());
 
             chatFrame.appendSystemMessage("\"" + nickName + "\" has joined : " + timestamp);
+            chatFrame.prefetchAvatar(event.getUserId(), event.getAvatarHash());
         }
     }
 
     @Override
-    public void userLeft(Map<String, Object> userData) throws RemoteException {
-        if (isInChat && chatFrame != null) {
-            String nickName = (String) userData.get("nickName");
-            String timestamp = (String) userData.get("timestamp");
+    public void userLeft(PresenceEvent event) throws RemoteException {
+        ChatFrame chatFrame = chatFrames.get(event.getChatId());
+        if (chatFrame != null) {
+            String nickName = event.getNickName();
+            String timestamp = TimeUtil.format(event.getTimestamp());
 
             chatFrame.appendSystemMessage("\"" + nickName + "\" left : " + timestamp);
         }
     }
 
     @Override
-    public void chatStarted(Map<String, Object> chatData) throws RemoteException {
-        String chatName = (String) chatData.get("chatName");
-        String startTime = (String) chatData.get("startTime");
+    public void chatStarted(ChatSummary chat) throws RemoteException {
+        String chatName = chat.getName();
+        String startTime = TimeUtil.format(chat.getStartedAt());
 
         JOptionPane.showMessageDialog(this,
                 "Chat '" + chatName + "' has started at " + startTime,
@@ -580,11 +644,12 @@ public class UserDashboard extends JFrame implements UserClientCallback {
     }
 
     @Override
-    public void chatEnded(Map<String, Object> chatData) throws RemoteException {
-        String chatName = (String) chatData.get("chatName");
-        String endTime = (String) chatData.get("endTime");
+    public void chatEnded(ChatSummary chat) throws RemoteException {
+        String chatName = chat.getName();
+        String endTime = TimeUtil.format(chat.getEndedAt());
 
-        if (isInChat && chatFrame != null) {
+        ChatFrame chatFrame = chatFrames.remove(chat.getId());
+        if (chatFrame != null) {
             chatFrame.appendSystemMessage("Chat stopped at: " + endTime);
             chatFrame.disableChat();
         }
@@ -595,7 +660,6 @@ public class UserDashboard extends JFrame implements UserClientCallback {
                 JOptionPane.INFORMATION_MESSAGE);
 
         loadChatsData();
-        isInChat = false;
     }
 
     @Override
@@ -618,6 +682,14 @@ public class UserDashboard extends JFrame implements UserClientCallback {
                 JOptionPane.INFORMATION_MESSAGE);
     }
 
+    @Override
+    public void deliveryGap(int droppedCount) throws RemoteException {
+        // The server doesn't say which chats lost messages, so warn in every open window
+        for (ChatFrame chatFrame : chatFrames.values()) {
+            chatFrame.appendSystemMessage(droppedCount + " update(s) were not delivered because this client fell behind");
+        }
+    }
+
     @Override
     public void userRemoved() throws RemoteException {
         JOptionPane.showMessageDialog(this,
@@ -626,6 +698,25 @@ public class UserDashboard extends JFrame implements UserClientCallback {
                 JOptionPane.WARNING_MESSAGE);
 
         // Close this window
+        if (leaseRenewer != null) {
+            leaseRenewer.stop();
+        }
         this.dispose();
     }
+
+    @Override
+    public void serverShuttingDown() throws RemoteException {
+        for (ChatFrame chatFrame : chatFrames.values()) {
+            chatFrame.appendSystemMessage("The server is shutting down");
+        }
+        if (leaseRenewer != null) {
+            leaseRenewer.stop();
+        }
+
+        // Not shown from the callback itself, so the server isn't kept waiting until the dialog is closed
+        SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(this,
+                "The chat server is shutting down. Please log in again once it is back.",
+                "Server Shutting Down",
+                JOptionPane.WARNING_MESSAGE));
+    }
 }
\ No newline at end of file
@@ -107,6 +107,23 @@ public class ChatSubscriptionDAO {
         }
     }
 
+    /**
+     * Find the ids of all actively subscribed users of a chat, without loading the entities
+     */
+    public List<Long> findActiveSubscriberIdsByChatId(Long chatId) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            String jpql = "SELECT cs.user.id FROM ChatSubscription cs " +
+                    "WHERE cs.chat.id = :chatId AND cs.isActive = true";
+
+            return em.createQuery(jpql, Long.class)
+                    .setParameter("chatId", chatId)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
     /**
      * Find all active subscriptions for a user
      */
@@ -199,6 +216,27 @@ public class ChatSubscriptionDAO {
         }
     }
 
+    /**
+     * Delete every subscription of a user, active or not, e.g. before removing the user
+     */
+    public void deleteByUserId(Long userId) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createQuery("DELETE FROM ChatSubscription cs WHERE cs.user.id = :userId")
+                    .setParameter("userId", userId)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
     /**
      * Find most active users (for admin analytics)
      */
@@ -0,0 +1,154 @@
+package com.chatapp.model.dao;
+
+import com.chatapp.model.entity.UserAvatar;
+import com.chatapp.util.HibernateUtil;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Data Access Object for UserAvatar entity
+ */
+public class UserAvatarDAO {
+
+    /**
+     * Save or replace a user's avatar
+     */
+    public UserAvatar save(UserAvatar avatar) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            avatar = em.merge(avatar);
+            em.getTransaction().commit();
+            return avatar;
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Find the avatar of a user
+     */
+    public Optional<UserAvatar> findByUserId(Long userId) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            return Optional.ofNullable(em.find(UserAvatar.class, userId));
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Find the avatars of several users in one query
+     */
+    public List<UserAvatar> findByUserIds(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            return em.createQuery("SELECT a FROM UserAvatar a WHERE a.userId IN :userIds", UserAvatar.class)
+                    .setParameter("userIds", userIds)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Find the content hashes of several users' avatars without loading image data
+     */
+    public Map<Long, String> findContentHashes(Collection<Long> userIds) {
+        Map<Long, String> hashes = new HashMap<>();
+        if (userIds.isEmpty()) {
+            return hashes;
+        }
+
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            List<Object[]> rows = em.createQuery(
+                            "SELECT a.userId, a.contentHash FROM UserAvatar a WHERE a.userId IN :userIds", Object[].class)
+                    .setParameter("userIds", userIds)
+                    .getResultList();
+            for (Object[] row : rows) {
+                hashes.put((Long) row[0], (String) row[1]);
+            }
+            return hashes;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Delete the avatar of a user, if any
+     */
+    public void deleteByUserId(Long userId) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            UserAvatar avatar = em.find(UserAvatar.class, userId);
+            if (avatar != null) {
+                em.remove(avatar);
+            }
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Read pictures still stored in the legacy users.profile_picture column.
+     * Returns an empty list if the column does not exist.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object[]> findLegacyProfilePictures() {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            return em.createNativeQuery("SELECT id, profile_picture FROM users WHERE profile_picture IS NOT NULL")
+                    .getResultList();
+        } catch (PersistenceException e) {
+            return new ArrayList<>();
+        } finally {
+            em.close();
+        }
+    }
+
+    /**
+     * Clear a migrated picture from the legacy users.profile_picture column
+     */
+    public void clearLegacyProfilePicture(Long userId) {
+        EntityManager em = HibernateUtil.getEntityManager();
+        try {
+            em.getTransaction().begin();
+            em.createNativeQuery("UPDATE users SET profile_picture = NULL WHERE id = ?1")
+                    .setParameter(1, userId)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } catch (Exception e) {
+            if (em.getTransaction().isActive()) {
+                em.getTransaction().rollback();
+            }
+            throw e;
+        } finally {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.chatapp.model.dto;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * A user's profile picture addressed by its content hash.
+ * Image data is left out when the caller already holds the same hash.
+ */
+public final class AvatarImage implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int VERSION = 1;
+
+    private long userId;
+    private String contentHash;
+    private byte[] imageData;
+
+    /**
+     * Required for deserialization only
+     */
+    public AvatarImage() {
+    }
+
+    public AvatarImage(long userId, String contentHash, byte[] imageData) {
+        this.userId = userId;
+        this.contentHash = contentHash;
+        this.imageData = imageData;
+    }
+
+    /**
+     * Answer for a caller whose cached copy is still current
+     */
+    public static AvatarImage notModified(long userId, String contentHash) {
+        return new AvatarImage(userId, contentHash, null);
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    /**
+     * Image bytes, null when not modified
+     */
+    public byte[] getImageData() {
+        return imageData;
+    }
+
+    public boolean isNotModified() {
+        return imageData == null;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, VERSION);
+        WireFormat.writeVarLong(out, userId);
+        WireFormat.writeString(out, contentHash);
+        WireFormat.writeBytes(out, imageData);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        WireFormat.readVersion(in, VERSION, AvatarImage.class);
+        userId = WireFormat.readVarLong(in);
+        contentHash = WireFormat.readString(in);
+        imageData = WireFormat.readBytes(in);
+    }
+}
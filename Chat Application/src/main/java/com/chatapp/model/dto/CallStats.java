@@ -0,0 +1,118 @@
+package com.chatapp.model.dto;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Point-in-time call counts and latencies for remote methods and message-path phases.
+ * Latencies are in microseconds; percentiles are accurate to about 25%.
+ */
+public final class CallStats implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int VERSION = 1;
+    private static final String[] NO_NAMES = new String[0];
+    private static final long[] NONE = new long[0];
+
+    private String[] names = NO_NAMES;
+    private long[] calls = NONE;
+    private long[] errors = NONE;
+    private long[] meanMicros = NONE;
+    private long[] p50Micros = NONE;
+    private long[] p99Micros = NONE;
+    private long[] maxMicros = NONE;
+
+    /**
+     * Required for deserialization only
+     */
+    public CallStats() {
+    }
+
+    public CallStats(String[] names, long[] calls, long[] errors, long[] meanMicros,
+                     long[] p50Micros, long[] p99Micros, long[] maxMicros) {
+        this.names = names;
+        this.calls = calls;
+        this.errors = errors;
+        this.meanMicros = meanMicros;
+        this.p50Micros = p50Micros;
+        this.p99Micros = p99Micros;
+        this.maxMicros = maxMicros;
+    }
+
+    public int getCount() {
+        return names.length;
+    }
+
+    /**
+     * "Interface.method" for remote calls, "operation/phase" for timed phases such as "sendMessage/transcript"
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public long getCalls(int index) {
+        return calls[index];
+    }
+
+    /**
+     * Calls that ended in an exception
+     */
+    public long getErrors(int index) {
+        return errors[index];
+    }
+
+    public long getMeanMicros(int index) {
+        return meanMicros[index];
+    }
+
+    public long getP50Micros(int index) {
+        return p50Micros[index];
+    }
+
+    public long getP99Micros(int index) {
+        return p99Micros[index];
+    }
+
+    public long getMaxMicros(int index) {
+        return maxMicros[index];
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, VERSION);
+        WireFormat.writeVarLong(out, names.length);
+        for (int i = 0; i < names.length; i++) {
+            WireFormat.writeString(out, names[i]);
+            WireFormat.writeVarLong(out, calls[i]);
+            WireFormat.writeVarLong(out, errors[i]);
+            WireFormat.writeVarLong(out, meanMicros[i]);
+            WireFormat.writeVarLong(out, p50Micros[i]);
+            WireFormat.writeVarLong(out, p99Micros[i]);
+            WireFormat.writeVarLong(out, maxMicros[i]);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        WireFormat.readVersion(in, VERSION, CallStats.class);
+        int count = WireFormat.readCount(in);
+        names = new String[count];
+        calls = new long[count];
+        errors = new long[count];
+        meanMicros = new long[count];
+        p50Micros = new long[count];
+        p99Micros = new long[count];
+        maxMicros = new long[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = WireFormat.readString(in);
+            calls[i] = WireFormat.readVarLong(in);
+            errors[i] = WireFormat.readVarLong(in);
+            meanMicros[i] = WireFormat.readVarLong(in);
+            p50Micros[i] = WireFormat.readVarLong(in);
+            p99Micros[i] = WireFormat.readVarLong(in);
+            maxMicros[i] = WireFormat.readVarLong(in);
+        }
+    }
+}
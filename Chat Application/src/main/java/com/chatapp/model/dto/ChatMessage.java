@@ -0,0 +1,110 @@
+package com.chatapp.model.dto;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * A chat line as delivered to clients
+ */
+public final class ChatMessage implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int VERSION = 3;
+
+    private long chatId;
+    private long sequence;
+    private long userId;
+    private String nickName;
+    private String message;
+    private long timestamp;
+    private String avatarHash;
+
+    /**
+     * Required for deserialization only
+     */
+    public ChatMessage() {
+    }
+
+    public ChatMessage(long chatId, long sequence, long userId, String nickName, String message,
+                       long timestamp, String avatarHash) {
+        this.chatId = chatId;
+        this.sequence = sequence;
+        this.userId = userId;
+        this.nickName = nickName;
+        this.message = message;
+        this.timestamp = timestamp;
+        this.avatarHash = avatarHash;
+    }
+
+    public long getChatId() {
+        return chatId;
+    }
+
+    /**
+     * Position of the message within its chat, starting at 1; 0 if unknown
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getNickName() {
+        return nickName;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Time the server accepted the message, in epoch milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Content hash of the sender's profile picture, null if they have none
+     */
+    public String getAvatarHash() {
+        return avatarHash;
+    }
+
+    public boolean hasProfilePicture() {
+        return avatarHash != null;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, VERSION);
+        WireFormat.writeVarLong(out, chatId);
+        WireFormat.writeVarLong(out, sequence);
+        WireFormat.writeVarLong(out, userId);
+        WireFormat.writeString(out, nickName);
+        WireFormat.writeString(out, message);
+        out.writeLong(timestamp);
+        WireFormat.writeString(out, avatarHash);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int version = WireFormat.readVersion(in, VERSION, ChatMessage.class);
+        chatId = WireFormat.readVarLong(in);
+        sequence = version >= 3 ? WireFormat.readVarLong(in) : 0;
+        userId = WireFormat.readVarLong(in);
+        nickName = WireFormat.readString(in);
+        message = WireFormat.readString(in);
+        timestamp = in.readLong();
+        if (version == 1) {
+            // Version 1 only carried a has-picture flag; the hash is unknown
+            in.readBoolean();
+        } else {
+            avatarHash = WireFormat.readString(in);
+        }
+    }
+}
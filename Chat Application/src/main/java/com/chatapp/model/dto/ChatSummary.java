@@ -0,0 +1,114 @@
+package com.chatapp.model.dto;
+
+import com.chatapp.model.entity.Chat;
+import com.chatapp.util.TimeUtil;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Chat listing entry and chat start/end notification payload.
+ * Timestamps are epoch milliseconds, 0 when not set.
+ */
+public final class ChatSummary implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int VERSION = 1;
+
+    /**
+     * Subscriber count value used when the count was not computed
+     */
+    public static final int UNKNOWN_COUNT = -1;
+
+    private long id;
+    private String name;
+    private boolean active;
+    private long createdAt;
+    private long startedAt;
+    private long endedAt;
+    private int subscriberCount = UNKNOWN_COUNT;
+
+    /**
+     * Required for deserialization only
+     */
+    public ChatSummary() {
+    }
+
+    public ChatSummary(long id, String name, boolean active, long createdAt,
+                       long startedAt, long endedAt, int subscriberCount) {
+        this.id = id;
+        this.name = name;
+        this.active = active;
+        this.createdAt = createdAt;
+        this.startedAt = startedAt;
+        this.endedAt = endedAt;
+        this.subscriberCount = subscriberCount;
+    }
+
+    public static ChatSummary from(Chat chat) {
+        return from(chat, UNKNOWN_COUNT);
+    }
+
+    public static ChatSummary from(Chat chat, int subscriberCount) {
+        return new ChatSummary(chat.getId(), chat.getName(), chat.isActive(),
+                TimeUtil.toEpochMillis(chat.getCreatedAt()),
+                TimeUtil.toEpochMillis(chat.getStartedAt()),
+                TimeUtil.toEpochMillis(chat.getEndedAt()),
+                subscriberCount);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getStartedAt() {
+        return startedAt;
+    }
+
+    public long getEndedAt() {
+        return endedAt;
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, VERSION);
+        WireFormat.writeVarLong(out, id);
+        WireFormat.writeString(out, name);
+        out.writeBoolean(active);
+        out.writeLong(createdAt);
+        out.writeLong(startedAt);
+        out.writeLong(endedAt);
+        // Shifted by one so UNKNOWN_COUNT still encodes as a single byte
+        WireFormat.writeVarLong(out, subscriberCount + 1L);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        WireFormat.readVersion(in, VERSION, ChatSummary.class);
+        id = WireFormat.readVarLong(in);
+        name = WireFormat.readString(in);
+        active = in.readBoolean();
+        createdAt = in.readLong();
+        startedAt = in.readLong();
+        endedAt = in.readLong();
+        subscriberCount = (int) (WireFormat.readVarLong(in) - 1);
+    }
+}
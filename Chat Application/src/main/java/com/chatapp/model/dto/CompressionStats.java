@@ -0,0 +1,91 @@
+package com.chatapp.model.dto;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Bytes that went through compressing sockets, before (raw) and after (wire)
+ * compression, in each direction
+ */
+public final class CompressionStats implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int VERSION = 1;
+
+    private boolean enabled;
+    private long rawBytesWritten;
+    private long wireBytesWritten;
+    private long rawBytesRead;
+    private long wireBytesRead;
+
+    /**
+     * Required for deserialization only
+     */
+    public CompressionStats() {
+    }
+
+    public CompressionStats(boolean enabled, long rawBytesWritten, long wireBytesWritten,
+                            long rawBytesRead, long wireBytesRead) {
+        this.enabled = enabled;
+        this.rawBytesWritten = rawBytesWritten;
+        this.wireBytesWritten = wireBytesWritten;
+        this.rawBytesRead = rawBytesRead;
+        this.wireBytesRead = wireBytesRead;
+    }
+
+    /**
+     * Whether the server exports its services over compressing sockets
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getRawBytesWritten() {
+        return rawBytesWritten;
+    }
+
+    /**
+     * Bytes actually sent, framing included
+     */
+    public long getWireBytesWritten() {
+        return wireBytesWritten;
+    }
+
+    public long getRawBytesRead() {
+        return rawBytesRead;
+    }
+
+    public long getWireBytesRead() {
+        return wireBytesRead;
+    }
+
+    /**
+     * Wire bytes per raw byte over both directions, or 1 if nothing was sent yet
+     */
+    public double getRatio() {
+        long raw = rawBytesWritten + rawBytesRead;
+        return raw == 0 ? 1.0 : (double) (wireBytesWritten + wireBytesRead) / raw;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, VERSION);
+        out.writeBoolean(enabled);
+        WireFormat.writeVarLong(out, rawBytesWritten);
+        WireFormat.writeVarLong(out, wireBytesWritten);
+        WireFormat.writeVarLong(out, rawBytesRead);
+        WireFormat.writeVarLong(out, wireBytesRead);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        WireFormat.readVersion(in, VERSION, CompressionStats.class);
+        enabled = in.readBoolean();
+        rawBytesWritten = WireFormat.readVarLong(in);
+        wireBytesWritten = WireFormat.readVarLong(in);
+        rawBytesRead = WireFormat.readVarLong(in);
+        wireBytesRead = WireFormat.readVarLong(in);
+    }
+}
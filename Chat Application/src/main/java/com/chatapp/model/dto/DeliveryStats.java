@@ -0,0 +1,142 @@
+package com.chatapp.model.dto;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Point-in-time view of the outbound client queues, for spotting slow consumers
+ */
+public final class DeliveryStats implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int VERSION = 1;
+    private static final long[] NO_IDS = new long[0];
+    private static final int[] NO_DEPTHS = new int[0];
+
+    private String overflowPolicy;
+    private int queueCapacity;
+    private int connectedClients;
+    private long queuedDeliveries;
+    private long droppedDeliveries;
+    private long slowConsumerDisconnects;
+    private long[] userIds = NO_IDS;
+    private int[] queueDepths = NO_DEPTHS;
+    private long[] droppedByUser = NO_IDS;
+
+    /**
+     * Required for deserialization only
+     */
+    public DeliveryStats() {
+    }
+
+    public DeliveryStats(String overflowPolicy, int queueCapacity, int connectedClients, long queuedDeliveries,
+                         long droppedDeliveries, long slowConsumerDisconnects,
+                         long[] userIds, int[] queueDepths, long[] droppedByUser) {
+        this.overflowPolicy = overflowPolicy;
+        this.queueCapacity = queueCapacity;
+        this.connectedClients = connectedClients;
+        this.queuedDeliveries = queuedDeliveries;
+        this.droppedDeliveries = droppedDeliveries;
+        this.slowConsumerDisconnects = slowConsumerDisconnects;
+        this.userIds = userIds;
+        this.queueDepths = queueDepths;
+        this.droppedByUser = droppedByUser;
+    }
+
+    /**
+     * Default policy applied when a client's queue is full
+     */
+    public String getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Default per-client queue limit
+     */
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public int getConnectedClients() {
+        return connectedClients;
+    }
+
+    /**
+     * Deliveries waiting across all client queues
+     */
+    public long getQueuedDeliveries() {
+        return queuedDeliveries;
+    }
+
+    /**
+     * Deliveries discarded because a client queue was full, since server start
+     */
+    public long getDroppedDeliveries() {
+        return droppedDeliveries;
+    }
+
+    /**
+     * Clients disconnected for falling behind, since server start
+     */
+    public long getSlowConsumerDisconnects() {
+        return slowConsumerDisconnects;
+    }
+
+    /**
+     * Number of clients listed individually (those with a backlog or drops)
+     */
+    public int getClientCount() {
+        return userIds.length;
+    }
+
+    public long getUserId(int index) {
+        return userIds[index];
+    }
+
+    public int getQueueDepth(int index) {
+        return queueDepths[index];
+    }
+
+    public long getDroppedCount(int index) {
+        return droppedByUser[index];
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, VERSION);
+        WireFormat.writeString(out, overflowPolicy);
+        WireFormat.writeVarLong(out, queueCapacity);
+        WireFormat.writeVarLong(out, connectedClients);
+        WireFormat.writeVarLong(out, queuedDeliveries);
+        WireFormat.writeVarLong(out, droppedDeliveries);
+        WireFormat.writeVarLong(out, slowConsumerDisconnects);
+        WireFormat.writeVarLong(out, userIds.length);
+        for (int i = 0; i < userIds.length; i++) {
+            WireFormat.writeVarLong(out, userIds[i]);
+            WireFormat.writeVarLong(out, queueDepths[i]);
+            WireFormat.writeVarLong(out, droppedByUser[i]);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        WireFormat.readVersion(in, VERSION, DeliveryStats.class);
+        overflowPolicy = WireFormat.readString(in);
+        queueCapacity = (int) WireFormat.readVarLong(in);
+        connectedClients = (int) WireFormat.readVarLong(in);
+        queuedDeliveries = WireFormat.readVarLong(in);
+        droppedDeliveries = WireFormat.readVarLong(in);
+        slowConsumerDisconnects = WireFormat.readVarLong(in);
+        int count = WireFormat.readCount(in);
+        userIds = new long[count];
+        queueDepths = new int[count];
+        droppedByUser = new long[count];
+        for (int i = 0; i < count; i++) {
+            userIds[i] = WireFormat.readVarLong(in);
+            queueDepths[i] = (int) WireFormat.readVarLong(in);
+            droppedByUser[i] = WireFormat.readVarLong(in);
+        }
+    }
+}
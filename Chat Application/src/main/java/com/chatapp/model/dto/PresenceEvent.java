@@ -0,0 +1,108 @@
+package com.chatapp.model.dto;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Notification that a user joined or left a chat, or was removed from the system
+ */
+public final class PresenceEvent implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int VERSION = 2;
+
+    public enum Type {
+        JOINED, LEFT, REMOVED
+    }
+
+    private Type type;
+    private long chatId;
+    private long userId;
+    private String nickName;
+    private long timestamp;
+    private String avatarHash;
+
+    /**
+     * Required for deserialization only
+     */
+    public PresenceEvent() {
+    }
+
+    public PresenceEvent(Type type, long chatId, long userId, String nickName,
+                         long timestamp, String avatarHash) {
+        this.type = type;
+        this.chatId = chatId;
+        this.userId = userId;
+        this.nickName = nickName;
+        this.timestamp = timestamp;
+        this.avatarHash = avatarHash;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Chat the event relates to, 0 for system-wide events
+     */
+    public long getChatId() {
+        return chatId;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getNickName() {
+        return nickName;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Content hash of the user's profile picture, null if they have none
+     */
+    public String getAvatarHash() {
+        return avatarHash;
+    }
+
+    public boolean hasProfilePicture() {
+        return avatarHash != null;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, VERSION);
+        out.writeByte(type.ordinal());
+        WireFormat.writeVarLong(out, chatId);
+        WireFormat.writeVarLong(out, userId);
+        WireFormat.writeString(out, nickName);
+        out.writeLong(timestamp);
+        WireFormat.writeString(out, avatarHash);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int version = WireFormat.readVersion(in, VERSION, PresenceEvent.class);
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= Type.values().length) {
+            throw new InvalidObjectException("Unknown presence type " + ordinal);
+        }
+        type = Type.values()[ordinal];
+        chatId = WireFormat.readVarLong(in);
+        userId = WireFormat.readVarLong(in);
+        nickName = WireFormat.readString(in);
+        timestamp = in.readLong();
+        if (version == 1) {
+            // Version 1 only carried a has-picture flag; the hash is unknown
+            in.readBoolean();
+        } else {
+            avatarHash = WireFormat.readString(in);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.chatapp.model.dto;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Configured per-user rate limits and how often users have been throttled by them
+ */
+public final class RateLimitStats implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int VERSION = 1;
+    private static final long[] NO_IDS = new long[0];
+
+    private double messagesPerSecond;
+    private int messageBurst;
+    private double membershipPerSecond;
+    private int membershipBurst;
+    private long throttledMessages;
+    private long throttledMemberships;
+    private long[] userIds = NO_IDS;
+    private long[] throttledByUser = NO_IDS;
+
+    /**
+     * Required for deserialization only
+     */
+    public RateLimitStats() {
+    }
+
+    public RateLimitStats(double messagesPerSecond, int messageBurst, double membershipPerSecond, int membershipBurst,
+                          long throttledMessages, long throttledMemberships,
+                          long[] userIds, long[] throttledByUser) {
+        this.messagesPerSecond = messagesPerSecond;
+        this.messageBurst = messageBurst;
+        this.membershipPerSecond = membershipPerSecond;
+        this.membershipBurst = membershipBurst;
+        this.throttledMessages = throttledMessages;
+        this.throttledMemberships = throttledMemberships;
+        this.userIds = userIds;
+        this.throttledByUser = throttledByUser;
+    }
+
+    /**
+     * Sustained messages per second allowed per user; 0 or less means unlimited
+     */
+    public double getMessagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    public int getMessageBurst() {
+        return messageBurst;
+    }
+
+    /**
+     * Sustained joins and leaves per second allowed per user; 0 or less means unlimited
+     */
+    public double getMembershipPerSecond() {
+        return membershipPerSecond;
+    }
+
+    public int getMembershipBurst() {
+        return membershipBurst;
+    }
+
+    /**
+     * Messages rejected for exceeding the limit, since server start
+     */
+    public long getThrottledMessages() {
+        return throttledMessages;
+    }
+
+    /**
+     * Joins and leaves rejected for exceeding the limit, since server start
+     */
+    public long getThrottledMemberships() {
+        return throttledMemberships;
+    }
+
+    /**
+     * Number of connected users who have been throttled at least once
+     */
+    public int getUserCount() {
+        return userIds.length;
+    }
+
+    public long getUserId(int index) {
+        return userIds[index];
+    }
+
+    public long getThrottledCount(int index) {
+        return throttledByUser[index];
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, VERSION);
+        out.writeDouble(messagesPerSecond);
+        WireFormat.writeVarLong(out, messageBurst);
+        out.writeDouble(membershipPerSecond);
+        WireFormat.writeVarLong(out, membershipBurst);
+        WireFormat.writeVarLong(out, throttledMessages);
+        WireFormat.writeVarLong(out, throttledMemberships);
+        WireFormat.writeVarLong(out, userIds.length);
+        for (int i = 0; i < userIds.length; i++) {
+            WireFormat.writeVarLong(out, userIds[i]);
+            WireFormat.writeVarLong(out, throttledByUser[i]);
+        }
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        WireFormat.readVersion(in, VERSION, RateLimitStats.class);
+        messagesPerSecond = in.readDouble();
+        messageBurst = (int) WireFormat.readVarLong(in);
+        membershipPerSecond = in.readDouble();
+        membershipBurst = (int) WireFormat.readVarLong(in);
+        throttledMessages = WireFormat.readVarLong(in);
+        throttledMemberships = WireFormat.readVarLong(in);
+        int count = WireFormat.readCount(in);
+        userIds = new long[count];
+        throttledByUser = new long[count];
+        for (int i = 0; i < count; i++) {
+            userIds[i] = WireFormat.readVarLong(in);
+            throttledByUser[i] = WireFormat.readVarLong(in);
+        }
+    }
+}
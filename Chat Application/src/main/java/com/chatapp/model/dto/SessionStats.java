@@ -0,0 +1,79 @@
+package com.chatapp.model.dto;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * Point-in-time counts of logged in users and connected clients, for monitoring
+ */
+public final class SessionStats implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int VERSION = 1;
+
+    private int sessions;
+    private int connectedUsers;
+    private int connectedAdmins;
+    private int occupiedChats;
+
+    /**
+     * Required for deserialization only
+     */
+    public SessionStats() {
+    }
+
+    public SessionStats(int sessions, int connectedUsers, int connectedAdmins, int occupiedChats) {
+        this.sessions = sessions;
+        this.connectedUsers = connectedUsers;
+        this.connectedAdmins = connectedAdmins;
+        this.occupiedChats = occupiedChats;
+    }
+
+    /**
+     * Users with a server-side session
+     */
+    public int getSessions() {
+        return sessions;
+    }
+
+    /**
+     * User clients registered for callbacks
+     */
+    public int getConnectedUsers() {
+        return connectedUsers;
+    }
+
+    /**
+     * Admin clients registered for callbacks
+     */
+    public int getConnectedAdmins() {
+        return connectedAdmins;
+    }
+
+    /**
+     * Chats with at least one participant inside
+     */
+    public int getOccupiedChats() {
+        return occupiedChats;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, VERSION);
+        WireFormat.writeVarLong(out, sessions);
+        WireFormat.writeVarLong(out, connectedUsers);
+        WireFormat.writeVarLong(out, connectedAdmins);
+        WireFormat.writeVarLong(out, occupiedChats);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        WireFormat.readVersion(in, VERSION, SessionStats.class);
+        sessions = (int) WireFormat.readVarLong(in);
+        connectedUsers = (int) WireFormat.readVarLong(in);
+        connectedAdmins = (int) WireFormat.readVarLong(in);
+        occupiedChats = (int) WireFormat.readVarLong(in);
+    }
+}
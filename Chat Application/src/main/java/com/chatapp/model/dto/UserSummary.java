@@ -0,0 +1,103 @@
+package com.chatapp.model.dto;
+
+import com.chatapp.model.entity.User;
+
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+
+/**
+ * User login result, profile data and user listing entry
+ */
+public final class UserSummary implements Externalizable {
+
+    private static final long serialVersionUID = 1L;
+    private static final int VERSION = 2;
+
+    private long id;
+    private String email;
+    private String username;
+    private String nickName;
+    private boolean admin;
+    private String avatarHash;
+
+    /**
+     * Required for deserialization only
+     */
+    public UserSummary() {
+    }
+
+    public UserSummary(long id, String email, String username, String nickName,
+                       boolean admin, String avatarHash) {
+        this.id = id;
+        this.email = email;
+        this.username = username;
+        this.nickName = nickName;
+        this.admin = admin;
+        this.avatarHash = avatarHash;
+    }
+
+    public static UserSummary from(User user) {
+        return new UserSummary(user.getId(), user.getEmail(), user.getUsername(), user.getNickName(),
+                user.isAdmin(), user.hasProfilePicture() ? user.getAvatarHash() : null);
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getNickName() {
+        return nickName;
+    }
+
+    public boolean isAdmin() {
+        return admin;
+    }
+
+    /**
+     * Content hash of the profile picture, null if the user has none
+     */
+    public String getAvatarHash() {
+        return avatarHash;
+    }
+
+    public boolean hasProfilePicture() {
+        return avatarHash != null;
+    }
+
+    @Override
+    public void writeExternal(ObjectOutput out) throws IOException {
+        WireFormat.writeVersion(out, VERSION);
+        WireFormat.writeVarLong(out, id);
+        WireFormat.writeString(out, email);
+        WireFormat.writeString(out, username);
+        WireFormat.writeString(out, nickName);
+        out.writeBoolean(admin);
+        WireFormat.writeString(out, avatarHash);
+    }
+
+    @Override
+    public void readExternal(ObjectInput in) throws IOException {
+        int version = WireFormat.readVersion(in, VERSION, UserSummary.class);
+        id = WireFormat.readVarLong(in);
+        email = WireFormat.readString(in);
+        username = WireFormat.readString(in);
+        nickName = WireFormat.readString(in);
+        if (version == 1) {
+            // Version 1 packed admin and has-picture into one flags byte
+            admin = (in.readUnsignedByte() & 1) != 0;
+        } else {
+            admin = in.readBoolean();
+            avatarHash = WireFormat.readString(in);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.chatapp.model.dto;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Helpers for the compact encoding used by the wire DTOs.
+ * Strings and byte arrays are written as a varint length followed by the
+ * bytes (UTF-8 for strings), with length 0 reserved for null.
+ */
+public final class WireFormat {
+
+    // Cap for inputs that can't say how much is left, e.g. RMI's object streams
+    private static final int MAX_UNBOUNDED_LENGTH = Integer.MAX_VALUE - 8;
+
+    /**
+     * An input that knows how many bytes are left, such as the body of one
+     * received frame. Lengths and counts read from it are checked against
+     * that before anything is allocated.
+     */
+    public interface BoundedInput extends DataInput {
+        int available() throws IOException;
+    }
+
+    private WireFormat() {
+    }
+
+    public static void writeVersion(DataOutput out, int version) throws IOException {
+        out.writeByte(version);
+    }
+
+    /**
+     * Read the leading version byte and reject encodings newer than we understand
+     */
+    public static int readVersion(DataInput in, int supportedVersion, Class<?> type) throws IOException {
+        int version = in.readUnsignedByte();
+        if (version < 1 || version > supportedVersion) {
+            throw new InvalidObjectException("Unsupported " + type.getSimpleName() + " encoding version " + version);
+        }
+        return version;
+    }
+
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (shift < 64) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift += 7;
+        }
+        throw new InvalidObjectException("Malformed varint");
+    }
+
+    public static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length + 1L);
+        out.write(bytes);
+    }
+
+    public static String readString(DataInput in) throws IOException {
+        int length = readLength(in, "string");
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void writeBytes(DataOutput out, byte[] value) throws IOException {
+        if (value == null) {
+            writeVarLong(out, 0);
+            return;
+        }
+        writeVarLong(out, value.length + 1L);
+        out.write(value);
+    }
+
+    public static byte[] readBytes(DataInput in) throws IOException {
+        int length = readLength(in, "byte array");
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Read an element count, rejecting one that couldn't fit in what is left
+     * of the input, at a byte or more per element
+     */
+    public static int readCount(DataInput in) throws IOException {
+        long count = readVarLong(in);
+        if (count < 0 || count > limitOf(in)) {
+            throw new InvalidObjectException("Bad element count " + count);
+        }
+        return (int) count;
+    }
+
+    // Length of a string or byte array, -1 for null
+    private static int readLength(DataInput in, String what) throws IOException {
+        long length = readVarLong(in);
+        if (length == 0) {
+            return -1;
+        }
+        long size = length - 1;
+        if (size < 0 || size > limitOf(in)) {
+            throw new InvalidObjectException("Bad " + what + " length " + size);
+        }
+        return (int) size;
+    }
+
+    private static int limitOf(DataInput in) throws IOException {
+        return in instanceof BoundedInput ? ((BoundedInput) in).available() : MAX_UNBOUNDED_LENGTH;
+    }
+}
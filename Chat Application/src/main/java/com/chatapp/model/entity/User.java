@@ -40,8 +40,12 @@ public class User implements Serializable {
     @Column(name = "nick_name", nullable = false)
     private String nickName;
     
-    @Column(name = "profile_picture")
-    private byte[] profilePicture;
+    // The picture itself lives in UserAvatar; only its size and hash are kept on the user row
+    @Column(name = "avatar_size")
+    private int avatarSize = 0;
+
+    @Column(name = "avatar_hash", length = 64)
+    private String avatarHash;
     
     @Column(name = "is_admin")
     private boolean isAdmin = false;
@@ -102,12 +106,24 @@ public class User implements Serializable {
         this.nickName = nickName;
     }
     
-    public byte[] getProfilePicture() {
-        return profilePicture;
+    public int getAvatarSize() {
+        return avatarSize;
+    }
+    
+    public void setAvatarSize(int avatarSize) {
+        this.avatarSize = avatarSize;
+    }
+    
+    public String getAvatarHash() {
+        return avatarHash;
+    }
+    
+    public void setAvatarHash(String avatarHash) {
+        this.avatarHash = avatarHash;
     }
     
-    public void setProfilePicture(byte[] profilePicture) {
-        this.profilePicture = profilePicture;
+    public boolean hasProfilePicture() {
+        return avatarSize > 0;
     }
     
     public boolean isAdmin() {
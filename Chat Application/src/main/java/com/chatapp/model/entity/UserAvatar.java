@@ -0,0 +1,107 @@
+package com.chatapp.model.entity;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+
+/**
+ * Entity holding a user's profile picture.
+ * Kept out of the users table so that user queries never load image bytes.
+ */
+@Entity
+@Table(name = "user_avatars")
+public class UserAvatar implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    @Lob
+    @Column(name = "image_data", nullable = false, length = 16 * 1024 * 1024)
+    private byte[] imageData;
+
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    // Default constructor
+    public UserAvatar() {
+    }
+
+    // Constructor with fields
+    public UserAvatar(Long userId, byte[] imageData) {
+        this.userId = userId;
+        setImageData(imageData);
+    }
+
+    /**
+     * SHA-256 of the image bytes as lowercase hex
+     */
+    public static String hashOf(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            byte[] hex = new byte[digest.length * 2];
+            byte[] alphabet = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+            for (int i = 0; i < digest.length; i++) {
+                hex[i * 2] = alphabet[(digest[i] >> 4) & 0xF];
+                hex[i * 2 + 1] = alphabet[digest[i] & 0xF];
+            }
+            return new String(hex, StandardCharsets.US_ASCII);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    // Getters and Setters
+    public Long getUserId() {
+        return userId;
+    }
+
+    public void setUserId(Long userId) {
+        this.userId = userId;
+    }
+
+    public byte[] getImageData() {
+        return imageData;
+    }
+
+    /**
+     * Replace the image, updating its hash and timestamp
+     */
+    public void setImageData(byte[] imageData) {
+        this.imageData = imageData;
+        this.contentHash = hashOf(imageData);
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        UserAvatar that = (UserAvatar) o;
+
+        return userId != null ? userId.equals(that.userId) : that.userId == null;
+    }
+
+    @Override
+    public int hashCode() {
+        return userId != null ? userId.hashCode() : 0;
+    }
+}
@@ -0,0 +1,562 @@
+package com.chatapp.net;
+
+import com.chatapp.model.dto.WireFormat;
+import com.chatapp.net.FrameCodec.FrameReader;
+import com.chatapp.net.FrameCodec.FrameWriter;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.rmi.RemoteException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Message bus between the server nodes of a cluster.
+ * Each node opens one TCP connection to every other node and sends all its
+ * events, calls and replies over it; it reads what the others send on the
+ * connections they open to it. Frames are those of the NIO transport.
+ * Events from one node reach each other node in the order they were
+ * published, which is what keeps a chat's messages in order across nodes.
+ *
+ * A node listens only on its own cluster address, and a connecting node must
+ * open with a greeting signed with the cluster's shared secret and name one
+ * of the configured nodes; anything else is hung up on.
+ */
+public final class ClusterBus {
+
+    /**
+     * Receives what the other nodes send
+     */
+    public interface Handler {
+
+        /**
+         * Answer a call from another node. Runs on a worker thread.
+         */
+        Object call(int fromNode, int operation, List<?> args) throws Exception;
+
+        /**
+         * Handle an event. Runs on the connection's reader thread, in the order
+         * the sender published, so it must hand off anything slow.
+         */
+        void event(int fromNode, int operation, List<?> args);
+
+        /**
+         * A connection to another node has just been opened, e.g. after it restarted
+         */
+        void peerConnected(int nodeId);
+
+        /**
+         * Another node has gone away
+         */
+        void peerLost(int nodeId);
+    }
+
+    // Operation 0 is the bus's own greeting; handlers use the rest
+    private static final int HELLO = 0;
+    private static final long CALL_TIMEOUT_MILLIS = Long.getLong("chatapp.cluster.callTimeoutMs", 10_000);
+    private static final int MAX_FRAME_BYTES = Integer.getInteger("chatapp.nio.maxFrameBytes", 8 * 1024 * 1024);
+    // Frames waiting to be written to one node before it is disconnected
+    private static final int QUEUE_CAPACITY = Integer.getInteger("chatapp.cluster.queueCapacity", 16_384);
+    private static final int CONNECT_TIMEOUT_MILLIS = 1_000;
+    // A connection must greet within this time, in a frame no larger than this
+    private static final int HELLO_TIMEOUT_MILLIS = 5_000;
+    private static final int MAX_HELLO_BYTES = 256;
+    // How far a greeting's timestamp may be from this node's clock
+    private static final long HELLO_MAX_SKEW_MILLIS = 60_000;
+    private static final long RECONNECT_MILLIS = 1_000;
+
+    private final int nodeId;
+    private final InetSocketAddress listenAddress;
+    private final InetAddress bindAddress;
+    private final SecretKeySpec secret;
+    private final Handler handler;
+    private final Map<Integer, Peer> peers = new TreeMap<>();
+    private final AtomicLong nextCallId = new AtomicLong();
+    private final Map<Long, PendingCall> pendingCalls = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService connector;
+    private final ExecutorService callWorkers;
+    private volatile boolean closed = false;
+    private ServerSocket serverSocket;
+
+    /**
+     * @param nodes every node of the cluster, this one included
+     * @param bindAddress the interface to listen on, or null for this node's address in {@code nodes}
+     * @param secret shared by every node of the cluster, and known to nothing else
+     */
+    public ClusterBus(int nodeId, Map<Integer, InetSocketAddress> nodes, InetAddress bindAddress, String secret,
+                      Handler handler) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("A cluster needs a shared secret");
+        }
+        this.nodeId = nodeId;
+        this.listenAddress = nodes.get(nodeId);
+        this.bindAddress = bindAddress;
+        this.secret = new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+        this.handler = handler;
+        for (Map.Entry<Integer, InetSocketAddress> node : nodes.entrySet()) {
+            if (node.getKey() != nodeId) {
+                peers.put(node.getKey(), new Peer(node.getKey(), node.getValue()));
+            }
+        }
+
+        this.connector = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cluster-connector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.callWorkers = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "cluster-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Parse "1=host:port,2=host:port" into node ids and addresses
+     */
+    public static Map<Integer, InetSocketAddress> parseNodes(String spec) {
+        Map<Integer, InetSocketAddress> nodes = new LinkedHashMap<>();
+        for (String entry : spec.split(",")) {
+            entry = entry.trim();
+            if (entry.isEmpty()) {
+                continue;
+            }
+            int equals = entry.indexOf('=');
+            int colon = entry.lastIndexOf(':');
+            if (equals < 0 || colon < equals) {
+                throw new IllegalArgumentException("Expected id=host:port but got '" + entry + "'");
+            }
+            nodes.put(Integer.parseInt(entry.substring(0, equals).trim()),
+                    new InetSocketAddress(entry.substring(equals + 1, colon).trim(),
+                            Integer.parseInt(entry.substring(colon + 1).trim())));
+        }
+        return nodes;
+    }
+
+    /**
+     * Start accepting connections from the other nodes and connecting to them
+     */
+    public void start() throws IOException {
+        InetAddress address = bindAddress != null ? bindAddress : listenAddress.getAddress();
+        if (address == null) {
+            throw new IOException("Cannot resolve cluster address " + listenAddress.getHostString());
+        }
+        serverSocket = new ServerSocket(listenAddress.getPort(), 0, address);
+        Thread acceptor = new Thread(this::acceptLoop, "cluster-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        connector.scheduleWithFixedDelay(this::connectPeers, 0, RECONNECT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public void close() {
+        closed = true;
+        connector.shutdownNow();
+        callWorkers.shutdownNow();
+        try {
+            if (serverSocket != null) {
+                serverSocket.close();
+            }
+        } catch (IOException e) {
+            // Already closed
+        }
+        for (Peer peer : peers.values()) {
+            peer.close();
+        }
+    }
+
+    /**
+     * Whether there is currently a connection to the given node
+     */
+    public boolean isConnected(int node) {
+        Peer peer = peers.get(node);
+        return peer != null && peer.isConnected();
+    }
+
+    /**
+     * Send an event to every other node. Nodes that are down miss it.
+     */
+    public void publish(int operation, Object... args) {
+        ByteBuffer frame = frame(FrameCodec.PUSH, 0, operation, args);
+        for (Peer peer : peers.values()) {
+            peer.send(frame.duplicate());
+        }
+    }
+
+    /**
+     * Send an event to one node, returning false if it is down
+     */
+    public boolean send(int node, int operation, Object... args) {
+        Peer peer = peers.get(node);
+        return peer != null && peer.send(frame(FrameCodec.PUSH, 0, operation, args));
+    }
+
+    /**
+     * Call another node and wait for its answer. If the answer doesn't come in
+     * time the other node is told to call it off, but it may already have
+     * carried it out, so the error says the outcome is unknown.
+     */
+    public Object call(int node, int operation, Object... args) throws RemoteException {
+        Peer peer = peers.get(node);
+        if (peer == null) {
+            throw new RemoteException("Unknown cluster node " + node);
+        }
+
+        long callId = nextCallId.incrementAndGet();
+        PendingCall result = new PendingCall(node);
+        pendingCalls.put(callId, result);
+        try {
+            if (!peer.send(frame(FrameCodec.CALL, callId, operation, args))) {
+                throw new RemoteException("Cluster node " + node + " is unavailable");
+            }
+            return result.get(CALL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RemoteException ? (RemoteException) cause : new RemoteException(cause.getMessage(), cause);
+        } catch (TimeoutException e) {
+            peer.send(frame(FrameCodec.CANCEL, callId, operation));
+            throw new RemoteException("No reply from cluster node " + node + " within " + CALL_TIMEOUT_MILLIS
+                    + "ms, the outcome is unknown");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            peer.send(frame(FrameCodec.CANCEL, callId, operation));
+            throw new RemoteException("Interrupted waiting for cluster node " + node + ", the outcome is unknown");
+        } finally {
+            pendingCalls.remove(callId);
+        }
+    }
+
+    private static ByteBuffer frame(int kind, long callId, int operation, Object... args) {
+        try {
+            FrameWriter frame = FrameCodec.newFrame(kind, callId, operation);
+            frame.writeObject(Arrays.asList(args));
+            return frame.toFrame();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot encode cluster operation " + operation, e);
+        }
+    }
+
+    private void connectPeers() {
+        for (Peer peer : peers.values()) {
+            if (!closed && !peer.isConnected() && peer.connect()) {
+                System.out.println("Cluster node " + nodeId + " connected to node " + peer.nodeId);
+                handler.peerConnected(peer.nodeId);
+            }
+        }
+    }
+
+    private void acceptLoop() {
+        while (!closed) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread reader = new Thread(() -> readLoop(socket), "cluster-reader");
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Cluster accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void readLoop(Socket socket) {
+        int from = -1;
+        // Calls from this connection still being answered, so a cancel can find them
+        Map<Long, Future<?>> calls = new ConcurrentHashMap<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            socket.setSoTimeout(HELLO_TIMEOUT_MILLIS);
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0 || length > (from < 0 ? MAX_HELLO_BYTES : MAX_FRAME_BYTES)) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+
+                FrameReader frame = new FrameReader(body);
+                int kind = frame.readUnsignedByte();
+                long callId = WireFormat.readVarLong(frame);
+                int operation = (int) WireFormat.readVarLong(frame);
+                List<?> args = (List<?>) frame.readObject();
+
+                if (from < 0) {
+                    if (kind != FrameCodec.PUSH || operation != HELLO) {
+                        throw new IOException("Expected a greeting first");
+                    }
+                    from = checkHello(socket, args);
+                    socket.setSoTimeout(0);
+                } else if (kind == FrameCodec.PUSH && operation == HELLO) {
+                    throw new IOException("Greeted twice");
+                } else {
+                    receive(from, kind, callId, operation, args, calls);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            if (from >= 0 && !closed) {
+                System.err.println("Lost cluster node " + from + ": " + e);
+            } else if (!closed) {
+                System.err.println("Rejected cluster connection from " + socket.getRemoteSocketAddress() + ": " + e);
+            }
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+            if (from >= 0 && !closed) {
+                // Our connection to it is stale too; drop it so the next one greets it afresh
+                peers.get(from).close();
+                failCalls(from);
+                handler.peerLost(from);
+            }
+        }
+    }
+
+    /**
+     * Check a greeting is from a configured node and signed with the cluster
+     * secret, returning the node's id
+     */
+    private int checkHello(Socket socket, List<?> args) throws IOException {
+        int from = (Integer) args.get(0);
+        long timestamp = (Long) args.get(1);
+        byte[] signature = (byte[]) args.get(2);
+        if (!peers.containsKey(from)) {
+            throw new IOException("Connection from unknown node " + from);
+        }
+        if (Math.abs(System.currentTimeMillis() - timestamp) > HELLO_MAX_SKEW_MILLIS
+                || !MessageDigest.isEqual(signature, sign(from, nodeId, timestamp))) {
+            throw new IOException("Bad greeting claiming to be node " + from);
+        }
+        return from;
+    }
+
+    /**
+     * Sign a greeting from one node to another
+     */
+    private byte[] sign(int from, int to, long timestamp) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(secret);
+            return mac.doFinal((from + ">" + to + "@" + timestamp).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign cluster greeting", e);
+        }
+    }
+
+    private void receive(int from, int kind, long callId, int operation, List<?> args, Map<Long, Future<?>> calls) {
+        if (kind == FrameCodec.PUSH) {
+            try {
+                handler.event(from, operation, args);
+            } catch (RuntimeException e) {
+                System.err.println("Cluster event " + operation + " from node " + from + " failed: " + e);
+            }
+        } else if (kind == FrameCodec.CALL) {
+            FutureTask<Void> task = new FutureTask<>(() -> {
+                ByteBuffer reply;
+                try {
+                    reply = frame(FrameCodec.RESULT, callId, operation, handler.call(from, operation, args));
+                } catch (Exception e) {
+                    reply = frame(FrameCodec.ERROR, callId, operation, e.getMessage());
+                } finally {
+                    calls.remove(callId);
+                }
+                peers.get(from).send(reply);
+                return null;
+            });
+            calls.put(callId, task);
+            callWorkers.execute(task);
+        } else if (kind == FrameCodec.CANCEL) {
+            // Not started: it never will be. Running: the interrupt lets a handler
+            // that is waiting, e.g. for a chat's turn, call off its own work
+            Future<?> call = calls.remove(callId);
+            if (call != null) {
+                call.cancel(true);
+            }
+        } else {
+            PendingCall result = pendingCalls.get(callId);
+            if (result == null) {
+                return;   // caller already gave up
+            }
+            if (kind == FrameCodec.RESULT) {
+                result.complete(args.get(0));
+            } else {
+                result.completeExceptionally(new RemoteException((String) args.get(0)));
+            }
+        }
+    }
+
+    private void failCalls(int node) {
+        for (PendingCall result : pendingCalls.values()) {
+            if (result.nodeId == node) {
+                result.completeExceptionally(new RemoteException("Lost connection to cluster node " + node));
+            }
+        }
+    }
+
+    /**
+     * A call waiting for its answer, remembering which node should send it
+     */
+    private static final class PendingCall extends CompletableFuture<Object> {
+        private final int nodeId;
+
+        PendingCall(int nodeId) {
+            this.nodeId = nodeId;
+        }
+    }
+
+    /**
+     * This node's outgoing connection to another node. Frames go through a
+     * bounded queue drained by the connection's own writer thread, so a slow
+     * or stalled node never blocks whoever is sending, e.g. a chat's turn.
+     * A node that falls a full queue behind is disconnected rather than
+     * silently missing events; it catches up when it reconnects.
+     */
+    private final class Peer {
+        private final int nodeId;
+        private final InetSocketAddress address;
+        private volatile Connection connection;
+
+        Peer(int nodeId, InetSocketAddress address) {
+            this.nodeId = nodeId;
+            this.address = address;
+        }
+
+        boolean isConnected() {
+            return connection != null;
+        }
+
+        synchronized boolean connect() {
+            Socket socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.connect(address, CONNECT_TIMEOUT_MILLIS);
+                Connection connected = new Connection(socket);
+                // The greeting goes first, before anything else can be queued
+                long now = System.currentTimeMillis();
+                connected.queue.add(frame(FrameCodec.PUSH, 0, HELLO, ClusterBus.this.nodeId, now,
+                        sign(ClusterBus.this.nodeId, nodeId, now)));
+                connection = connected;
+                connected.writer.start();
+                return true;
+            } catch (IOException e) {
+                try {
+                    socket.close();
+                } catch (IOException ignored) {
+                    // Never connected
+                }
+                return false;
+            }
+        }
+
+        /**
+         * Queue a frame without waiting for it to be written. Returns false if
+         * the node is down, or so far behind that it has just been disconnected.
+         */
+        boolean send(ByteBuffer frame) {
+            Connection current = connection;
+            if (current == null) {
+                return false;
+            }
+            if (!current.queue.offer(frame)) {
+                System.err.println("Cluster node " + nodeId + " is " + QUEUE_CAPACITY
+                        + " frames behind, disconnecting");
+                close(current);
+                return false;
+            }
+            return true;
+        }
+
+        synchronized void close() {
+            if (connection != null) {
+                close(connection);
+            }
+        }
+
+        /**
+         * Close a connection, and forget it unless a newer one has replaced it
+         */
+        private synchronized void close(Connection closing) {
+            if (connection == closing) {
+                connection = null;
+            }
+            closing.close();
+        }
+
+        private final class Connection {
+            private final Socket socket;
+            private final OutputStream out;
+            private final BlockingQueue<ByteBuffer> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            private final Thread writer;
+
+            Connection(Socket socket) throws IOException {
+                this.socket = socket;
+                this.out = new BufferedOutputStream(socket.getOutputStream());
+                this.writer = new Thread(this::writeLoop, "cluster-writer-" + nodeId);
+                this.writer.setDaemon(true);
+            }
+
+            private void writeLoop() {
+                try {
+                    while (true) {
+                        ByteBuffer frame = queue.take();
+                        out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+                        // Frames queued meanwhile go out in the same flush
+                        if (queue.isEmpty()) {
+                            out.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    if (!socket.isClosed()) {
+                        System.err.println("Failed to send to cluster node " + nodeId + ": " + e.getMessage());
+                    }
+                    Peer.this.close(this);
+                } catch (InterruptedException e) {
+                    // Closed
+                }
+            }
+
+            void close() {
+                writer.interrupt();
+                queue.clear();
+                try {
+                    // Also unblocks a write stuck on a node that stopped reading
+                    socket.close();
+                } catch (IOException e) {
+                    // Already closed
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.chatapp.net;
+
+import com.chatapp.model.dto.AvatarImage;
+import com.chatapp.model.dto.CallStats;
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.CompressionStats;
+import com.chatapp.model.dto.DeliveryStats;
+import com.chatapp.model.dto.PresenceEvent;
+import com.chatapp.model.dto.RateLimitStats;
+import com.chatapp.model.dto.SessionStats;
+import com.chatapp.model.dto.UserSummary;
+import com.chatapp.model.dto.WireFormat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.NotSerializableException;
+import java.io.ObjectInput;
+import java.io.ObjectOutput;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary encoding of frames for the NIO transport.
+ *
+ * A frame is a 4-byte big-endian body length followed by the body: a kind byte,
+ * a varint call id, a varint operation id and then the argument or result values.
+ * Values are tagged; DTOs are written with their own {@link Externalizable}
+ * encoding, so they cost the same on this transport as they do over RMI minus
+ * the Java serialization class descriptors.
+ */
+final class FrameCodec {
+
+    // Frame kinds
+    static final int CALL = 1;
+    static final int RESULT = 2;
+    static final int ERROR = 3;
+    static final int PUSH = 4;
+    // Calls off a call the caller stopped waiting for
+    static final int CANCEL = 5;
+
+    static final int HEADER_BYTES = 4;
+
+    // Value tags
+    private static final int NULL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int INT = 3;
+    private static final int LONG = 4;
+    private static final int STRING = 5;
+    private static final int BYTES = 6;
+    private static final int LIST = 7;
+    private static final int MAP = 8;
+    private static final int DTO = 9;
+
+    // Wire ids of the DTOs are their positions here; only append to this list
+    private static final List<Class<? extends Externalizable>> DTO_TYPES = List.of(
+            ChatMessage.class, ChatSummary.class, PresenceEvent.class, UserSummary.class,
+            AvatarImage.class, SessionStats.class, DeliveryStats.class,
+            RateLimitStats.class, CallStats.class, CompressionStats.class);
+
+    private FrameCodec() {
+    }
+
+    /**
+     * Start a frame of the given kind. Finish it with {@link FrameWriter#toFrame()}.
+     */
+    static FrameWriter newFrame(int kind, long callId, int operation) throws IOException {
+        FrameWriter writer = new FrameWriter();
+        writer.writeByte(kind);
+        WireFormat.writeVarLong(writer, callId);
+        WireFormat.writeVarLong(writer, operation);
+        return writer;
+    }
+
+    static void writeValue(FrameWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof Boolean) {
+            out.writeByte((Boolean) value ? TRUE : FALSE);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            WireFormat.writeVarLong(out, (Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            WireFormat.writeVarLong(out, (Long) value);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            WireFormat.writeString(out, (String) value);
+        } else if (value instanceof byte[]) {
+            out.writeByte(BYTES);
+            WireFormat.writeBytes(out, (byte[]) value);
+        } else if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            out.writeByte(LIST);
+            WireFormat.writeVarLong(out, list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        } else if (value instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) value;
+            out.writeByte(MAP);
+            WireFormat.writeVarLong(out, map.size());
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        } else {
+            int typeId = DTO_TYPES.indexOf(value.getClass());
+            if (typeId < 0) {
+                throw new NotSerializableException(value.getClass().getName());
+            }
+            out.writeByte(DTO);
+            WireFormat.writeVarLong(out, typeId);
+            ((Externalizable) value).writeExternal(out);
+        }
+    }
+
+    static Object readValue(FrameReader in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case INT:
+                return (int) WireFormat.readVarLong(in);
+            case LONG:
+                return WireFormat.readVarLong(in);
+            case STRING:
+                return WireFormat.readString(in);
+            case BYTES:
+                return WireFormat.readBytes(in);
+            case LIST: {
+                int size = in.readCount();
+                List<Object> list = new ArrayList<>(size);
+                for (int i = 0; i < size; i++) {
+                    list.add(readValue(in));
+                }
+                return list;
+            }
+            case MAP: {
+                int size = in.readCount();
+                Map<Object, Object> map = new LinkedHashMap<>();
+                for (int i = 0; i < size; i++) {
+                    map.put(readValue(in), readValue(in));
+                }
+                return map;
+            }
+            case DTO: {
+                long typeId = WireFormat.readVarLong(in);
+                if (typeId < 0 || typeId >= DTO_TYPES.size()) {
+                    throw new InvalidObjectException("Unknown DTO type " + typeId);
+                }
+                try {
+                    Externalizable dto = DTO_TYPES.get((int) typeId).getDeclaredConstructor().newInstance();
+                    dto.readExternal(in);
+                    return dto;
+                } catch (ReflectiveOperationException e) {
+                    throw new InvalidObjectException("Cannot create " + DTO_TYPES.get((int) typeId).getSimpleName());
+                }
+            }
+            default:
+                throw new InvalidObjectException("Unknown value tag " + tag);
+        }
+    }
+
+    /**
+     * Builds one frame in memory, leaving room for the length header
+     */
+    static final class FrameWriter extends DataOutputStream implements ObjectOutput {
+
+        FrameWriter() {
+            super(new Buffer());
+            ((Buffer) out).skipHeader();
+        }
+
+        @Override
+        public void writeObject(Object value) throws IOException {
+            writeValue(this, value);
+        }
+
+        /**
+         * The finished frame, header included, ready to write to a channel
+         */
+        ByteBuffer toFrame() {
+            return ((Buffer) out).toFrame();
+        }
+
+        private static final class Buffer extends ByteArrayOutputStream {
+            Buffer() {
+                super(256);
+            }
+
+            void skipHeader() {
+                count = HEADER_BYTES;
+            }
+
+            ByteBuffer toFrame() {
+                ByteBuffer frame = ByteBuffer.wrap(buf, 0, count);
+                frame.putInt(0, count - HEADER_BYTES);
+                return frame;
+            }
+        }
+    }
+
+    /**
+     * Reads values from the body of one received frame
+     */
+    static final class FrameReader extends DataInputStream implements ObjectInput, WireFormat.BoundedInput {
+
+        FrameReader(byte[] body) {
+            super(new ByteArrayInputStream(body));
+        }
+
+        @Override
+        public Object readObject() throws IOException {
+            return readValue(this);
+        }
+
+        /**
+         * Read an element count, rejecting one that couldn't fit in what is left of the frame
+         */
+        int readCount() throws IOException {
+            return WireFormat.readCount(this);
+        }
+    }
+}
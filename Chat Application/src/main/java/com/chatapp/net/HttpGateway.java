@@ -0,0 +1,501 @@
+package com.chatapp.net;
+
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.PresenceEvent;
+import com.chatapp.model.dto.UserSummary;
+import com.chatapp.rmi.CallbackDispatcher;
+import com.chatapp.rmi.LeaseTable;
+import com.chatapp.rmi.RateLimitedException;
+import com.chatapp.rmi.UserClientCallback;
+import com.chatapp.rmi.UserRemoteInterface;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.rmi.RemoteException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Embedded HTTP gateway for scripts and bots that can't speak RMI.
+ *
+ * Form-encoded requests, JSON responses, and a chunked stream of
+ * newline-delimited JSON events. Every call goes through the same user service
+ * object RMI exports, so HTTP users share sessions, chats and message order
+ * with everyone else. An event stream holds no thread while it is idle: its
+ * exchange is left open, deliveries are written from the dispatcher's workers
+ * and one shared timer schedules the pings, so thousands of idle streams cost
+ * only their sockets.
+ *
+ * <pre>
+ * POST /api/login                 username, password -> token
+ * POST /api/logout
+ * GET  /api/chats                 all chats
+ * GET  /api/my-chats              chats the user is subscribed to
+ * POST /api/chats/{id}/join
+ * POST /api/chats/{id}/leave
+ * POST /api/chats/{id}/messages   message
+ * GET  /api/events                chunked event stream
+ * </pre>
+ * Everything except login needs {@code Authorization: Bearer <token>} or a {@code token} query parameter.
+ */
+public class HttpGateway {
+
+    private static final int MAX_STREAMS = Integer.getInteger("chatapp.http.maxStreams", 10_000);
+    private static final long PING_MILLIS = Math.min(Long.getLong("chatapp.http.pingMs", 15_000), LeaseTable.LEASE_MILLIS / 3);
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final UserRemoteInterface service;
+    private final CallbackDispatcher dispatcher;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService pinger;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Long> usersByToken = new ConcurrentHashMap<>();
+    private final Map<Long, String> tokensByUser = new ConcurrentHashMap<>();
+    private final AtomicInteger openStreams = new AtomicInteger();
+    private final Set<EventStream> streams = ConcurrentHashMap.newKeySet();
+
+    public HttpGateway(int port, UserRemoteInterface service, CallbackDispatcher dispatcher) throws IOException {
+        this.service = service;
+        this.dispatcher = dispatcher;
+        this.executor = newExecutor();
+        this.pinger = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "http-pinger");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.createContext("/api/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public int getOpenStreamCount() {
+        return openStreams.get();
+    }
+
+    public void stop() {
+        pinger.shutdownNow();
+        for (EventStream stream : streams) {
+            stream.close();
+        }
+        server.stop(1);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Threads for requests and pings; streams only borrow one while writing
+     */
+    private static ExecutorService newExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "http-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        // An event stream keeps the exchange open after the handler returns
+        boolean streaming = false;
+        try {
+            String method = exchange.getRequestMethod();
+            String[] path = exchange.getRequestURI().getPath().substring("/api/".length()).split("/");
+
+            if (path[0].equals("login") && method.equals("POST")) {
+                login(exchange);
+                return;
+            }
+
+            Long userId = authenticate(exchange);
+            if (userId == null) {
+                sendError(exchange, 401, "Missing or unknown token");
+                return;
+            }
+
+            if (path[0].equals("logout") && method.equals("POST")) {
+                logout(userId);
+                sendJson(exchange, 200, Json.object().put("ok", true).toString());
+            } else if (path[0].equals("chats") && path.length == 1 && method.equals("GET")) {
+                sendJson(exchange, 200, chatsJson(service.getAllChats()));
+            } else if (path[0].equals("my-chats") && method.equals("GET")) {
+                sendJson(exchange, 200, chatsJson(service.getUserChats(userId)));
+            } else if (path[0].equals("chats") && path.length == 3 && method.equals("POST")) {
+                chatAction(exchange, userId, Long.parseLong(path[1]), path[2]);
+            } else if (path[0].equals("events") && method.equals("GET")) {
+                streaming = streamEvents(exchange, userId);
+            } else {
+                sendError(exchange, 404, "No such endpoint");
+            }
+        } catch (NumberFormatException e) {
+            sendError(exchange, 400, "Bad chat id");
+        } catch (RateLimitedException e) {
+            sendError(exchange, 429, e.getMessage());
+        } catch (RemoteException e) {
+            sendError(exchange, 400, e.getMessage());
+        } catch (RuntimeException e) {
+            System.err.println("HTTP request " + exchange.getRequestURI() + " failed: " + e);
+            sendError(exchange, 500, "Internal error");
+        } finally {
+            if (!streaming) {
+                exchange.close();
+            }
+        }
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        Map<String, String> form = readForm(exchange);
+        UserSummary user;
+        try {
+            user = service.login(form.get("username"), form.get("password"));
+        } catch (RemoteException e) {
+            sendError(exchange, 401, e.getMessage());
+            return;
+        }
+
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder token = new StringBuilder();
+        for (byte b : bytes) {
+            token.append(String.format("%02x", b));
+        }
+
+        // One token per user; logging in again revokes the previous one
+        String previous = tokensByUser.put(user.getId(), token.toString());
+        if (previous != null) {
+            usersByToken.remove(previous);
+        }
+        usersByToken.put(token.toString(), user.getId());
+
+        sendJson(exchange, 200, Json.object()
+                .put("token", token.toString())
+                .put("userId", user.getId())
+                .put("nickName", user.getNickName())
+                .toString());
+    }
+
+    private void logout(long userId) throws RemoteException {
+        String token = tokensByUser.remove(userId);
+        if (token != null) {
+            usersByToken.remove(token);
+        }
+        service.unregisterClient(userId);
+    }
+
+    private void chatAction(HttpExchange exchange, long userId, long chatId, String action) throws IOException {
+        switch (action) {
+            case "join":
+                ChatSummary chat = service.joinChat(userId, chatId);
+                sendJson(exchange, 200, chatJson(chat));
+                break;
+            case "leave":
+                service.leaveChat(userId, chatId);
+                sendJson(exchange, 200, Json.object().put("ok", true).toString());
+                break;
+            case "messages":
+                String message = readForm(exchange).get("message");
+                if (message == null || message.isEmpty()) {
+                    sendError(exchange, 400, "Missing message");
+                    return;
+                }
+                service.sendMessage(userId, chatId, message);
+                sendJson(exchange, 200, Json.object().put("ok", true).toString());
+                break;
+            default:
+                sendError(exchange, 404, "No such endpoint");
+        }
+    }
+
+    /**
+     * Leave the exchange open and write each callback to it as a line of JSON.
+     * The stream doubles as the client's lease: it is renewed on every ping
+     * and the registration is dropped when the stream closes. Returns true if
+     * the stream now owns the exchange.
+     */
+    private boolean streamEvents(HttpExchange exchange, long userId) throws IOException {
+        if (openStreams.incrementAndGet() > MAX_STREAMS) {
+            openStreams.decrementAndGet();
+            sendError(exchange, 503, "Too many open event streams");
+            return false;
+        }
+
+        EventStream stream = new EventStream(userId, exchange);
+        streams.add(stream);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            service.registerClient(userId, stream);
+            stream.write(Json.object().put("type", "ready").toString());
+            // The timer only hands each ping to a worker, so a slow reader can't hold up the rest
+            stream.pings = pinger.scheduleAtFixedRate(() -> runOnWorker(stream::ping),
+                    PING_MILLIS, PING_MILLIS, TimeUnit.MILLISECONDS);
+            if (stream.closed.get()) {
+                stream.pings.cancel(false);   // closed before its pings were scheduled
+            }
+        } catch (RemoteException | RejectedExecutionException e) {
+            // Client went away, the service refused the registration, or the gateway is stopping
+            stream.close();
+        } catch (IOException | RuntimeException e) {
+            stream.close();
+            throw e;
+        }
+        return true;
+    }
+
+    private void runOnWorker(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Stopping
+        }
+    }
+
+    private Long authenticate(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        String token = null;
+        if (header != null && header.startsWith("Bearer ")) {
+            token = header.substring("Bearer ".length()).trim();
+        } else if (exchange.getRequestURI().getRawQuery() != null) {
+            token = parseForm(exchange.getRequestURI().getRawQuery()).get("token");
+        }
+        return token != null ? usersByToken.get(token) : null;
+    }
+
+    private static Map<String, String> readForm(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (body.size() + read > MAX_BODY_BYTES) {
+                    throw new RemoteException("Request body too large");
+                }
+                body.write(buffer, 0, read);
+            }
+        }
+        return parseForm(body.toString(StandardCharsets.UTF_8));
+    }
+
+    private static Map<String, String> parseForm(String encoded) {
+        Map<String, String> form = new HashMap<>();
+        for (String pair : encoded.split("&")) {
+            int eq = pair.indexOf('=');
+            if (eq > 0) {
+                form.put(URLDecoder.decode(pair.substring(0, eq), StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8));
+            }
+        }
+        return form;
+    }
+
+    private static String chatsJson(List<ChatSummary> chats) {
+        List<String> elements = new ArrayList<>(chats.size());
+        for (ChatSummary chat : chats) {
+            elements.add(chatJson(chat));
+        }
+        return Json.array(elements);
+    }
+
+    private static String chatJson(ChatSummary chat) {
+        return Json.object()
+                .put("id", chat.getId())
+                .put("name", chat.getName())
+                .put("active", chat.isActive())
+                .put("startedAt", chat.getStartedAt())
+                .put("endedAt", chat.getEndedAt())
+                .put("subscribers", chat.getSubscriberCount())
+                .toString();
+    }
+
+    private static void sendError(HttpExchange exchange, int status, String message) throws IOException {
+        sendJson(exchange, status, Json.object().put("error", message).toString());
+    }
+
+    private static void sendJson(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * Callback target for one open event stream. Deliveries are written straight
+     * to the response from the dispatcher's worker, so a slow reader backs up
+     * its own outbox and is handled by the outbox's overflow policy.
+     */
+    private final class EventStream implements UserClientCallback {
+
+        private final long userId;
+        private final HttpExchange exchange;
+        private final OutputStream out;
+        private final AtomicBoolean closed = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> pings;
+
+        EventStream(long userId, HttpExchange exchange) {
+            this.userId = userId;
+            this.exchange = exchange;
+            this.out = exchange.getResponseBody();
+        }
+
+        void write(String lines) throws RemoteException {
+            synchronized (out) {
+                try {
+                    if (closed.get()) {
+                        throw new RemoteException("Event stream closed");
+                    }
+                    out.write((lines + "\n").getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                } catch (IOException e) {
+                    close();
+                    throw e instanceof RemoteException ? (RemoteException) e : new RemoteException("Event stream closed", e);
+                }
+            }
+        }
+
+        /**
+         * Keep the connection and the lease alive, and give up the stream if
+         * another client has registered for the user since
+         */
+        void ping() {
+            try {
+                UserClientCallback current = dispatcher.callbackOf(userId);
+                if (current != null && current != this) {
+                    write(Json.object().put("type", "replaced")
+                            .put("error", "Another client has registered for this user").toString());
+                    close();
+                    return;
+                }
+                write(Json.object().put("type", "ping").toString());
+                if (service.renewLease(userId) == 0) {
+                    service.registerClient(userId, this);
+                }
+            } catch (RemoteException e) {
+                close();
+            }
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            ScheduledFuture<?> scheduled = pings;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            exchange.close();
+            streams.remove(this);
+            openStreams.decrementAndGet();
+            // Not inline: this may run on a dispatcher worker in the middle of a delivery
+            runOnWorker(() -> dispatcher.callbackLost(userId, this));
+        }
+
+        @Override
+        public void receiveMessage(ChatMessage message) throws RemoteException {
+            write(messageJson(message));
+        }
+
+        @Override
+        public void receiveMessages(List<ChatMessage> messages) throws RemoteException {
+            List<String> lines = new ArrayList<>(messages.size());
+            for (ChatMessage message : messages) {
+                lines.add(messageJson(message));
+            }
+            write(String.join("\n", lines));
+        }
+
+        @Override
+        public void userJoined(PresenceEvent event) throws RemoteException {
+            write(presenceJson("joined", event));
+        }
+
+        @Override
+        public void userLeft(PresenceEvent event) throws RemoteException {
+            write(presenceJson("left", event));
+        }
+
+        @Override
+        public void subscriptionChanged(boolean subscribed, long chatId) throws RemoteException {
+            write(Json.object().put("type", "subscriptionChanged").put("chatId", chatId)
+                    .put("subscribed", subscribed).toString());
+        }
+
+        @Override
+        public void chatStarted(ChatSummary chat) throws RemoteException {
+            write(Json.object().put("type", "chatStarted").putRaw("chat", chatJson(chat)).toString());
+        }
+
+        @Override
+        public void chatEnded(ChatSummary chat) throws RemoteException {
+            write(Json.object().put("type", "chatEnded").putRaw("chat", chatJson(chat)).toString());
+        }
+
+        @Override
+        public void deliveryGap(int droppedCount) throws RemoteException {
+            write(Json.object().put("type", "gap").put("dropped", droppedCount).toString());
+        }
+
+        @Override
+        public void userRemoved() throws RemoteException {
+            write(Json.object().put("type", "userRemoved").toString());
+            close();
+        }
+
+        @Override
+        public void serverShuttingDown() throws RemoteException {
+            write(Json.object().put("type", "serverShuttingDown").toString());
+            close();
+        }
+
+        private String messageJson(ChatMessage message) {
+            return Json.object()
+                    .put("type", "message")
+                    .put("chatId", message.getChatId())
+                    .put("seq", message.getSequence())
+                    .put("userId", message.getUserId())
+                    .put("nickName", message.getNickName())
+                    .put("message", message.getMessage())
+                    .put("timestamp", message.getTimestamp())
+                    .toString();
+        }
+
+        private String presenceJson(String type, PresenceEvent event) {
+            return Json.object()
+                    .put("type", type)
+                    .put("chatId", event.getChatId())
+                    .put("userId", event.getUserId())
+                    .put("nickName", event.getNickName())
+                    .put("timestamp", event.getTimestamp())
+                    .toString();
+        }
+    }
+}
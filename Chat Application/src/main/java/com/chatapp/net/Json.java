@@ -0,0 +1,78 @@
+package com.chatapp.net;
+
+import java.util.List;
+
+/**
+ * Minimal JSON object builder for the HTTP gateway's responses and events
+ */
+final class Json {
+
+    private final StringBuilder out = new StringBuilder("{");
+
+    static Json object() {
+        return new Json();
+    }
+
+    Json put(String name, String value) {
+        return putRaw(name, value == null ? "null" : quote(value));
+    }
+
+    Json put(String name, long value) {
+        return putRaw(name, Long.toString(value));
+    }
+
+    Json put(String name, boolean value) {
+        return putRaw(name, Boolean.toString(value));
+    }
+
+    /**
+     * Add a value that is already JSON, such as a nested object or array
+     */
+    Json putRaw(String name, String json) {
+        if (out.length() > 1) {
+            out.append(',');
+        }
+        out.append(quote(name)).append(':').append(json);
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return out + "}";
+    }
+
+    static String array(List<String> elements) {
+        return "[" + String.join(",", elements) + "]";
+    }
+
+    static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
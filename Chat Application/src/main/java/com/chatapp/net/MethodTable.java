@@ -0,0 +1,45 @@
+package com.chatapp.net;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stable numbering of an interface's methods, used as operation ids on the wire.
+ * Methods are ordered by name and parameter types, so both ends derive the
+ * same ids from the same interface without a hand-maintained list.
+ */
+final class MethodTable {
+
+    private final Method[] methods;
+    private final Map<Method, Integer> ids = new HashMap<>();
+
+    MethodTable(Class<?> type) {
+        this.methods = type.getMethods();
+        Arrays.sort(methods, Comparator.comparing(MethodTable::signature));
+        for (int i = 0; i < methods.length; i++) {
+            ids.put(methods[i], i);
+        }
+    }
+
+    int idOf(Method method) {
+        Integer id = ids.get(method);
+        if (id == null) {
+            throw new IllegalArgumentException("Not a remote operation: " + method);
+        }
+        return id;
+    }
+
+    /**
+     * Returns null for an id this side doesn't know
+     */
+    Method get(long id) {
+        return id >= 0 && id < methods.length ? methods[(int) id] : null;
+    }
+
+    private static String signature(Method method) {
+        return method.getName() + Arrays.toString(method.getParameterTypes());
+    }
+}
@@ -0,0 +1,415 @@
+package com.chatapp.net;
+
+import com.chatapp.model.dto.WireFormat;
+import com.chatapp.net.FrameCodec.FrameReader;
+import com.chatapp.net.FrameCodec.FrameWriter;
+import com.chatapp.rmi.CallbackDispatcher;
+import com.chatapp.rmi.UserClientCallback;
+import com.chatapp.rmi.UserRemoteInterface;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.rmi.RemoteException;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Selector-based listener serving the {@link UserRemoteInterface} operations
+ * over length-prefixed binary frames.
+ *
+ * One thread multiplexes every connection; decoded calls run on a small worker
+ * pool against the same service object the RMI registry exports. Callbacks are
+ * pushed back over the connection the client opened, so clients need no
+ * listening socket of their own and work from behind NAT.
+ */
+public class NioServer {
+
+    private static final int MAX_FRAME_BYTES = Integer.getInteger("chatapp.nio.maxFrameBytes", 8 * 1024 * 1024);
+    private static final long MAX_PENDING_BYTES = Long.getLong("chatapp.nio.maxPendingBytes", 4L * 1024 * 1024);
+    private static final int MAX_CALLS_IN_FLIGHT = Integer.getInteger("chatapp.nio.maxInFlight", 64);
+    private static final int WORKER_THREADS = Integer.getInteger("chatapp.nio.workers",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+    private static final int READ_BUFFER_BYTES = 8 * 1024;
+
+    static final MethodTable OPERATIONS = new MethodTable(UserRemoteInterface.class);
+    static final MethodTable CALLBACKS = new MethodTable(UserClientCallback.class);
+
+    private final UserRemoteInterface service;
+    private final CallbackDispatcher dispatcher;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final ExecutorService workers;
+    private final Thread selectorThread;
+    private final Queue<Connection> interestUpdates = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private volatile boolean running = true;
+
+    public NioServer(int port, UserRemoteInterface service, CallbackDispatcher dispatcher) throws IOException {
+        this.service = service;
+        this.dispatcher = dispatcher;
+        this.selector = Selector.open();
+        this.serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(WORKER_THREADS, r -> {
+            Thread thread = new Thread(r, "nio-worker-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.selectorThread = new Thread(this::run, "nio-selector");
+        selectorThread.setDaemon(true);
+    }
+
+    public void start() {
+        selectorThread.start();
+    }
+
+    public int getPort() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Stop accepting, close every connection and release the selector
+     */
+    public void close() {
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        workers.shutdownNow();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                selector.select();
+
+                Connection pending;
+                while ((pending = interestUpdates.poll()) != null) {
+                    try {
+                        pending.updateInterest();
+                    } catch (IOException | CancelledKeyException e) {
+                        pending.close();
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (key.isValid() && key.isAcceptable()) {
+                        accept();
+                    } else if (key.attachment() instanceof Connection) {
+                        serve(key, (Connection) key.attachment());
+                    }
+                }
+            } catch (IOException e) {
+                System.err.println("NIO selector failed: " + e.getMessage());
+            }
+        }
+
+        for (SelectionKey key : selector.keys()) {
+            if (key.attachment() instanceof Connection) {
+                ((Connection) key.attachment()).close();
+            }
+        }
+        try {
+            serverChannel.close();
+            selector.close();
+        } catch (IOException e) {
+            System.err.println("Failed to close NIO listener: " + e.getMessage());
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+        connectionCount.incrementAndGet();
+    }
+
+    private void serve(SelectionKey key, Connection connection) {
+        try {
+            if (key.isReadable()) {
+                connection.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                connection.flush();
+            }
+        } catch (IOException | CancelledKeyException e) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Decode one call, run it against the service and send back its result
+     */
+    private void handle(Connection connection, byte[] body) {
+        long callId = 0;
+        try {
+            FrameReader in = new FrameReader(body);
+            int kind = in.readUnsignedByte();
+            callId = WireFormat.readVarLong(in);
+            long operation = WireFormat.readVarLong(in);
+            if (kind != FrameCodec.CALL) {
+                throw new InvalidObjectException("Unexpected frame kind " + kind);
+            }
+
+            Method method = OPERATIONS.get(operation);
+            if (method == null) {
+                throw new InvalidObjectException("Unknown operation " + operation);
+            }
+            Object[] args = new Object[method.getParameterCount()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readObject();
+            }
+
+            // The client's callback is this connection, not an object it could send
+            if (method.getName().equals("registerClient")) {
+                args[1] = connection.pushCallback;
+                connection.registeredUserId = (Long) args[0];
+            }
+
+            Object result = method.invoke(service, args);
+            FrameWriter reply = FrameCodec.newFrame(FrameCodec.RESULT, callId, 0);
+            reply.writeObject(result);
+            connection.send(reply.toFrame());
+        } catch (InvocationTargetException e) {
+            replyError(connection, callId, e.getCause());
+        } catch (Exception e) {
+            replyError(connection, callId, e);
+        } finally {
+            connection.callFinished();
+        }
+    }
+
+    private void replyError(Connection connection, long callId, Throwable error) {
+        try {
+            FrameWriter reply = FrameCodec.newFrame(FrameCodec.ERROR, callId, 0);
+            reply.writeObject(error.getClass().getName());
+            reply.writeObject(error.getMessage());
+            connection.send(reply.toFrame());
+        } catch (IOException e) {
+            // Connection is gone; nothing to report to
+        }
+    }
+
+    /**
+     * State of one client connection. Reads, writes and interest changes
+     * happen on the selector thread; other threads only queue frames.
+     */
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicInteger callsInFlight = new AtomicInteger();
+        private final AtomicBoolean updateRequested = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private final UserClientCallback pushCallback;
+        private ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        private volatile long registeredUserId = -1;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            this.pushCallback = (UserClientCallback) Proxy.newProxyInstance(UserClientCallback.class.getClassLoader(),
+                    new Class<?>[]{UserClientCallback.class}, (proxy, method, args) -> {
+                        if (method.getDeclaringClass() == Object.class) {
+                            switch (method.getName()) {
+                                case "equals":
+                                    return proxy == args[0];
+                                case "hashCode":
+                                    return System.identityHashCode(proxy);
+                                default:
+                                    return "NioCallback[" + channel.socket().getRemoteSocketAddress() + "]";
+                            }
+                        }
+                        push(method, args);
+                        return null;
+                    });
+        }
+
+        void read() throws IOException {
+            if (channel.read(readBuffer) < 0) {
+                close();
+                return;
+            }
+            dispatchFrames();
+        }
+
+        // Hand complete frames to the workers, stopping while too many calls are in flight
+        private void dispatchFrames() throws IOException {
+            readBuffer.flip();
+            while (readBuffer.remaining() >= FrameCodec.HEADER_BYTES && callsInFlight.get() < MAX_CALLS_IN_FLIGHT) {
+                int length = readBuffer.getInt(readBuffer.position());
+                if (length <= 0 || length > MAX_FRAME_BYTES) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                if (readBuffer.remaining() < FrameCodec.HEADER_BYTES + length) {
+                    break;
+                }
+                readBuffer.position(readBuffer.position() + FrameCodec.HEADER_BYTES);
+                byte[] body = new byte[length];
+                readBuffer.get(body);
+
+                callsInFlight.incrementAndGet();
+                try {
+                    workers.execute(() -> handle(this, body));
+                } catch (RejectedExecutionException e) {
+                    throw new IOException("Server is shutting down");
+                }
+            }
+            readBuffer.compact();
+
+            if (readBuffer.position() >= FrameCodec.HEADER_BYTES) {
+                // Grow to fit a frame larger than the buffer
+                int needed = FrameCodec.HEADER_BYTES + readBuffer.getInt(0);
+                if (needed > readBuffer.capacity() && needed <= FrameCodec.HEADER_BYTES + MAX_FRAME_BYTES) {
+                    ByteBuffer larger = ByteBuffer.allocate(needed);
+                    readBuffer.flip();
+                    larger.put(readBuffer);
+                    readBuffer = larger;
+                }
+            } else if (readBuffer.position() == 0 && readBuffer.capacity() > READ_BUFFER_BYTES) {
+                // Give back the memory a large frame needed
+                readBuffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+            }
+            updateInterest();
+        }
+
+        void flush() throws IOException {
+            ByteBuffer frame;
+            while ((frame = outbound.peek()) != null) {
+                int written = channel.write(frame);
+                pendingBytes.addAndGet(-written);
+                if (frame.hasRemaining()) {
+                    return;   // socket buffer is full; wait until it is writable again
+                }
+                outbound.poll();
+            }
+            updateInterest();
+        }
+
+        /**
+         * Queue a frame for the selector thread to write. Fails, and drops the
+         * connection, once the client has left too much unread.
+         */
+        void send(ByteBuffer frame) throws RemoteException {
+            if (closed.get()) {
+                throw new RemoteException("Connection closed");
+            }
+            if (pendingBytes.addAndGet(frame.remaining()) > MAX_PENDING_BYTES) {
+                close();
+                throw new RemoteException("Client stopped reading; connection dropped");
+            }
+            outbound.add(frame);
+            requestInterestUpdate();
+        }
+
+        void callFinished() {
+            if (callsInFlight.getAndDecrement() >= MAX_CALLS_IN_FLIGHT) {
+                // Reading was paused; resume it
+                requestInterestUpdate();
+            }
+        }
+
+        // Must run on the selector thread
+        void updateInterest() throws IOException {
+            updateRequested.set(false);
+            if (!key.isValid()) {
+                return;
+            }
+            boolean canRead = callsInFlight.get() < MAX_CALLS_IN_FLIGHT;
+            int ops = (canRead ? SelectionKey.OP_READ : 0) | (outbound.isEmpty() ? 0 : SelectionKey.OP_WRITE);
+            boolean resumed = canRead && (key.interestOps() & SelectionKey.OP_READ) == 0;
+            key.interestOps(ops);
+
+            // Frames that arrived while reading was paused are already buffered
+            if (resumed && readBuffer.position() > 0) {
+                dispatchFrames();
+            }
+        }
+
+        private void requestInterestUpdate() {
+            if (updateRequested.compareAndSet(false, true)) {
+                interestUpdates.add(this);
+                selector.wakeup();
+            }
+        }
+
+        private void push(Method method, Object[] args) throws RemoteException {
+            try {
+                FrameWriter frame = FrameCodec.newFrame(FrameCodec.PUSH, 0, CALLBACKS.idOf(method));
+                if (args != null) {
+                    for (Object arg : args) {
+                        frame.writeObject(arg);
+                    }
+                }
+                send(frame.toFrame());
+            } catch (RemoteException e) {
+                throw e;
+            } catch (IOException e) {
+                throw new RemoteException("Failed to encode " + method.getName(), e);
+            }
+        }
+
+        void close() {
+            if (!closed.compareAndSet(false, true)) {
+                return;
+            }
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Already closed
+            }
+            outbound.clear();
+            connectionCount.decrementAndGet();
+
+            // Let the dispatcher drop the registration off the selector thread
+            long userId = registeredUserId;
+            if (userId >= 0) {
+                try {
+                    workers.execute(() -> dispatcher.callbackLost(userId, pushCallback));
+                } catch (RejectedExecutionException e) {
+                    // Shutting down
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.chatapp.net;
+
+import com.chatapp.model.dto.WireFormat;
+import com.chatapp.net.FrameCodec.FrameReader;
+import com.chatapp.net.FrameCodec.FrameWriter;
+import com.chatapp.rmi.UserClientCallback;
+import com.chatapp.rmi.UserRemoteInterface;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.rmi.RemoteException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side of the NIO transport.
+ * {@link #connect} returns a {@link UserRemoteInterface} whose calls travel as
+ * frames over a single socket. Callbacks pushed by the server arrive on the
+ * same socket and are handed, in order, to the callback passed to
+ * {@code registerClient}, which therefore doesn't need to be exported.
+ */
+public final class NioUserClient implements InvocationHandler {
+
+    private static final long CALL_TIMEOUT_MILLIS = Long.getLong("chatapp.nio.callTimeoutMs", 30_000);
+    private static final int CONNECT_TIMEOUT_MILLIS = 10_000;
+
+    private final String host;
+    private final int port;
+    private final AtomicLong nextCallId = new AtomicLong();
+    private final Map<Long, CompletableFuture<Object>> pendingCalls = new ConcurrentHashMap<>();
+    private final ExecutorService pushExecutor;
+    private volatile UserClientCallback callback;
+    private Socket socket;
+    private OutputStream out;
+
+    private NioUserClient(String host, int port) {
+        this.host = host;
+        this.port = port;
+        this.pushExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "nio-push");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Connect to a server's NIO listener
+     */
+    public static UserRemoteInterface connect(String host, int port) throws IOException {
+        NioUserClient client = new NioUserClient(host, port);
+        client.ensureConnected();
+        return (UserRemoteInterface) Proxy.newProxyInstance(UserRemoteInterface.class.getClassLoader(),
+                new Class<?>[]{UserRemoteInterface.class}, client);
+    }
+
+    /**
+     * Whether a service was obtained from {@link #connect}, so callbacks go over its socket
+     */
+    public static boolean isNioClient(Object service) {
+        return Proxy.isProxyClass(service.getClass()) && Proxy.getInvocationHandler(service) instanceof NioUserClient;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        if (method.getDeclaringClass() == Object.class) {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    return "NioUserClient[" + host + ":" + port + "]";
+            }
+        }
+
+        Object[] callArgs = args != null ? args.clone() : new Object[0];
+        if (method.getName().equals("registerClient")) {
+            // Keep the callback here; the server pushes to it over this connection
+            callback = (UserClientCallback) callArgs[1];
+            callArgs[1] = null;
+        }
+
+        long callId = nextCallId.incrementAndGet();
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        pendingCalls.put(callId, result);
+        try {
+            FrameWriter frame = FrameCodec.newFrame(FrameCodec.CALL, callId, NioServer.OPERATIONS.idOf(method));
+            for (Object arg : callArgs) {
+                frame.writeObject(arg);
+            }
+            write(frame.toFrame());
+            return result.get(CALL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (TimeoutException e) {
+            throw new RemoteException("No reply to " + method.getName() + " within " + CALL_TIMEOUT_MILLIS + "ms");
+        } catch (IOException e) {
+            throw e instanceof RemoteException ? e : new RemoteException("Connection to server failed", e);
+        } finally {
+            pendingCalls.remove(callId);
+        }
+    }
+
+    private void write(ByteBuffer frame) throws IOException {
+        synchronized (this) {
+            ensureConnected();
+            try {
+                out.write(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining());
+                out.flush();
+            } catch (IOException e) {
+                disconnect(socket, e);
+                throw e;
+            }
+        }
+    }
+
+    // Reconnect lazily; a re-registration after the lease lapses restores callbacks
+    private synchronized void ensureConnected() throws IOException {
+        if (socket != null && !socket.isClosed()) {
+            return;
+        }
+        Socket connected = new Socket();
+        connected.setTcpNoDelay(true);
+        connected.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT_MILLIS);
+        socket = connected;
+        out = new BufferedOutputStream(connected.getOutputStream());
+
+        Thread reader = new Thread(() -> readLoop(connected), "nio-client-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void readLoop(Socket connected) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(connected.getInputStream()))) {
+            while (true) {
+                int length = in.readInt();
+                if (length <= 0) {
+                    throw new IOException("Bad frame length " + length);
+                }
+                byte[] body = new byte[length];
+                in.readFully(body);
+                receive(body);
+            }
+        } catch (IOException e) {
+            disconnect(connected, e);
+        }
+    }
+
+    private void receive(byte[] body) throws IOException {
+        FrameReader in = new FrameReader(body);
+        int kind = in.readUnsignedByte();
+        long callId = WireFormat.readVarLong(in);
+        long operation = WireFormat.readVarLong(in);
+
+        if (kind == FrameCodec.PUSH) {
+            Method method = NioServer.CALLBACKS.get(operation);
+            UserClientCallback target = callback;
+            if (method == null || target == null) {
+                return;
+            }
+            Object[] args = new Object[method.getParameterCount()];
+            for (int i = 0; i < args.length; i++) {
+                args[i] = in.readObject();
+            }
+            pushExecutor.execute(() -> {
+                try {
+                    method.invoke(target, args);
+                } catch (ReflectiveOperationException e) {
+                    System.err.println("Callback " + method.getName() + " failed: " + e.getCause());
+                }
+            });
+            return;
+        }
+
+        CompletableFuture<Object> result = pendingCalls.get(callId);
+        if (result == null) {
+            return;   // caller already gave up
+        }
+        if (kind == FrameCodec.RESULT) {
+            result.complete(in.readObject());
+        } else if (kind == FrameCodec.ERROR) {
+            result.completeExceptionally(remoteError((String) in.readObject(), (String) in.readObject()));
+        }
+    }
+
+    /**
+     * Rebuild a server-side RemoteException subclass where possible, so callers can tell them apart
+     */
+    private static RemoteException remoteError(String type, String message) {
+        try {
+            Class<?> errorClass = Class.forName(type);
+            if (RemoteException.class.isAssignableFrom(errorClass)) {
+                return (RemoteException) errorClass.getConstructor(String.class).newInstance(message);
+            }
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // Fall through to a plain RemoteException
+        }
+        return new RemoteException(message);
+    }
+
+    private void disconnect(Socket failed, IOException cause) {
+        synchronized (this) {
+            if (socket == failed) {
+                socket = null;
+                out = null;
+            }
+        }
+        try {
+            failed.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+        for (CompletableFuture<Object> result : pendingCalls.values()) {
+            result.completeExceptionally(new RemoteException("Connection to server lost", cause));
+        }
+    }
+}
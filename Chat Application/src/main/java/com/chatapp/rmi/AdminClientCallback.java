@@ -1,9 +1,11 @@
 package com.chatapp.rmi;
 
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.PresenceEvent;
+import com.chatapp.model.dto.UserSummary;
+
 import java.rmi.Remote;
 import java.rmi.RemoteException;
-import java.util.Map;
-import java.util.List;
 
 
  // Callback interface for admin client notifications
@@ -13,29 +15,34 @@ public interface AdminClientCallback extends Remote {
 
      //Notification when a user joins a chat
 
-    void userJoinedChat(Map<String, Object> userData) throws RemoteException;
+    void userJoinedChat(PresenceEvent event) throws RemoteException;
 
 
       //Notification when a user leaves a chat
 
-    void userLeftChat(Map<String, Object> userData) throws RemoteException;
+    void userLeftChat(PresenceEvent event) throws RemoteException;
 
 
      //Notification when a chat is started
 
-    void chatStarted(Map<String, Object> chatData) throws RemoteException;
+    void chatStarted(ChatSummary chat) throws RemoteException;
 
     //Notification when a chat is ended
 
-    void chatEnded(Map<String, Object> chatData) throws RemoteException;
+    void chatEnded(ChatSummary chat) throws RemoteException;
 
 
      //Notification when a new user registers
 
-    void userRegistered(Map<String, Object> userData) throws RemoteException;
+    void userRegistered(UserSummary user) throws RemoteException;
 
 
      //Notification of chat activity metrics
 
-    void chatActivityUpdate(Map<String, Object> activityData) throws RemoteException;
+    void chatActivityUpdate(ChatSummary chat) throws RemoteException;
+
+
+     //Notification that the server is shutting down; nothing more will be delivered
+
+    void serverShuttingDown() throws RemoteException;
 }
\ No newline at end of file
@@ -1,50 +1,62 @@
 package com.chatapp.rmi;
 
+import com.chatapp.model.dto.CallStats;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.CompressionStats;
+import com.chatapp.model.dto.PresenceEvent;
+import com.chatapp.model.dto.DeliveryStats;
+import com.chatapp.model.dto.RateLimitStats;
+import com.chatapp.model.dto.SessionStats;
+import com.chatapp.model.dto.UserSummary;
 import com.chatapp.model.entity.Chat;
-import com.chatapp.model.entity.ChatSubscription;
 import com.chatapp.model.entity.User;
 import com.chatapp.service.AdminChatService;
 import com.chatapp.service.AdminUserService;
+import com.chatapp.util.CallMetrics;
 import com.chatapp.rmi.UserClientCallback;
 
 import java.io.IOException;
 import java.rmi.RemoteException;
-import java.rmi.server.UnicastRemoteObject;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 
  //Implementation of the admin remote interface
 
-public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteInterface {
+public class AdminRemoteImpl implements AdminRemoteInterface {
 
     private final AdminUserService adminUserService;
     private final AdminChatService adminChatService;
-    private final Map<Long, AdminClientCallback> connectedAdmins;
-    private final Map<Long, UserClientCallback> connectedUsers;
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private final SessionRegistry sessions;
+    private final CallbackDispatcher dispatcher;
+    private final ChatActors chatActors;
+    private final RateLimiter rateLimiter;
+    private final ClusterRelay cluster;
+    private final UserRemoteImpl users;
+    private final LeaseTable adminLeases = new LeaseTable(this::adminDeparted);
     private final AdminUserService userService = new AdminUserService();
     private final AdminChatService chatService = new AdminChatService();
 
-    public AdminRemoteImpl() throws RemoteException {
-        super();
-        this.adminUserService = new AdminUserService();
-        this.adminChatService = new AdminChatService();
-        this.connectedAdmins = new ConcurrentHashMap<>();
-        this.connectedUsers = new ConcurrentHashMap<>();
+    /**
+     * A single callback invocation to run against an admin client
+     */
+    private interface AdminNotification {
+        void send(AdminClientCallback callback) throws RemoteException;
     }
 
-    public AdminRemoteImpl(Map<Long, UserClientCallback> connectedUsers) throws RemoteException {
-        super();
+    public AdminRemoteImpl(SessionRegistry sessions, CallbackDispatcher dispatcher, ChatActors chatActors,
+                           RateLimiter rateLimiter, ClusterRelay cluster, UserRemoteImpl users) throws RemoteException {
         this.adminUserService = new AdminUserService();
         this.adminChatService = new AdminChatService();
-        this.connectedAdmins = new ConcurrentHashMap<>();
-        this.connectedUsers = connectedUsers;
+        this.sessions = sessions;
+        this.dispatcher = dispatcher;
+        this.chatActors = chatActors;
+        this.rateLimiter = rateLimiter;
+        this.cluster = cluster;
+        this.users = users;
     }
 
     @Override
-    public Map<String, Object> adminLogin(String username, String password) throws RemoteException {
+    public UserSummary adminLogin(String username, String password) throws RemoteException {
         Optional<User> optionalAdmin = adminUserService.authenticateAdmin(username, password);
 
         if (optionalAdmin.isPresent()) {
@@ -53,14 +65,7 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
                 throw new RemoteException("User is not an admin");
             }
 
-            Map<String, Object> adminData = new HashMap<>();
-            adminData.put("id", admin.getId());
-            adminData.put("email", admin.getEmail());
-            adminData.put("username", admin.getUsername());
-            adminData.put("nickName", admin.getNickName());
-            adminData.put("isAdmin", true);
-
-            return adminData;
+            return UserSummary.from(admin);
         } else {
             throw new RemoteException("Invalid admin credentials");
         }
@@ -72,19 +77,8 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
             Chat chat = adminChatService.createChat(chatName);
 
             // Notify all connected admins about new chat
-            for (AdminClientCallback callback : connectedAdmins.values()) {
-                try {
-                    Map<String, Object> chatData = new HashMap<>();
-                    chatData.put("id", chat.getId());
-                    chatData.put("name", chat.getName());
-                    chatData.put("isActive", false);
-                    chatData.put("createdAt", chat.getCreatedAt().format(formatter));
-
-                    callback.chatActivityUpdate(chatData);
-                } catch (RemoteException e) {
-                    // Handle disconnected admin
-                }
-            }
+            ChatSummary chatData = ChatSummary.from(chat, 0);
+            notifyAdmins(callback -> callback.chatActivityUpdate(chatData));
 
             return chat.getId();
         } catch (Exception e) {
@@ -101,34 +95,15 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
                 Chat chat = adminChatService.startChat(optionalChat.get());
 
                 // Prepare notification data
-                Map<String, Object> chatData = new HashMap<>();
-                chatData.put("chatId", chat.getId());
-                chatData.put("chatName", chat.getName());
-                chatData.put("startTime", chat.getStartedAt().format(formatter));
+                ChatSummary chatData = ChatSummary.from(chat);
 
                 // Notify all connected admins
-                for (AdminClientCallback callback : connectedAdmins.values()) {
-                    try {
-                        callback.chatStarted(chatData);
-                    } catch (RemoteException e) {
-                        // Handle disconnected admin
-                    }
-                }
+                notifyAdmins(callback -> callback.chatStarted(chatData));
 
                 // Notify all subscribed users about chat start
-                for (ChatSubscription subscription : adminChatService.getChatSubscribers(chat)) {
-                    User subscriber = subscription.getUser();
-                    UserClientCallback callback = connectedUsers.get(subscriber.getId());
-
-                    if (callback != null) {
-                        try {
-                            callback.chatStarted(chatData);
-                        } catch (RemoteException e) {
-                            // Client might be disconnected
-                            connectedUsers.remove(subscriber.getId());
-                        }
-                    }
-                }
+                dispatcher.broadcast(adminChatService.getChatSubscriberIds(chat),
+                        callback -> callback.chatStarted(chatData));
+                cluster.publishChatStarted(chatId);
             } else {
                 throw new RemoteException("Chat not found");
             }
@@ -146,37 +121,27 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
                 Chat chat = optionalChat.get();
 
                 if (chat.isActive()) {
-                    Chat endedChat = adminChatService.endChat(chat);
+                    // End on the chat's own turn, after any messages already queued for it. Those
+                    // may have set the transcript path, so end the live chat, not the one loaded above
+                    Chat endedChat = chatActors.call(chatId, "Failed to end chat", actor -> {
+                        Chat activeChat = adminChatService.getActiveChat(chatId)
+                                .orElseThrow(() -> new IllegalStateException("Chat is not active"));
+                        Chat ended = adminChatService.endChat(activeChat);
+                        sessions.clearChat(chatId);
+                        chatActors.retire(actor);
+                        return ended;
+                    });
 
                     // Prepare notification data
-                    Map<String, Object> chatData = new HashMap<>();
-                    chatData.put("chatId", endedChat.getId());
-                    chatData.put("chatName", endedChat.getName());
-                    chatData.put("endTime", endedChat.getEndedAt().format(formatter));
+                    ChatSummary chatData = ChatSummary.from(endedChat);
 
                     // Notify all connected admins
-                    for (AdminClientCallback callback : connectedAdmins.values()) {
-                        try {
-                            callback.chatEnded(chatData);
-                        } catch (RemoteException e) {
-                            // Handle disconnected admin
-                        }
-                    }
+                    notifyAdmins(callback -> callback.chatEnded(chatData));
 
                     // Notify all subscribed users about chat end
-                    for (ChatSubscription subscription : adminChatService.getChatSubscribers(endedChat)) {
-                        User subscriber = subscription.getUser();
-                        UserClientCallback callback = connectedUsers.get(subscriber.getId());
-
-                        if (callback != null) {
-                            try {
-                                callback.chatEnded(chatData);
-                            } catch (RemoteException e) {
-                                // Client might be disconnected
-                                connectedUsers.remove(subscriber.getId());
-                            }
-                        }
-                    }
+                    dispatcher.broadcast(adminChatService.getChatSubscriberIds(endedChat),
+                            callback -> callback.chatEnded(chatData));
+                    cluster.publishChatEnded(chatId);
                 } else {
                     throw new RemoteException("Chat is not active");
                 }
@@ -189,21 +154,13 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
     }
 
     @Override
-    public List<Map<String, Object>> getAllUsers() throws RemoteException {
+    public List<UserSummary> getAllUsers() throws RemoteException {
         try {
             List<User> users = adminUserService.getAllUsers();
-            List<Map<String, Object>> userDataList = new ArrayList<>();
+            List<UserSummary> userDataList = new ArrayList<>(users.size());
 
             for (User user : users) {
-                Map<String, Object> userData = new HashMap<>();
-                userData.put("id", user.getId());
-                userData.put("email", user.getEmail());
-                userData.put("username", user.getUsername());
-                userData.put("nickName", user.getNickName());
-                userData.put("isAdmin", user.isAdmin());
-                userData.put("hasProfilePicture", user.getProfilePicture() != null && user.getProfilePicture().length > 0);
-
-                userDataList.add(userData);
+                userDataList.add(UserSummary.from(user));
             }
 
             return userDataList;
@@ -225,25 +182,17 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
                     throw new RemoteException("Cannot remove admin users");
                 }
 
+                // Leave every chat the way a departing client does, so the others see it go
+                // and an emptied chat ends, then tell the client and drop it
+                users.removeUser(userId);
                 adminUserService.deleteUser(userToRemove);
+                sessions.invalidate(userId);
+                cluster.publishUserRemoved(userId);
 
                 // Notify connected admins about user removal
-                for (AdminClientCallback callback : connectedAdmins.values()) {
-                    try {
-                        Map<String, Object> userData = new HashMap<>();
-                        userData.put("id", userId);
-                        userData.put("removed", true);
-
-                        callback.userLeftChat(userData);
-                    } catch (RemoteException e) {
-                        // Handle disconnected admin
-                    }
-                }
-
-                // If user is connected, disconnect them
-                if (connectedUsers.containsKey(userId)) {
-                    connectedUsers.remove(userId);
-                }
+                PresenceEvent event = new PresenceEvent(PresenceEvent.Type.REMOVED, 0, userId,
+                        userToRemove.getNickName(), System.currentTimeMillis(), null);
+                notifyAdmins(callback -> callback.userLeftChat(event));
             } else {
                 throw new RemoteException("User not found");
             }
@@ -253,28 +202,13 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
     }
 
     @Override
-    public List<Map<String, Object>> getAdminChatList() throws RemoteException {
+    public List<ChatSummary> getAdminChatList() throws RemoteException {
         try {
             List<Chat> chats = adminChatService.getAllChats();
-            List<Map<String, Object>> chatDataList = new ArrayList<>();
+            List<ChatSummary> chatDataList = new ArrayList<>(chats.size());
 
             for (Chat chat : chats) {
-                Map<String, Object> chatData = new HashMap<>();
-                chatData.put("id", chat.getId());
-                chatData.put("name", chat.getName());
-                chatData.put("isActive", chat.isActive());
-                chatData.put("createdAt", chat.getCreatedAt().format(formatter));
-                chatData.put("subscriberCount", adminChatService.getChatSubscribers(chat).size());
-
-                if (chat.getStartedAt() != null) {
-                    chatData.put("startedAt", chat.getStartedAt().format(formatter));
-                }
-
-                if (chat.getEndedAt() != null) {
-                    chatData.put("endedAt", chat.getEndedAt().format(formatter));
-                }
-
-                chatDataList.add(chatData);
+                chatDataList.add(ChatSummary.from(chat, adminChatService.getSubscriberCount(chat)));
             }
 
             return chatDataList;
@@ -289,7 +223,8 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
             Optional<User> optionalAdmin = adminUserService.getUserById(adminId);
 
             if (optionalAdmin.isPresent() && optionalAdmin.get().isAdmin()) {
-                connectedAdmins.put(adminId, callback);
+                sessions.attachAdminClient(adminId, callback);
+                adminLeases.grant(adminId);
             } else {
                 throw new RemoteException("Not an admin user");
             }
@@ -300,7 +235,69 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
 
     @Override
     public void unregisterAdminClient(long adminId) throws RemoteException {
-        connectedAdmins.remove(adminId);
+        adminLeases.revoke(adminId);
+        sessions.detachAdminClient(adminId);
+    }
+
+    @Override
+    public long renewAdminLease(long adminId) throws RemoteException {
+        if (sessions.isAdminConnected(adminId) && adminLeases.renew(adminId)) {
+            return LeaseTable.LEASE_MILLIS;
+        }
+        return 0;
+    }
+
+    @Override
+    public SessionStats getSessionStats() throws RemoteException {
+        return new SessionStats(sessions.getSessionCount(), sessions.getConnectedUserCount(),
+                sessions.getConnectedAdminCount(), sessions.getOccupiedChatCount());
+    }
+
+    @Override
+    public DeliveryStats getDeliveryStats() throws RemoteException {
+        return dispatcher.getStats();
+    }
+
+    @Override
+    public RateLimitStats getRateLimitStats() throws RemoteException {
+        return rateLimiter.getStats();
+    }
+
+    @Override
+    public CallStats getCallStats() throws RemoteException {
+        return CallMetrics.getInstance().getStats();
+    }
+
+    @Override
+    public CompressionStats getCompressionStats() throws RemoteException {
+        return CompressingSocketFactory.getStats();
+    }
+
+    private void adminDeparted(long adminId) {
+        sessions.detachAdminClient(adminId);
+        System.out.println("Admin client " + adminId + " lease expired");
+    }
+
+    /**
+     * Tell every connected admin client the server is going away
+     */
+    void notifyShutdown() {
+        notifyAdmins(AdminClientCallback::serverShuttingDown);
+    }
+
+    /**
+     * Call every connected admin client, dropping any that can no longer be reached
+     */
+    private void notifyAdmins(AdminNotification notification) {
+        sessions.forEachAdminClient((adminId, callback) -> {
+            try {
+                notification.send(callback);
+            } catch (RemoteException e) {
+                if (sessions.detachAdminClient(adminId, callback)) {
+                    adminLeases.revoke(adminId);
+                }
+            }
+        });
     }
     @Override
     public void subscribeUserToChat(long userId, long chatId) throws RemoteException {
@@ -310,6 +307,7 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
 
             if (userOpt.isPresent() && chatOpt.isPresent()) {
                 chatService.subscribeUserToChat(userOpt.get(), chatOpt.get());
+                cluster.publishSubscribed(chatId, userId);
             } else {
                 throw new RemoteException("User or Chat not found.");
             }
@@ -326,6 +324,7 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
 
             if (userOpt.isPresent() && chatOpt.isPresent()) {
                 chatService.forceUnsubscribeUserFromChat(userOpt.get(), chatOpt.get());
+                cluster.publishUnsubscribed(chatId, userId);
             } else {
                 throw new RemoteException("User or Chat not found.");
             }
@@ -334,12 +333,4 @@ public class AdminRemoteImpl extends UnicastRemoteObject implements AdminRemoteI
         }
     }
 
-
-
-    //Set the map of connected users from the user service
-
-    public void setConnectedUsers(Map<Long, UserClientCallback> connectedUsers) {
-        this.connectedUsers.clear();
-        this.connectedUsers.putAll(connectedUsers);
-    }
 }
\ No newline at end of file
@@ -1,9 +1,16 @@
 package com.chatapp.rmi;
 
+import com.chatapp.model.dto.CallStats;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.CompressionStats;
+import com.chatapp.model.dto.DeliveryStats;
+import com.chatapp.model.dto.RateLimitStats;
+import com.chatapp.model.dto.SessionStats;
+import com.chatapp.model.dto.UserSummary;
+
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.List;
-import java.util.Map;
 
 
  //Remote interface for admin-specific chat operations
@@ -13,7 +20,7 @@ public interface AdminRemoteInterface extends Remote {
 
     // Authenticate an admin user
 
-    Map<String, Object> adminLogin(String username, String password) throws RemoteException;
+    UserSummary adminLogin(String username, String password) throws RemoteException;
 
 
      //Create a new chat
@@ -32,7 +39,7 @@ public interface AdminRemoteInterface extends Remote {
 
      //Get all users in the system
 
-    List<Map<String, Object>> getAllUsers() throws RemoteException;
+    List<UserSummary> getAllUsers() throws RemoteException;
 
 
      //Remove a user from the system
@@ -42,7 +49,7 @@ public interface AdminRemoteInterface extends Remote {
 
      // Get all chats in the system
 
-    List<Map<String, Object>> getAdminChatList() throws RemoteException;
+    List<ChatSummary> getAdminChatList() throws RemoteException;
 
 
     //  Register admin client for receiving notifications
@@ -53,6 +60,26 @@ public interface AdminRemoteInterface extends Remote {
     // Unregister admin client from receiving notifications
 
     void unregisterAdminClient(long adminId) throws RemoteException;
+
+    // Keep this admin client's registration alive. Returns the lease duration in
+    // milliseconds, or 0 if the lease has lapsed and the client must register again
+    long renewAdminLease(long adminId) throws RemoteException;
+
+    // Get counts of logged in users and connected clients
+    SessionStats getSessionStats() throws RemoteException;
+
+    // Get outbound queue depths and drop counters for connected user clients
+    DeliveryStats getDeliveryStats() throws RemoteException;
+
+    // Get the configured rate limits and how often users have hit them
+    RateLimitStats getRateLimitStats() throws RemoteException;
+
+    // Get call counts and latencies per remote method, plus the phases of sending a message
+    CallStats getCallStats() throws RemoteException;
+
+    // Get how many bytes the compressing sockets took in and put on the wire
+    CompressionStats getCompressionStats() throws RemoteException;
+
     // Subscribe a user to a chat
     void subscribeUserToChat(long userId, long chatId) throws RemoteException;
 
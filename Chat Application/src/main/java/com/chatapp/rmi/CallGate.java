@@ -0,0 +1,57 @@
+package com.chatapp.rmi;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.rmi.RemoteException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lets remote calls through until the server starts shutting down, then
+ * turns new ones away while the calls already running finish.
+ */
+final class CallGate {
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    /**
+     * Wrap a service so every call through the interface passes this gate
+     */
+    @SuppressWarnings("unchecked")
+    <T> T guard(Class<T> type, T target) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return method.getName().equals("equals") ? proxy == args[0] : method.invoke(target, args);
+            }
+
+            // Counted before the check, so close() can't miss a call that got past it
+            inFlight.incrementAndGet();
+            try {
+                if (closed) {
+                    throw new RemoteException("Server is shutting down");
+                }
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * Refuse new calls, then wait for the running ones to finish.
+     * Returns the number still running when the timeout ran out.
+     */
+    int close(long timeoutMillis) throws InterruptedException {
+        closed = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,274 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.dto.DeliveryStats;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Asynchronous fan-out of user callbacks.
+ * Every connected client gets its own bounded {@link ClientOutbox}, kept in the
+ * shared {@link SessionRegistry}; callers
+ * enqueue deliveries and return immediately instead of waiting on each
+ * client's RMI round trip. Chat messages queued for the same client within
+ * a short window are coalesced into one batched callback.
+ *
+ * A client that can't keep up is handled by its outbox's overflow policy, so
+ * memory held for it is bounded by the queue capacity however far it falls behind.
+ */
+public class CallbackDispatcher {
+
+    private static final int QUEUE_CAPACITY = Integer.getInteger("chatapp.delivery.queueCapacity", 1024);
+    private static final OverflowPolicy OVERFLOW_POLICY = OverflowPolicy.parse(
+            System.getProperty("chatapp.delivery.overflowPolicy"), OverflowPolicy.DROP_AND_MARK_GAP);
+    private static final long BATCH_WINDOW_MILLIS = Long.getLong("chatapp.delivery.batchWindowMs", 20);
+    private static final int MAX_BATCH_SIZE = Integer.getInteger("chatapp.delivery.maxBatch", 50);
+    private static final int WORKER_THREADS = Integer.getInteger("chatapp.delivery.workers",
+            Math.max(4, Runtime.getRuntime().availableProcessors() * 2));
+
+    /**
+     * A single callback invocation to run against a client
+     */
+    public interface Delivery {
+        void deliver(UserClientCallback callback) throws RemoteException;
+    }
+
+    /**
+     * Notified when a client is dropped because a callback to it failed
+     */
+    public interface FailureListener {
+        void clientFailed(long userId);
+    }
+
+    private final SessionRegistry registry;
+    private final ScheduledExecutorService workers;
+    private final LongAdder droppedDeliveries = new LongAdder();
+    private final LongAdder slowConsumerDisconnects = new LongAdder();
+    private volatile FailureListener failureListener;
+
+    public CallbackDispatcher(SessionRegistry registry) {
+        this.registry = registry;
+        this.workers = Executors.newScheduledThreadPool(WORKER_THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "callback-delivery-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public void setFailureListener(FailureListener failureListener) {
+        this.failureListener = failureListener;
+    }
+
+    /**
+     * Register a client callback with the default queue limit and overflow policy
+     */
+    public void register(long userId, UserClientCallback callback) {
+        register(userId, callback, QUEUE_CAPACITY, OVERFLOW_POLICY);
+    }
+
+    /**
+     * Register a client callback, replacing any previous registration for the user
+     */
+    public void register(long userId, UserClientCallback callback, int queueCapacity, OverflowPolicy overflowPolicy) {
+        ClientOutbox previous = registry.attachUserClient(userId, new ClientOutbox(userId, callback,
+                queueCapacity, overflowPolicy, BATCH_WINDOW_MILLIS, MAX_BATCH_SIZE, workers, this));
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Remove a client and discard anything still queued for it
+     */
+    public void unregister(long userId) {
+        ClientOutbox outbox = registry.detachUserClient(userId);
+        if (outbox != null) {
+            outbox.close();
+        }
+    }
+
+    /**
+     * Remove a client but let what is already queued for it go out, e.g. a
+     * final notice. Nothing new can be queued once it is detached.
+     */
+    public void unregisterAfterDelivery(long userId) {
+        registry.detachUserClient(userId);
+    }
+
+    /**
+     * The callback currently registered for a user, or null
+     */
+    public UserClientCallback callbackOf(long userId) {
+        ClientOutbox outbox = registry.getUserClient(userId);
+        return outbox != null ? outbox.getCallback() : null;
+    }
+
+    public boolean isConnected(long userId) {
+        return registry.isUserConnected(userId);
+    }
+
+    /**
+     * Queue a delivery for one user. Returns false if the user is not
+     * connected or was disconnected for falling behind.
+     */
+    public boolean enqueue(long userId, Delivery delivery) {
+        ClientOutbox outbox = registry.getUserClient(userId);
+        return outbox != null && outbox.offer(delivery);
+    }
+
+    /**
+     * Queue the same delivery for every listed user except {@code excludeUserId}
+     */
+    public void broadcast(Iterable<Long> userIds, long excludeUserId, Delivery delivery) {
+        for (Long userId : userIds) {
+            if (userId != excludeUserId) {
+                enqueue(userId, delivery);
+            }
+        }
+    }
+
+    /**
+     * Queue the same delivery for every listed user
+     */
+    public void broadcast(Iterable<Long> userIds, Delivery delivery) {
+        for (Long userId : userIds) {
+            enqueue(userId, delivery);
+        }
+    }
+
+    /**
+     * Queue the same delivery for every user in an id snapshot, such as a chat's participants
+     */
+    public void broadcast(long[] userIds, long excludeUserId, Delivery delivery) {
+        for (long userId : userIds) {
+            if (userId != excludeUserId) {
+                enqueue(userId, delivery);
+            }
+        }
+    }
+
+    /**
+     * Drop a client whose transport has reported its connection closed, unless
+     * the user has since registered a different callback
+     */
+    public void callbackLost(long userId, UserClientCallback callback) {
+        ClientOutbox outbox = registry.getUserClient(userId);
+        if (outbox != null && outbox.getCallback() == callback) {
+            outbox.close();
+            clientFailed(outbox);
+        }
+    }
+
+    void clientFailed(ClientOutbox outbox) {
+        // Only drop the entry if the user hasn't re-registered in the meantime
+        if (registry.detachUserClient(outbox.getUserId(), outbox)) {
+            FailureListener listener = failureListener;
+            if (listener != null) {
+                listener.clientFailed(outbox.getUserId());
+            }
+        }
+    }
+
+    void recordDrop() {
+        droppedDeliveries.increment();
+    }
+
+    /**
+     * Drop a client whose queue overflowed under the disconnect policy.
+     * The departure is handled on a delivery worker, since the producer may be
+     * a chat actor that the departure itself needs to call into.
+     */
+    void clientOverflowed(ClientOutbox outbox) {
+        droppedDeliveries.increment();
+        slowConsumerDisconnects.increment();
+        System.err.println("Outbound queue full for user " + outbox.getUserId() + ", disconnecting slow client");
+        try {
+            workers.execute(() -> clientFailed(outbox));
+        } catch (RuntimeException e) {
+            // Shutting down - nothing left to clean up
+        }
+    }
+
+    /**
+     * Snapshot of queue depths and drop counters. Only clients with something
+     * queued or dropped are listed individually.
+     */
+    public DeliveryStats getStats() {
+        List<ClientOutbox> outboxes = registry.getUserClients();
+        List<ClientOutbox> backlogged = new ArrayList<>();
+        long queued = 0;
+        for (ClientOutbox outbox : outboxes) {
+            int depth = outbox.getQueueDepth();
+            queued += depth;
+            if (depth > 0 || outbox.getDroppedCount() > 0) {
+                backlogged.add(outbox);
+            }
+        }
+
+        long[] userIds = new long[backlogged.size()];
+        int[] depths = new int[backlogged.size()];
+        long[] dropped = new long[backlogged.size()];
+        for (int i = 0; i < backlogged.size(); i++) {
+            ClientOutbox outbox = backlogged.get(i);
+            userIds[i] = outbox.getUserId();
+            depths[i] = outbox.getQueueDepth();
+            dropped[i] = outbox.getDroppedCount();
+        }
+
+        return new DeliveryStats(OVERFLOW_POLICY.name(), QUEUE_CAPACITY, outboxes.size(), queued,
+                droppedDeliveries.sum(), slowConsumerDisconnects.sum(), userIds, depths, dropped);
+    }
+
+    /**
+     * Queue a delivery for every connected client
+     */
+    public void broadcastAll(Delivery delivery) {
+        for (ClientOutbox outbox : registry.getUserClients()) {
+            outbox.offer(delivery);
+        }
+    }
+
+    /**
+     * Wait until every client's queue has been delivered, e.g. before shutting down.
+     * Returns false if some were still delivering when the timeout ran out.
+     */
+    public boolean drain(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        while (true) {
+            boolean idle = true;
+            for (ClientOutbox outbox : registry.getUserClients()) {
+                if (!outbox.isIdle()) {
+                    idle = false;
+                    break;
+                }
+            }
+            if (idle) {
+                return true;
+            }
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    public void shutdown() {
+        for (ClientOutbox outbox : registry.getUserClients()) {
+            registry.detachUserClient(outbox.getUserId(), outbox);
+            outbox.close();
+        }
+        workers.shutdownNow();
+    }
+}
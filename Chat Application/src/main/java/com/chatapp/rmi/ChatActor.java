@@ -0,0 +1,201 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.dto.ChatMessage;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Single-writer mailbox for one chat.
+ * Commands posted to a chat run one at a time, in arrival order, on a shared
+ * worker pool, so transcript writes and fan-out for a room are totally ordered
+ * without locks, while different rooms proceed in parallel.
+ */
+public class ChatActor {
+
+    // Commands run per turn before the worker is handed back to other rooms
+    private static final int MAX_COMMANDS_PER_TURN = 64;
+    private static final int REPLAY_BUFFER_SIZE = Integer.getInteger("chatapp.chat.replayBuffer", 256);
+
+    /**
+     * Work to run on the chat's turn
+     */
+    public interface Command<T> {
+        T execute(ChatActor actor) throws Exception;
+    }
+
+    private final long chatId;
+    private final Executor executor;
+    private final Queue<Envelope<?>> mailbox = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+    private final Consumer<ChatActor> onIdleAfterRetire;
+    private volatile boolean retired = false;
+
+    // Only touched from within a turn; the scheduled flag publishes them to the next turn.
+    // The sequence is unknown (-1) until seeded, since numbering carries on across server restarts
+    private long lastSequence = -1;
+    private final RecentMessages recentMessages = new RecentMessages(REPLAY_BUFFER_SIZE);
+
+    ChatActor(long chatId, Executor executor, Consumer<ChatActor> onIdleAfterRetire) {
+        this.chatId = chatId;
+        this.executor = executor;
+        this.onIdleAfterRetire = onIdleAfterRetire;
+    }
+
+    public long getChatId() {
+        return chatId;
+    }
+
+    /**
+     * Post a command to the mailbox. The returned future completes with its
+     * result, or exceptionally with whatever it threw. Cancelling it before
+     * the command has started stops it from running at all.
+     */
+    public <T> CompletableFuture<T> ask(Command<T> command) {
+        Envelope<T> envelope = new Envelope<>(command);
+        post(envelope);
+        schedule();
+        return envelope;
+    }
+
+    // Queue without scheduling, so ChatActors can post under its lock and schedule outside it
+    void post(Envelope<?> envelope) {
+        mailbox.add(envelope);
+    }
+
+    /**
+     * Mark the chat as over; the actor is let go once its mailbox has run dry
+     */
+    void retire() {
+        retired = true;
+    }
+
+    /**
+     * Nothing queued and no turn running
+     */
+    boolean isIdle() {
+        return !scheduled.get() && mailbox.isEmpty();
+    }
+
+    /**
+     * Whether the sequence has been seeded yet. Only valid inside a command.
+     */
+    public boolean hasSequence() {
+        return lastSequence >= 0;
+    }
+
+    /**
+     * Continue numbering after the given sequence, e.g. the last one in the transcript
+     */
+    public void seedSequence(long lastSequence) {
+        this.lastSequence = Math.max(0, lastSequence);
+    }
+
+    /**
+     * Forget the sequence so the next message seeds it again, e.g. after
+     * another server numbered this chat's messages for a while
+     */
+    public void resetSequence() {
+        lastSequence = -1;
+    }
+
+    /**
+     * Next message sequence number for this chat. Only valid inside a command.
+     */
+    public long nextSequence() {
+        if (lastSequence < 0) {
+            lastSequence = 0;
+        }
+        return ++lastSequence;
+    }
+
+    /**
+     * Keep a sent message for replay to clients that missed it
+     */
+    public void recordMessage(ChatMessage message) {
+        recentMessages.add(message);
+    }
+
+    /**
+     * Messages sent after the given sequence, or null if the replay buffer
+     * no longer reaches back that far. Only valid inside a command.
+     */
+    public List<ChatMessage> messagesAfter(long lastSeenSequence) {
+        if (lastSequence >= 0 && lastSeenSequence >= lastSequence) {
+            return Collections.emptyList();
+        }
+        return recentMessages.after(lastSeenSequence);
+    }
+
+    public int getMailboxSize() {
+        return mailbox.size();
+    }
+
+    void schedule() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                // Shutting down - fail whatever is waiting instead of running it
+                Envelope<?> envelope;
+                while ((envelope = mailbox.poll()) != null) {
+                    envelope.completeExceptionally(e);
+                }
+                scheduled.set(false);
+            }
+        }
+    }
+
+    private void drain() {
+        int processed = 0;
+        Envelope<?> envelope;
+        while (processed < MAX_COMMANDS_PER_TURN && (envelope = mailbox.poll()) != null) {
+            envelope.run(this);
+            processed++;
+        }
+        scheduled.set(false);
+
+        // More work arrived, or the turn ended early
+        if (!mailbox.isEmpty()) {
+            schedule();
+        } else if (retired) {
+            onIdleAfterRetire.accept(this);
+        }
+    }
+
+    /**
+     * A queued command and its result. Whichever of running and cancelling
+     * claims it first wins, so a cancelled command never runs.
+     */
+    static final class Envelope<T> extends CompletableFuture<T> {
+        private final Command<T> command;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+
+        Envelope(Command<T> command) {
+            this.command = command;
+        }
+
+        void run(ChatActor actor) {
+            if (!claimed.compareAndSet(false, true)) {
+                return;   // cancelled while it waited
+            }
+            try {
+                complete(command.execute(actor));
+            } catch (Throwable t) {
+                completeExceptionally(t);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return claimed.compareAndSet(false, true) && super.cancel(false);
+        }
+    }
+}
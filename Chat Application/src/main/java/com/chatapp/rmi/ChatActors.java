@@ -0,0 +1,130 @@
+package com.chatapp.rmi;
+
+import com.chatapp.util.StripedLongMap;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The {@link ChatActor} of every chat with traffic, sharing one worker pool.
+ * Shared by the user and admin remote objects so that messages, presence
+ * changes and chat end are all ordered through the same mailbox.
+ */
+public class ChatActors {
+
+    private static final int WORKER_THREADS = Integer.getInteger("chatapp.chat.workers",
+            Math.max(2, Runtime.getRuntime().availableProcessors()));
+    private static final long CALL_TIMEOUT_MILLIS = Long.getLong("chatapp.chat.callTimeoutMs", 10_000);
+
+    private final StripedLongMap<ChatActor> actors = new StripedLongMap<>();
+    private final ExecutorService workers;
+
+    public ChatActors() {
+        this.workers = Executors.newFixedThreadPool(WORKER_THREADS, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "chat-actor-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Post a command to a chat's mailbox, creating its actor on first use.
+     * See {@link ChatActor#ask}.
+     */
+    public <T> CompletableFuture<T> ask(long chatId, ChatActor.Command<T> command) {
+        ChatActor.Envelope<T> envelope = new ChatActor.Envelope<>(command);
+        // Posted under the stripe lock, so release() can't drop the actor in between
+        ChatActor actor = actors.compute(chatId, (id, current) -> {
+            ChatActor target = current != null ? current : new ChatActor(id, workers, this::release);
+            target.post(envelope);
+            return target;
+        });
+        actor.schedule();
+        return envelope;
+    }
+
+    /**
+     * Run a command on a chat's turn and wait for its result.
+     * Failures are reported as a RemoteException prefixed with {@code failureMessage}.
+     * A command still queued when the wait gives up is called off; one that
+     * has already started runs to the end, and the error says so.
+     */
+    public <T> T call(long chatId, String failureMessage, ChatActor.Command<T> command) throws RemoteException {
+        CompletableFuture<T> turn = ask(chatId, command);
+        try {
+            return turn.get(CALL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RemoteException) {
+                throw (RemoteException) cause;
+            }
+            throw new RemoteException(failureMessage + ": " + cause.getMessage());
+        } catch (TimeoutException e) {
+            throw new RemoteException(failureMessage + ": chat " + chatId + " is busy" + abandon(turn));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException(failureMessage + ": interrupted" + abandon(turn));
+        }
+    }
+
+    // Call off a command nobody is waiting for, describing what became of it
+    private static String abandon(CompletableFuture<?> turn) {
+        return turn.cancel(false) ? "" : ", the outcome is unknown";
+    }
+
+    /**
+     * Forget the actor of a chat that has ended, once everything already
+     * queued for it has run. Call from within its last command.
+     */
+    public void retire(ChatActor actor) {
+        actor.retire();
+    }
+
+    // Drop a retired actor if it is still the chat's and nothing was posted to it meanwhile
+    private void release(ChatActor actor) {
+        actors.compute(actor.getChatId(), (id, current) -> current == actor && actor.isIdle() ? null : current);
+    }
+
+    public int size() {
+        return actors.size();
+    }
+
+    /**
+     * Wait until every command queued so far has run, e.g. before shutting down.
+     * Returns false if some chat was still busy when the timeout ran out.
+     */
+    public boolean drain(long timeoutMillis) throws InterruptedException {
+        List<CompletableFuture<Object>> turns = new ArrayList<>();
+        for (ChatActor actor : actors.values()) {
+            // Runs after everything already in the chat's mailbox
+            turns.add(actor.ask(current -> null));
+        }
+        try {
+            CompletableFuture.allOf(turns.toArray(new CompletableFuture<?>[0])).get(timeoutMillis, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (ExecutionException e) {
+            // A rejected turn means the pool is already shut down; nothing more will run
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
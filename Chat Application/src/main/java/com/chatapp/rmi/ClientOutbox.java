@@ -0,0 +1,293 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.util.CallMetrics;
+import com.chatapp.util.LatencyHistogram;
+
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded outbound queue for a single connected user client.
+ * Deliveries are drained one at a time on a shared worker pool, so a slow
+ * or unreachable client only ever delays its own notifications.
+ *
+ * Chat messages are coalesced: the first queued message waits up to the
+ * batch window for more to arrive, and consecutive messages are handed to
+ * the client in a single {@link UserClientCallback#receiveMessages} call.
+ *
+ * The queue never holds more than its capacity. When it is full, the
+ * outbox's {@link OverflowPolicy} decides whether old chat messages are
+ * evicted (optionally telling the client about the gap) or the client is
+ * disconnected. Other notifications, such as a chat ending, are never
+ * evicted; a client whose queue is full of them is disconnected instead.
+ *
+ * Producers and the drainer share one lock on the queue, so an eviction can't
+ * take a delivery out from under a batch being collected.
+ */
+public class ClientOutbox {
+
+    private static final int IDLE = 0;
+    private static final int DELAYED = 1;
+    private static final int RUNNING = 2;
+
+    // Time spent in each callback to the client, batches included
+    private static final LatencyHistogram CALLBACK_LATENCY = CallMetrics.getInstance().histogram("delivery/callback");
+
+    private final long userId;
+    private final UserClientCallback callback;
+    // Guarded by itself
+    private final ArrayDeque<CallbackDispatcher.Delivery> queue;
+    private final int capacity;
+    private final OverflowPolicy overflowPolicy;
+    private final ScheduledExecutorService executor;
+    private final CallbackDispatcher dispatcher;
+    private final long batchWindowMillis;
+    private final int maxBatchSize;
+    private final AtomicInteger state = new AtomicInteger(IDLE);
+    private final AtomicLong droppedCount = new AtomicLong();
+    // Deliveries evicted since the client was last told about a gap
+    private final AtomicInteger pendingGap = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    ClientOutbox(long userId, UserClientCallback callback, int capacity, OverflowPolicy overflowPolicy,
+                 long batchWindowMillis, int maxBatchSize, ScheduledExecutorService executor,
+                 CallbackDispatcher dispatcher) {
+        this.userId = userId;
+        this.callback = callback;
+        this.capacity = Math.max(1, capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.queue = new ArrayDeque<>(Math.min(this.capacity, 64));
+        this.batchWindowMillis = batchWindowMillis;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.executor = executor;
+        this.dispatcher = dispatcher;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public UserClientCallback getCallback() {
+        return callback;
+    }
+
+    public int getQueueDepth() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Deliveries discarded because the queue was full, over the life of this outbox
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Whether everything queued so far has been delivered, or the outbox is closed
+     */
+    boolean isIdle() {
+        return closed || (isEmpty() && state.get() == IDLE);
+    }
+
+    /**
+     * Queue a delivery and make sure a drainer is scheduled.
+     * Returns false if the outbox is closed, or full and the client was disconnected.
+     */
+    boolean offer(CallbackDispatcher.Delivery delivery) {
+        if (closed) {
+            return false;
+        }
+        boolean canWait;
+        boolean overflowed = false;
+        synchronized (queue) {
+            if (queue.size() < capacity) {
+                queue.addLast(delivery);
+            } else if (!makeRoom(delivery)) {
+                droppedCount.incrementAndGet();
+                if (delivery instanceof MessageDelivery && overflowPolicy != OverflowPolicy.DISCONNECT) {
+                    // Only other notifications are queued, so the new message is the one lost
+                    recordEviction();
+                    return true;
+                }
+                overflowed = true;
+            }
+            canWait = delivery instanceof MessageDelivery && queue.size() < maxBatchSize;
+        }
+        if (overflowed) {
+            close();
+            dispatcher.clientOverflowed(this);
+            return false;
+        }
+        scheduleDrain(!canWait);
+        return true;
+    }
+
+    void close() {
+        closed = true;
+        synchronized (queue) {
+            queue.clear();
+        }
+    }
+
+    private boolean isEmpty() {
+        synchronized (queue) {
+            return queue.isEmpty();
+        }
+    }
+
+    /**
+     * Apply the overflow policy to a delivery that didn't fit, by evicting
+     * the oldest queued chat message. Returns false if nothing could be
+     * evicted. Must hold the queue lock.
+     */
+    private boolean makeRoom(CallbackDispatcher.Delivery delivery) {
+        if (overflowPolicy == OverflowPolicy.DISCONNECT) {
+            return false;
+        }
+        for (Iterator<CallbackDispatcher.Delivery> it = queue.iterator(); it.hasNext(); ) {
+            if (it.next() instanceof MessageDelivery) {
+                it.remove();
+                droppedCount.incrementAndGet();
+                recordEviction();
+                queue.addLast(delivery);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void recordEviction() {
+        dispatcher.recordDrop();
+        if (overflowPolicy == OverflowPolicy.DROP_AND_MARK_GAP) {
+            pendingGap.incrementAndGet();
+        }
+    }
+
+    /**
+     * Start a drain now, or after the batch window if {@code urgent} is false.
+     * An urgent request also promotes a drain that is still waiting out its window.
+     */
+    private void scheduleDrain(boolean urgent) {
+        if (urgent || batchWindowMillis <= 0) {
+            if (state.compareAndSet(IDLE, RUNNING) || state.compareAndSet(DELAYED, RUNNING)) {
+                submit(this::drain, 0);
+            }
+        } else if (state.compareAndSet(IDLE, DELAYED)) {
+            submit(() -> {
+                // Skip if an urgent request already took over this drain
+                if (state.compareAndSet(DELAYED, RUNNING)) {
+                    drain();
+                }
+            }, batchWindowMillis);
+        }
+    }
+
+    private void submit(Runnable task, long delayMillis) {
+        try {
+            if (delayMillis > 0) {
+                executor.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+            } else {
+                executor.execute(task);
+            }
+        } catch (RuntimeException e) {
+            // Executor rejected the task (shutting down)
+            state.set(IDLE);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (!closed) {
+                CallbackDispatcher.Delivery delivery;
+                List<ChatMessage> batch = null;
+                synchronized (queue) {
+                    delivery = queue.pollFirst();
+                    if (delivery == null) {
+                        break;
+                    }
+                    // Consecutive messages go to the client together
+                    if (delivery instanceof MessageDelivery && queue.peekFirst() instanceof MessageDelivery) {
+                        batch = new ArrayList<>();
+                        batch.add(((MessageDelivery) delivery).getMessage());
+                        while (batch.size() < maxBatchSize && queue.peekFirst() instanceof MessageDelivery) {
+                            batch.add(((MessageDelivery) queue.pollFirst()).getMessage());
+                        }
+                    }
+                }
+
+                try {
+                    // Anything evicted was older than this delivery, so report the gap first
+                    int missed = pendingGap.getAndSet(0);
+                    if (missed > 0) {
+                        callback.deliveryGap(missed);
+                    }
+
+                    long start = System.nanoTime();
+                    if (batch != null) {
+                        callback.receiveMessages(batch);
+                    } else {
+                        delivery.deliver(callback);
+                    }
+                    CALLBACK_LATENCY.recordSince(start);
+                } catch (RemoteException e) {
+                    // Client is gone - stop delivering and let the dispatcher drop it
+                    close();
+                    dispatcher.clientFailed(this);
+                    return;
+                } catch (RuntimeException e) {
+                    System.err.println("Delivery to user " + userId + " failed: " + e.getMessage());
+                }
+            }
+        } finally {
+            state.set(IDLE);
+        }
+
+        // A producer may have enqueued after the last poll but before the state was reset
+        if (!closed && !isEmpty()) {
+            scheduleDrain(true);
+        }
+    }
+
+    /**
+     * A chat message delivery, eligible for batching
+     */
+    public static class MessageDelivery implements CallbackDispatcher.Delivery {
+
+        private final ChatMessage message;
+
+        public MessageDelivery(ChatMessage message) {
+            this.message = message;
+        }
+
+        public ChatMessage getMessage() {
+            return message;
+        }
+
+        @Override
+        public void deliver(UserClientCallback callback) throws RemoteException {
+            callback.receiveMessage(message);
+        }
+    }
+}
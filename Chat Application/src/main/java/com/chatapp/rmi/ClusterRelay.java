@@ -0,0 +1,472 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.PresenceEvent;
+import com.chatapp.model.entity.Chat;
+import com.chatapp.net.ClusterBus;
+import com.chatapp.service.ActiveChatState;
+import com.chatapp.service.ChatRosterCache;
+import com.chatapp.service.UserChatService;
+import com.chatapp.util.ConsistentHashRing;
+import com.chatapp.util.StripedLongMap;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Cluster mode. Several server nodes share the database; each holds the
+ * sessions and callbacks of the clients connected to it, and chat events are
+ * relayed between them over a {@link ClusterBus}.
+ *
+ * Every chat has one owner node, placed by its id on a consistent-hash ring
+ * of the nodes that are up, that numbers its messages, writes its transcript
+ * and publishes each message to the other nodes from the chat's turn. A message sent on any other node is forwarded
+ * to the owner first. The owner publishes in sequence order over FIFO
+ * connections, so every node delivers a chat's messages in the same order.
+ * When a node goes away its chats move to the nodes next to it on the ring,
+ * and move back when it reconnects.
+ *
+ * Subscription changes and user removals are relayed as well, so every
+ * node's roster cache stays current.
+ *
+ * Configured with chatapp.cluster.nodeId, chatapp.cluster.nodes
+ * ("1=host:port,2=host:port") and chatapp.cluster.secret, which every node
+ * must share. Each node listens on its own address from the list, or on
+ * chatapp.cluster.bindAddress if set. Without them this node owns every chat
+ * and nothing is published.
+ */
+public class ClusterRelay implements ClusterBus.Handler {
+
+    private static final int NODE_ID = Integer.getInteger("chatapp.cluster.nodeId", 0);
+    private static final String NODES = System.getProperty("chatapp.cluster.nodes", "");
+    private static final String SECRET = System.getProperty("chatapp.cluster.secret", "");
+    private static final String BIND_ADDRESS = System.getProperty("chatapp.cluster.bindAddress", "");
+
+    // Bus operations
+    private static final int FORWARD_MESSAGE = 1;
+    private static final int MESSAGE = 2;
+    private static final int PRESENCE = 3;
+    private static final int CHAT_STARTED = 4;
+    private static final int CHAT_ENDED = 5;
+    private static final int USER_ONLINE = 6;
+    private static final int USER_OFFLINE = 7;
+    private static final int USERS_ONLINE = 8;
+    private static final int SUBSCRIBED = 9;
+    private static final int UNSUBSCRIBED = 10;
+    private static final int USER_REMOVED = 11;
+
+    /**
+     * Records a message that another node forwarded to this chat's owner
+     */
+    public interface MessageRecorder {
+        void record(long chatId, long userId, String nickName, String avatarHash, String message) throws RemoteException;
+    }
+
+    /**
+     * Drops a user an admin removed on another node, if their client is
+     * connected here. Runs on the bus reader, so must not wait on a chat's turn.
+     */
+    public interface UserRemover {
+        void userRemoved(long userId);
+    }
+
+    /**
+     * Told about every active chat that changes owner when a node joins or leaves
+     */
+    public interface RebalanceListener {
+        void chatMoved(long chatId, int fromNode, int toNode);
+    }
+
+    private final SessionRegistry sessions;
+    private final CallbackDispatcher dispatcher;
+    private final ChatActors chatActors;
+    private final UserChatService userChatService;
+    private final int nodeId;
+    private final ClusterBus bus;
+    private final List<RebalanceListener> rebalanceListeners = new CopyOnWriteArrayList<>();
+    // The nodes that are up; replaced as they come and go
+    private volatile ConsistentHashRing ring;
+    // Users whose clients are connected to other nodes, and which node
+    private final StripedLongMap<Integer> remoteUsers = new StripedLongMap<>();
+    private volatile MessageRecorder messageRecorder;
+    private volatile UserRemover userRemover;
+
+    public ClusterRelay(SessionRegistry sessions, CallbackDispatcher dispatcher, ChatActors chatActors) {
+        this(sessions, dispatcher, chatActors, NODE_ID, NODES, BIND_ADDRESS, SECRET);
+    }
+
+    /**
+     * A relay configured with the given settings instead of the system properties
+     */
+    ClusterRelay(SessionRegistry sessions, CallbackDispatcher dispatcher, ChatActors chatActors,
+                 int nodeId, String nodeList, String bindAddress, String secret) {
+        this.sessions = sessions;
+        this.dispatcher = dispatcher;
+        this.chatActors = chatActors;
+        this.userChatService = new UserChatService();
+
+        Map<Integer, InetSocketAddress> nodes = ClusterBus.parseNodes(nodeList);
+        if (nodes.isEmpty()) {
+            this.nodeId = 0;
+            this.ring = new ConsistentHashRing(new int[]{0});
+            this.bus = null;
+        } else {
+            if (!nodes.containsKey(nodeId)) {
+                throw new IllegalArgumentException("chatapp.cluster.nodeId " + nodeId + " is not in chatapp.cluster.nodes");
+            }
+            this.nodeId = nodeId;
+            // Every node counts as up until its connection is lost, so a starting node doesn't claim every chat
+            this.ring = new ConsistentHashRing(nodes.keySet().stream().mapToInt(Integer::intValue).toArray());
+            if (secret.isEmpty()) {
+                throw new IllegalArgumentException("chatapp.cluster.secret must be set to run a cluster");
+            }
+            this.bus = new ClusterBus(nodeId, nodes, resolve(bindAddress), secret, this);
+        }
+    }
+
+    private static InetAddress resolve(String bindAddress) {
+        if (bindAddress.isEmpty()) {
+            return null;
+        }
+        try {
+            return InetAddress.getByName(bindAddress);
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("Unknown chatapp.cluster.bindAddress " + bindAddress, e);
+        }
+    }
+
+    public void start() throws IOException {
+        if (bus != null) {
+            bus.start();
+        }
+    }
+
+    public void close() {
+        if (bus != null) {
+            bus.close();
+        }
+    }
+
+    public boolean isClustered() {
+        return bus != null;
+    }
+
+    /**
+     * Whether this node currently has a connection to the given node
+     */
+    public boolean isConnected(int node) {
+        return bus != null && bus.isConnected(node);
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public int getNodeCount() {
+        return ring.size();
+    }
+
+    public void setMessageRecorder(MessageRecorder messageRecorder) {
+        this.messageRecorder = messageRecorder;
+    }
+
+    public void setUserRemover(UserRemover userRemover) {
+        this.userRemover = userRemover;
+    }
+
+    public void addRebalanceListener(RebalanceListener listener) {
+        rebalanceListeners.add(listener);
+    }
+
+    // Chat ownership
+
+    /**
+     * The node that numbers and records a chat's messages
+     */
+    public int ownerOf(long chatId) {
+        return ring.ownerOf(chatId);
+    }
+
+    public boolean ownsChat(long chatId) {
+        return ownerOf(chatId) == nodeId;
+    }
+
+    /**
+     * Have the chat's owner record a message; it comes back to this node's participants as a relayed message
+     */
+    public void forwardMessage(long chatId, long userId, String nickName, String avatarHash, String message) throws RemoteException {
+        bus.call(ownerOf(chatId), FORWARD_MESSAGE, chatId, userId, nickName, avatarHash, message);
+    }
+
+    // Events for the other nodes
+
+    /**
+     * Relay a recorded message. Must be called from the chat's turn, so messages leave in sequence order.
+     */
+    public void publishMessage(ChatMessage message) {
+        if (bus != null) {
+            bus.publish(MESSAGE, message);
+        }
+    }
+
+    /**
+     * Relay a join or leave by a user connected to this node
+     */
+    public void publishPresence(PresenceEvent event) {
+        if (bus != null) {
+            bus.publish(PRESENCE, event);
+        }
+    }
+
+    public void publishChatStarted(long chatId) {
+        if (bus != null) {
+            bus.publish(CHAT_STARTED, chatId);
+        }
+    }
+
+    public void publishChatEnded(long chatId) {
+        if (bus != null) {
+            bus.publish(CHAT_ENDED, chatId);
+        }
+    }
+
+    public void publishSubscribed(long chatId, long userId) {
+        if (bus != null) {
+            bus.publish(SUBSCRIBED, chatId, userId);
+        }
+    }
+
+    public void publishUnsubscribed(long chatId, long userId) {
+        if (bus != null) {
+            bus.publish(UNSUBSCRIBED, chatId, userId);
+        }
+    }
+
+    /**
+     * Relay the removal of a user account, after it is deleted
+     */
+    public void publishUserRemoved(long userId) {
+        if (bus != null) {
+            bus.publish(USER_REMOVED, userId);
+        }
+    }
+
+    public void userConnected(long userId) {
+        if (bus != null) {
+            bus.publish(USER_ONLINE, userId);
+        }
+    }
+
+    public void userDisconnected(long userId) {
+        if (bus != null) {
+            bus.publish(USER_OFFLINE, userId);
+        }
+    }
+
+    /**
+     * Whether a user has a client connected to this or any other node
+     */
+    public boolean isConnectedAnywhere(long userId) {
+        return sessions.isUserConnected(userId) || remoteUsers.containsKey(userId);
+    }
+
+    // ClusterBus.Handler
+
+    @Override
+    public Object call(int fromNode, int operation, List<?> args) throws Exception {
+        if (operation != FORWARD_MESSAGE) {
+            throw new IllegalArgumentException("Unknown cluster call " + operation);
+        }
+        messageRecorder.record((Long) args.get(0), (Long) args.get(1), (String) args.get(2),
+                (String) args.get(3), (String) args.get(4));
+        return null;
+    }
+
+    @Override
+    public void event(int fromNode, int operation, List<?> args) {
+        switch (operation) {
+            case MESSAGE:
+                relayMessage((ChatMessage) args.get(0));
+                break;
+            case PRESENCE:
+                relayPresence((PresenceEvent) args.get(0));
+                break;
+            case CHAT_STARTED:
+                chatStarted((Long) args.get(0));
+                break;
+            case CHAT_ENDED:
+                chatEnded((Long) args.get(0));
+                break;
+            case USER_ONLINE:
+                remoteUsers.put((Long) args.get(0), fromNode);
+                break;
+            case USER_OFFLINE:
+                remoteUsers.remove((Long) args.get(0), fromNode);
+                break;
+            case USERS_ONLINE:
+                forgetUsersOf(fromNode);
+                for (Object userId : (List<?>) args.get(0)) {
+                    remoteUsers.put((Long) userId, fromNode);
+                }
+                break;
+            case SUBSCRIBED:
+                ChatRosterCache.getInstance().subscriberAdded((Long) args.get(0), (Long) args.get(1));
+                break;
+            case UNSUBSCRIBED:
+                ChatRosterCache.getInstance().subscriberRemoved((Long) args.get(0), (Long) args.get(1));
+                break;
+            case USER_REMOVED:
+                userRemoved((Long) args.get(0));
+                break;
+            default:
+                System.err.println("Unknown cluster event " + operation + " from node " + fromNode);
+        }
+    }
+
+    @Override
+    public void peerConnected(int node) {
+        // It may have restarted, so tell it everyone connected here
+        List<Long> userIds = new ArrayList<>();
+        for (ClientOutbox outbox : sessions.getUserClients()) {
+            userIds.add(outbox.getUserId());
+        }
+        bus.send(node, USERS_ONLINE, userIds);
+        // Roster changes made on it while it was away never arrived, so reload them
+        ChatRosterCache.getInstance().clear();
+        rebalance(node, true);
+    }
+
+    @Override
+    public void peerLost(int node) {
+        forgetUsersOf(node);
+        rebalance(node, false);
+    }
+
+    // Rebalancing
+
+    /**
+     * Add or remove a node from the ring and hand over the active chats that move
+     */
+    private synchronized void rebalance(int node, boolean joined) {
+        ConsistentHashRing previous = ring;
+        ConsistentHashRing next = joined ? previous.withNode(node) : previous.withoutNode(node);
+        if (next == previous || next.isEmpty()) {
+            return;
+        }
+        ring = next;
+
+        int moved = 0;
+        for (Chat chat : ActiveChatState.getInstance().getAll()) {
+            long chatId = chat.getId();
+            int from = previous.ownerOf(chatId);
+            int to = next.ownerOf(chatId);
+            if (from == to) {
+                continue;
+            }
+            moved++;
+            if (to == nodeId) {
+                // The old owner numbered messages since this node last did; carry on from its transcript
+                chatActors.ask(chatId, actor -> {
+                    actor.resetSequence();
+                    return null;
+                }).whenComplete((result, e) -> logFailure(e, "take over chat " + chatId));
+            }
+            for (RebalanceListener listener : rebalanceListeners) {
+                listener.chatMoved(chatId, from, to);
+            }
+        }
+        System.out.println("Cluster " + (joined ? "gained" : "lost") + " node " + node + ", now " + next
+                + "; " + moved + " active chat(s) moved");
+    }
+
+    // Relayed messages join this node's chat turn, behind anything already queued for it
+    private void relayMessage(ChatMessage message) {
+        long chatId = message.getChatId();
+        chatActors.ask(chatId, actor -> {
+            actor.recordMessage(message);
+            dispatcher.broadcast(sessions.getParticipants(chatId), 0, new ClientOutbox.MessageDelivery(message));
+            return null;
+        }).whenComplete((result, e) -> logFailure(e, "relay message to chat " + chatId));
+    }
+
+    private void relayPresence(PresenceEvent event) {
+        long chatId = event.getChatId();
+        chatActors.ask(chatId, actor -> {
+            CallbackDispatcher.Delivery delivery = event.getType() == PresenceEvent.Type.JOINED
+                    ? callback -> callback.userJoined(event)
+                    : callback -> callback.userLeft(event);
+            dispatcher.broadcast(sessions.getParticipants(chatId), event.getUserId(), delivery);
+            return null;
+        }).whenComplete((result, e) -> logFailure(e, "relay presence to chat " + chatId));
+    }
+
+    private void chatStarted(long chatId) {
+        Optional<Chat> optionalChat = userChatService.getChatById(chatId);
+        if (optionalChat.isPresent() && optionalChat.get().isActive()) {
+            Chat chat = optionalChat.get();
+            ActiveChatState.getInstance().activated(chat);
+
+            ChatSummary chatData = ChatSummary.from(chat);
+            dispatcher.broadcast(userChatService.getChatSubscriberIds(chat), callback -> callback.chatStarted(chatData));
+        }
+    }
+
+    private void chatEnded(long chatId) {
+        Optional<Chat> optionalChat = userChatService.getChatById(chatId);
+        if (!optionalChat.isPresent()) {
+            return;
+        }
+        Chat chat = optionalChat.get();
+
+        // On the chat's turn, after any relayed messages still queued for it
+        chatActors.ask(chatId, actor -> {
+            ActiveChatState.getInstance().deactivated(chat);
+            sessions.clearChat(chatId);
+            chatActors.retire(actor);
+
+            ChatSummary chatData = ChatSummary.from(chat);
+            dispatcher.broadcast(userChatService.getChatSubscriberIds(chat), callback -> callback.chatEnded(chatData));
+            return null;
+        }).whenComplete((result, e) -> logFailure(e, "end chat " + chatId));
+    }
+
+    private void userRemoved(long userId) {
+        ChatRosterCache.getInstance().userRemoved(userId);
+        UserRemover remover = userRemover;
+        if (remover != null) {
+            remover.userRemoved(userId);
+        }
+    }
+
+    private void forgetUsersOf(int node) {
+        List<Long> gone = new ArrayList<>();
+        remoteUsers.forEach((userId, owner) -> {
+            if (owner == node) {
+                gone.add(userId);
+            }
+        });
+        for (long userId : gone) {
+            remoteUsers.remove(userId, node);
+        }
+    }
+
+    private static void logFailure(Throwable e, String action) {
+        if (e != null) {
+            System.err.println("Failed to " + action + ": " + e.getMessage());
+        }
+    }
+
+    @Override
+    public String toString() {
+        return bus == null ? "standalone" : "node " + nodeId + " of " + ring;
+    }
+}
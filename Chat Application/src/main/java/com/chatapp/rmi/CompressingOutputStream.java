@@ -0,0 +1,120 @@
+package com.chatapp.rmi;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+/**
+ * Writes data as self-delimiting blocks, deflating any block at or above the threshold.
+ * RMI flushes after every call and reply, so each flushed block is roughly one
+ * message: small ones go out as-is and large lists or images get compressed.
+ *
+ * Block layout: a type byte, the varint raw length and, for a deflated block,
+ * the varint compressed length, followed by the payload.
+ */
+class CompressingOutputStream extends FilterOutputStream {
+
+    static final int RAW = 0;
+    static final int DEFLATED = 1;
+    static final int BLOCK_SIZE = 32 * 1024;
+
+    private final int threshold;
+    private final Deflater deflater;
+    private final byte[] block = new byte[BLOCK_SIZE];
+    private byte[] compressed = new byte[BLOCK_SIZE + 64];
+    private final byte[] header = new byte[11];
+    private int count = 0;
+
+    CompressingOutputStream(OutputStream out, int threshold, int level) {
+        super(out);
+        this.threshold = threshold;
+        this.deflater = new Deflater(level);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == block.length) {
+            writeBlock();
+        }
+        block[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == block.length) {
+                writeBlock();
+            }
+            int n = Math.min(len, block.length - count);
+            System.arraycopy(b, off, block, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+
+        int compressedLength = count >= threshold ? deflate() : -1;
+        int headerLength;
+        if (compressedLength >= 0 && compressedLength < count) {
+            header[0] = DEFLATED;
+            headerLength = putVarInt(header, putVarInt(header, 1, count), compressedLength);
+            out.write(header, 0, headerLength);
+            out.write(compressed, 0, compressedLength);
+            CompressingSocketFactory.recordWrite(count, headerLength + compressedLength);
+        } else {
+            // Too small to bother, or didn't shrink
+            header[0] = RAW;
+            headerLength = putVarInt(header, 1, count);
+            out.write(header, 0, headerLength);
+            out.write(block, 0, count);
+            CompressingSocketFactory.recordWrite(count, headerLength + count);
+        }
+        count = 0;
+    }
+
+    // Returns the compressed length, or -1 if the output would not be smaller
+    private int deflate() {
+        deflater.reset();
+        deflater.setInput(block, 0, count);
+        deflater.finish();
+        int length = 0;
+        while (!deflater.finished()) {
+            if (length == compressed.length) {
+                return -1;
+            }
+            length += deflater.deflate(compressed, length, compressed.length - length);
+        }
+        return length;
+    }
+
+    private static int putVarInt(byte[] target, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            target[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        target[position++] = (byte) value;
+        return position;
+    }
+}
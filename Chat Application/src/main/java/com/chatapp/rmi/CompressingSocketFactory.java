@@ -0,0 +1,160 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.dto.CompressionStats;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Deflater;
+
+/**
+ * RMI socket factory whose connections deflate large payloads.
+ * Exported objects that use it hand the client half to their stubs, so both
+ * ends of every call agree on the framing. Enabled with
+ * {@code -Dchatapp.rmi.compress=true}; blocks smaller than
+ * {@code chatapp.rmi.compressThreshold} bytes are sent uncompressed.
+ *
+ * Counters cover every compressing socket in this JVM, before (raw) and
+ * after (wire) compression, in each direction.
+ */
+public class CompressingSocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final boolean ENABLED = Boolean.getBoolean("chatapp.rmi.compress");
+    private static final int THRESHOLD = Integer.getInteger("chatapp.rmi.compressThreshold", 512);
+    private static final int LEVEL = Integer.getInteger("chatapp.rmi.compressLevel", Deflater.BEST_SPEED);
+
+    private static final LongAdder rawBytesWritten = new LongAdder();
+    private static final LongAdder wireBytesWritten = new LongAdder();
+    private static final LongAdder rawBytesRead = new LongAdder();
+    private static final LongAdder wireBytesRead = new LongAdder();
+
+    private final int threshold;
+    private final int level;
+
+    public CompressingSocketFactory(int threshold, int level) {
+        this.threshold = threshold;
+        this.level = level;
+    }
+
+    /**
+     * Factory for exporting remote objects: a compressing one if enabled, otherwise
+     * null, which tells RMI to use its default sockets
+     */
+    public static CompressingSocketFactory forExport() {
+        return ENABLED ? new CompressingSocketFactory(THRESHOLD, LEVEL) : null;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        return new CompressingSocket(host, port, threshold, level);
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        return new ServerSocket(port) {
+            @Override
+            public Socket accept() throws IOException {
+                Socket socket = new CompressingSocket(threshold, level);
+                implAccept(socket);
+                return socket;
+            }
+        };
+    }
+
+    // RMI shares connections between stubs whose factories are equal
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof CompressingSocketFactory
+                && ((CompressingSocketFactory) other).threshold == threshold
+                && ((CompressingSocketFactory) other).level == level;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * threshold + level;
+    }
+
+    static void recordWrite(int rawBytes, int wireBytes) {
+        rawBytesWritten.add(rawBytes);
+        wireBytesWritten.add(wireBytes);
+    }
+
+    static void recordRead(int rawBytes, int wireBytes) {
+        rawBytesRead.add(rawBytes);
+        wireBytesRead.add(wireBytes);
+    }
+
+    /**
+     * Bytes handed to compressing sockets for sending
+     */
+    public static long getRawBytesWritten() {
+        return rawBytesWritten.sum();
+    }
+
+    /**
+     * Bytes actually sent by compressing sockets, framing included
+     */
+    public static long getWireBytesWritten() {
+        return wireBytesWritten.sum();
+    }
+
+    public static long getRawBytesRead() {
+        return rawBytesRead.sum();
+    }
+
+    public static long getWireBytesRead() {
+        return wireBytesRead.sum();
+    }
+
+    public static CompressionStats getStats() {
+        return new CompressionStats(ENABLED, getRawBytesWritten(), getWireBytesWritten(),
+                getRawBytesRead(), getWireBytesRead());
+    }
+
+    /**
+     * Socket whose streams are wrapped once, however often RMI asks for them
+     */
+    private static final class CompressingSocket extends Socket {
+
+        private final int threshold;
+        private final int level;
+        private InputStream in;
+        private OutputStream out;
+
+        CompressingSocket(int threshold, int level) {
+            this.threshold = threshold;
+            this.level = level;
+        }
+
+        CompressingSocket(String host, int port, int threshold, int level) throws IOException {
+            super(host, port);
+            this.threshold = threshold;
+            this.level = level;
+        }
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (in == null) {
+                in = new DecompressingInputStream(super.getInputStream());
+            }
+            return in;
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (out == null) {
+                out = new CompressingOutputStream(super.getOutputStream(), threshold, level);
+            }
+            return out;
+        }
+    }
+}
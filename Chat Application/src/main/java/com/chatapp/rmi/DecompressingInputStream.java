@@ -0,0 +1,122 @@
+package com.chatapp.rmi;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the blocks written by {@link CompressingOutputStream}, inflating as needed
+ */
+class DecompressingInputStream extends InputStream {
+
+    private final DataInputStream in;
+    private final Inflater inflater = new Inflater();
+    private final byte[] block = new byte[CompressingOutputStream.BLOCK_SIZE];
+    private final byte[] compressed = new byte[CompressingOutputStream.BLOCK_SIZE];
+    private int position = 0;
+    private int limit = 0;
+    private int headerBytes = 0;
+
+    DecompressingInputStream(InputStream in) {
+        this.in = new DataInputStream(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position == limit && !readBlock()) {
+            return -1;
+        }
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position == limit && !readBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(block, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        inflater.end();
+        in.close();
+    }
+
+    // Returns false at a clean end of stream
+    private boolean readBlock() throws IOException {
+        int type = in.read();
+        if (type < 0) {
+            return false;
+        }
+        headerBytes = 1;
+        int rawLength = readLength(CompressingOutputStream.BLOCK_SIZE);
+
+        if (type == CompressingOutputStream.RAW) {
+            in.readFully(block, 0, rawLength);
+            CompressingSocketFactory.recordRead(rawLength, headerBytes + rawLength);
+        } else if (type == CompressingOutputStream.DEFLATED) {
+            // The writer only deflates a block when that makes it smaller
+            int compressedLength = readLength(rawLength - 1);
+            in.readFully(compressed, 0, compressedLength);
+            inflate(compressedLength, rawLength);
+            CompressingSocketFactory.recordRead(rawLength, headerBytes + compressedLength);
+        } else {
+            throw new IOException("Unknown block type " + type);
+        }
+
+        position = 0;
+        limit = rawLength;
+        return rawLength > 0 || readBlock();
+    }
+
+    private void inflate(int compressedLength, int rawLength) throws IOException {
+        inflater.reset();
+        inflater.setInput(compressed, 0, compressedLength);
+        try {
+            int length = 0;
+            while (length < rawLength) {
+                int n = inflater.inflate(block, length, rawLength - length);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Truncated compressed block");
+                }
+                length += n;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed block", e);
+        }
+    }
+
+    private int readLength(int max) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Stream ended inside a block header");
+            }
+            headerBytes++;
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0 || value > max) {
+                    throw new IOException("Bad block length " + value);
+                }
+                return value;
+            }
+        }
+        throw new IOException("Malformed block length");
+    }
+}
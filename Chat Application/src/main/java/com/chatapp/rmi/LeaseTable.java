@@ -0,0 +1,86 @@
+package com.chatapp.rmi;
+
+import com.chatapp.util.StripedLongMap;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time-limited registrations for connected clients.
+ * Clients keep their lease alive by renewing it; a single background sweeper
+ * shared by all tables expires the ones that stop renewing, so dead clients are
+ * dropped without waiting for a callback to them to fail.
+ */
+public class LeaseTable {
+
+    public static final long LEASE_MILLIS = Long.getLong("chatapp.lease.durationMs", 30_000);
+    private static final long SWEEP_INTERVAL_MILLIS = Long.getLong("chatapp.lease.sweepMs", 5_000);
+
+    private static final ScheduledExecutorService SWEEPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "lease-sweeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Notified once for every lease that runs out without being renewed.
+     * Runs on the sweeper thread shared by every table, so it must not block;
+     * anything slow belongs on another thread or a chat's turn.
+     */
+    public interface ExpiryListener {
+        void leaseExpired(long id);
+    }
+
+    // Expiry deadline per id, in System.nanoTime() units
+    private final StripedLongMap<Long> deadlines = new StripedLongMap<>();
+    private final long leaseNanos;
+    private final ExpiryListener listener;
+
+    public LeaseTable(ExpiryListener listener) {
+        this.leaseNanos = TimeUnit.MILLISECONDS.toNanos(LEASE_MILLIS);
+        this.listener = listener;
+        SWEEPER.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Start or restart the lease for a client that has just registered
+     */
+    public void grant(long id) {
+        deadlines.put(id, System.nanoTime() + leaseNanos);
+    }
+
+    /**
+     * Extend an existing lease. Returns false if the client holds no lease,
+     * either because it never registered or because its lease already expired.
+     */
+    public boolean renew(long id) {
+        return deadlines.compute(id, (key, deadline) -> deadline == null ? null : System.nanoTime() + leaseNanos) != null;
+    }
+
+    public void revoke(long id) {
+        deadlines.remove(id);
+    }
+
+    public boolean isHeld(long id) {
+        return deadlines.containsKey(id);
+    }
+
+    public int size() {
+        return deadlines.size();
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        deadlines.forEach((id, deadline) -> {
+            // Remove only if the lease wasn't renewed since we read it
+            if (now - deadline > 0 && deadlines.remove(id, deadline)) {
+                try {
+                    listener.leaseExpired(id);
+                } catch (RuntimeException e) {
+                    System.err.println("Lease expiry handling failed for " + id + ": " + e.getMessage());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package com.chatapp.rmi;
+
+import java.util.Locale;
+
+/**
+ * What a client outbox does when a delivery arrives and its queue is already full.
+ * Whichever policy is chosen, the queue never grows past its limit.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Evict the oldest queued deliveries to make room, without telling the client
+     */
+    DROP_OLDEST,
+
+    /**
+     * Evict the oldest queued deliveries and tell the client how many it missed
+     */
+    DROP_AND_MARK_GAP,
+
+    /**
+     * Treat the client as dead and drop its registration
+     */
+    DISCONNECT;
+
+    /**
+     * Parse a policy name, falling back to the given default if it isn't recognised
+     */
+    public static OverflowPolicy parse(String name, OverflowPolicy defaultPolicy) {
+        if (name == null || name.trim().isEmpty()) {
+            return defaultPolicy;
+        }
+        try {
+            return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Unknown overflow policy '" + name + "', using " + defaultPolicy);
+            return defaultPolicy;
+        }
+    }
+}
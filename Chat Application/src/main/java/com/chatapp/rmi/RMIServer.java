@@ -1,33 +1,320 @@
 package com.chatapp.rmi;
 
+import com.chatapp.net.HttpGateway;
+import com.chatapp.net.NioServer;
 import com.chatapp.rmi.AdminRemoteImpl;
 import com.chatapp.rmi.AdminRemoteInterface;
+import com.chatapp.service.ActiveChatState;
+import com.chatapp.service.UserProfileService;
+import com.chatapp.util.CallMetrics;
+import com.chatapp.util.HibernateUtil;
+import com.chatapp.util.LatencyHistogram;
+
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class RMIServer {
-    private static final int PORT = 1099;
+    private static final int PORT = Integer.getInteger("chatapp.rmi.port", 1099);
     private static final String USER_SERVICE_NAME = "UserService";
     private static final String ADMIN_SERVICE_NAME = "AdminService";
+    // Binary-framed listener for user clients, e.g. 1100; off unless a port is given
+    private static final int NIO_PORT = Integer.getInteger("chatapp.nio.port", 0);
+    // HTTP gateway for scripts and bots, e.g. 8080; off unless a port is given
+    private static final int HTTP_PORT = Integer.getInteger("chatapp.http.port", 0);
+    // Longest a shutdown waits for running calls and queued deliveries before closing anyway
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = Long.getLong("chatapp.shutdown.timeoutMs", 10_000);
 
-    public static void start() throws Exception {
-        Map<Long, UserClientCallback> connectedUsers = new ConcurrentHashMap<>();
-        UserRemoteInterface userService = new UserRemoteImpl();
-        AdminRemoteInterface adminService = new AdminRemoteImpl(connectedUsers);
+    // RMI only holds exported objects weakly, so keep the services reachable for the life of the server
+    private static UserRemoteInterface userService;
+    private static AdminRemoteInterface adminService;
+    private static Remote userStub;
+    private static Remote adminStub;
+
+    // Everything shutdown() has to stop
+    private static final CallGate gate = new CallGate();
+    private static AdminRemoteImpl adminImpl;
+    private static Registry registry;
+    private static CallbackDispatcher dispatcher;
+    private static ChatActors chatActors;
+    private static ClusterRelay cluster;
+    private static NioServer nioServer;
+    private static HttpGateway httpGateway;
+
+    private static final CompletableFuture<Void> ready = new CompletableFuture<>();
+    private static final AtomicBoolean shutDown = new AtomicBoolean();
 
-        if (adminService instanceof AdminRemoteImpl) {
-            ((AdminRemoteImpl) adminService).setConnectedUsers(connectedUsers);
+    /**
+     * Completes once {@link #start()} has the services bound and every listener up,
+     * or fails with the reason it could not start
+     */
+    public static CompletableFuture<Void> ready() {
+        return ready;
+    }
+
+    public static void start() throws Exception {
+        try {
+            startServer();
+            ready.complete(null);
+        } catch (Exception | Error e) {
+            abortStart();
+            ready.completeExceptionally(e);
+            throw e;
         }
+    }
+
+    private static void startServer() throws Exception {
+        long startedAt = System.nanoTime();
+
+        // One registry and dispatcher, so admin actions reach the clients users registered
+        SessionRegistry sessions = new SessionRegistry(new UserProfileService());
+        dispatcher = new CallbackDispatcher(sessions);
+        chatActors = new ChatActors();
+        RateLimiter rateLimiter = new RateLimiter();
+        cluster = new ClusterRelay(sessions, dispatcher, chatActors);
 
-        Registry registry = LocateRegistry.createRegistry(PORT);
+        // The database, the registry and the remote objects don't depend on each other, so build them side by side
+        ExecutorService startup = Executors.newFixedThreadPool(3, r -> {
+            Thread thread = new Thread(r, "server-startup");
+            thread.setDaemon(true);
+            return thread;
+        });
+        CompletableFuture<Void> database = null;
+        CompletableFuture<Registry> createRegistry = null;
+        CompletableFuture<Void> export = null;
+        try {
+            database = phase("database", startup, () -> {
+                HibernateUtil.initialize();
+                int migrated = new UserProfileService().migrateLegacyProfilePictures();
+                if (migrated > 0) {
+                    System.out.println("Moved " + migrated + " profile pictures to the avatar store");
+                }
+                // Load the active chats now, not on the first message
+                ActiveChatState.getInstance().getAll();
+                return null;
+            });
+            createRegistry = phase("registry", startup, () -> LocateRegistry.createRegistry(PORT));
+            export = phase("services", startup, () -> {
+                // Every transport goes through the gate and the timed wrappers, so shutdown
+                // and the admin call stats cover them all
+                CallMetrics metrics = CallMetrics.getInstance();
+                UserRemoteImpl userImpl = new UserRemoteImpl(sessions, dispatcher, chatActors, rateLimiter, cluster);
+                userService = gate.guard(UserRemoteInterface.class, metrics.instrument(UserRemoteInterface.class, userImpl));
+                adminImpl = new AdminRemoteImpl(sessions, dispatcher, chatActors, rateLimiter, cluster, userImpl);
+                adminService = gate.guard(AdminRemoteInterface.class,
+                        metrics.instrument(AdminRemoteInterface.class, adminImpl));
+
+                // Compressing sockets when chatapp.rmi.compress is set, default sockets otherwise
+                userStub = UnicastRemoteObject.exportObject(userService, 0,
+                        CompressingSocketFactory.forExport(), CompressingSocketFactory.forExport());
+                adminStub = UnicastRemoteObject.exportObject(adminService, 0,
+                        CompressingSocketFactory.forExport(), CompressingSocketFactory.forExport());
+                return null;
+            });
+
+            await(database);
+            await(export);
+            registry = await(createRegistry);
+        } catch (Exception | Error e) {
+            // Let the other phases finish too, so abortStart() sees everything they created
+            if (export != null) {
+                CompletableFuture.allOf(database, createRegistry, export).exceptionally(failure -> null).join();
+                if (!createRegistry.isCompletedExceptionally()) {
+                    registry = createRegistry.join();
+                }
+            }
+            throw e;
+        } finally {
+            startup.shutdown();
+        }
 
-        registry.rebind(USER_SERVICE_NAME, userService);
-        registry.rebind(ADMIN_SERVICE_NAME, adminService);
+        // Bound only once the database is up, so no client's first call waits on it
+        registry.rebind(USER_SERVICE_NAME, userStub);
+        registry.rebind(ADMIN_SERVICE_NAME, adminStub);
 
         System.out.println("RMI Server started on port " + PORT);
         System.out.println("Service '" + USER_SERVICE_NAME + "' is ready for clients");
         System.out.println("Service '" + ADMIN_SERVICE_NAME + "' is ready for clients");
+
+        if (cluster.isClustered()) {
+            cluster.start();
+            System.out.println("Cluster bus started as " + cluster);
+        }
+
+        if (NIO_PORT > 0) {
+            // Same service objects, so RMI and NIO clients share chats, sessions and callbacks
+            nioServer = new NioServer(NIO_PORT, userService, dispatcher);
+            nioServer.start();
+            System.out.println("NIO listener for '" + USER_SERVICE_NAME + "' started on port " + nioServer.getPort());
+        }
+
+        if (HTTP_PORT > 0) {
+            httpGateway = new HttpGateway(HTTP_PORT, userService, dispatcher);
+            httpGateway.start();
+            System.out.println("HTTP gateway started on port " + httpGateway.getPort());
+        }
+
+        // Stopping the process, e.g. for a rolling restart, drains instead of dropping what's in flight
+        Runtime.getRuntime().addShutdownHook(new Thread(RMIServer::shutdown, "server-shutdown"));
+
+        System.out.println("Server ready in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) + " ms");
+    }
+
+    /**
+     * Stop the server without losing what it has already accepted: refuse new
+     * calls and let running ones finish, run everything queued on the chats
+     * (numbering, transcripts, fan-out, relays to other nodes), tell clients,
+     * deliver their queues, then unexport and close the database.
+     * The waits share one deadline of chatapp.shutdown.timeoutMs. Only the
+     * first call does anything; it also runs as a JVM shutdown hook.
+     */
+    public static void shutdown() {
+        if (!ready.isDone() || ready.isCompletedExceptionally() || !shutDown.compareAndSet(false, true)) {
+            return;
+        }
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MILLIS);
+        System.out.println("Shutting down server...");
+
+        try {
+            // No new clients find this node, and no new calls get in on any transport
+            unbind(USER_SERVICE_NAME);
+            unbind(ADMIN_SERVICE_NAME);
+            int running = gate.close(millisUntil(deadline));
+            if (running > 0) {
+                System.err.println(running + " remote call(s) still running at the shutdown deadline");
+            }
+
+            if (!chatActors.drain(millisUntil(deadline))) {
+                System.err.println("Some chat queues were not drained by the shutdown deadline");
+            }
+            chatActors.shutdown();
+            cluster.close();
+
+            // Queued behind everything clients are already due
+            dispatcher.broadcastAll(UserClientCallback::serverShuttingDown);
+            adminImpl.notifyShutdown();
+            if (!dispatcher.drain(millisUntil(deadline))) {
+                System.err.println("Some client queues were not delivered by the shutdown deadline");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            dispatcher.shutdown();
+            if (nioServer != null) {
+                nioServer.close();
+            }
+            if (httpGateway != null) {
+                httpGateway.stop();
+            }
+            unexport(userService);
+            unexport(adminService);
+            unexport(registry);
+            HibernateUtil.shutdown();
+            System.out.println("Server stopped in " + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt) + " ms");
+        }
+    }
+
+    /**
+     * Undo whatever a failed start got running: unbind and unexport the services,
+     * stop the listeners, the cluster bus and the workers, and close the database
+     */
+    private static void abortStart() {
+        System.err.println("Server failed to start, stopping what was started");
+        if (registry != null) {
+            for (String name : new String[]{USER_SERVICE_NAME, ADMIN_SERVICE_NAME}) {
+                try {
+                    registry.unbind(name);
+                } catch (RemoteException | NotBoundException e) {
+                    // Never bound
+                }
+            }
+        }
+        if (httpGateway != null) {
+            httpGateway.stop();
+        }
+        if (nioServer != null) {
+            nioServer.close();
+        }
+        if (cluster != null) {
+            cluster.close();
+        }
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+        if (chatActors != null) {
+            chatActors.shutdown();
+        }
+        unexport(userService);
+        unexport(adminService);
+        unexport(registry);
+        HibernateUtil.shutdown();
+    }
+
+    private static long millisUntil(long deadlineNanos) {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    private static void unbind(String name) {
+        try {
+            registry.unbind(name);
+        } catch (RemoteException | NotBoundException e) {
+            System.err.println("Failed to unbind '" + name + "': " + e.getMessage());
+        }
+    }
+
+    private static void unexport(Remote object) {
+        if (object == null) {
+            return;
+        }
+        try {
+            UnicastRemoteObject.unexportObject(object, true);
+        } catch (NoSuchObjectException e) {
+            // Not exported, or already gone
+        }
+    }
+
+    /**
+     * Run one startup phase on the pool, logging how long it took and recording it in the call stats
+     */
+    private static <T> CompletableFuture<T> phase(String name, ExecutorService executor, Callable<T> work) {
+        LatencyHistogram histogram = CallMetrics.getInstance().histogram("startup/" + name);
+        return CompletableFuture.supplyAsync(() -> {
+            long phaseStart = System.nanoTime();
+            try {
+                T result = work.call();
+                histogram.recordSince(phaseStart);
+                System.out.println("Startup phase '" + name + "' took "
+                        + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStart) + " ms");
+                return result;
+            } catch (Exception e) {
+                histogram.recordErrorSince(phaseStart);
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,16 @@
+package com.chatapp.rmi;
+
+import java.rmi.RemoteException;
+
+/**
+ * Thrown when a user makes calls faster than their rate limit allows.
+ * Nothing was done; the call may be retried once the limit refills.
+ */
+public class RateLimitedException extends RemoteException {
+
+    private static final long serialVersionUID = 1L;
+
+    public RateLimitedException(String message) {
+        super(message);
+    }
+}
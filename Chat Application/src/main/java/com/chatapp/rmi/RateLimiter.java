@@ -0,0 +1,97 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.dto.RateLimitStats;
+import com.chatapp.util.StripedLongMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-user rate limits, shared by the user and admin remote objects.
+ * Sending messages and joining or leaving chats draw on separate buckets, so a
+ * chatty user can still leave a room. A rate of 0 or less turns a limit off.
+ */
+public class RateLimiter {
+
+    private static final double MESSAGES_PER_SECOND = Double.parseDouble(System.getProperty("chatapp.rate.messagesPerSecond", "5"));
+    private static final int MESSAGE_BURST = Integer.getInteger("chatapp.rate.messageBurst", 10);
+    private static final double MEMBERSHIP_PER_SECOND = Double.parseDouble(System.getProperty("chatapp.rate.membershipPerSecond", "1"));
+    private static final int MEMBERSHIP_BURST = Integer.getInteger("chatapp.rate.membershipBurst", 5);
+
+    private final StripedLongMap<TokenBucket> messageBuckets = new StripedLongMap<>();
+    private final StripedLongMap<TokenBucket> membershipBuckets = new StripedLongMap<>();
+    private final LongAdder throttledMessages = new LongAdder();
+    private final LongAdder throttledMemberships = new LongAdder();
+
+    /**
+     * Fail fast if the user is sending messages faster than allowed
+     */
+    public void checkMessage(long userId) throws RateLimitedException {
+        if (MESSAGES_PER_SECOND > 0) {
+            check(messageBuckets, userId, MESSAGES_PER_SECOND, MESSAGE_BURST, throttledMessages, "sending messages");
+        }
+    }
+
+    /**
+     * Fail fast if the user is joining or leaving chats faster than allowed
+     */
+    public void checkMembership(long userId) throws RateLimitedException {
+        if (MEMBERSHIP_PER_SECOND > 0) {
+            check(membershipBuckets, userId, MEMBERSHIP_PER_SECOND, MEMBERSHIP_BURST, throttledMemberships, "joining or leaving chats");
+        }
+    }
+
+    /**
+     * Drop a user's buckets once their client has gone
+     */
+    public void forget(long userId) {
+        messageBuckets.remove(userId);
+        membershipBuckets.remove(userId);
+    }
+
+    public RateLimitStats getStats() {
+        List<long[]> throttledUsers = new ArrayList<>();
+        messageBuckets.forEach((userId, bucket) -> {
+            TokenBucket membership = membershipBuckets.get(userId);
+            long throttled = bucket.getThrottledCount() + (membership != null ? membership.getThrottledCount() : 0);
+            if (throttled > 0) {
+                throttledUsers.add(new long[]{userId, throttled});
+            }
+        });
+        membershipBuckets.forEach((userId, bucket) -> {
+            if (!messageBuckets.containsKey(userId) && bucket.getThrottledCount() > 0) {
+                throttledUsers.add(new long[]{userId, bucket.getThrottledCount()});
+            }
+        });
+
+        long[] userIds = new long[throttledUsers.size()];
+        long[] counts = new long[throttledUsers.size()];
+        for (int i = 0; i < userIds.length; i++) {
+            userIds[i] = throttledUsers.get(i)[0];
+            counts[i] = throttledUsers.get(i)[1];
+        }
+        return new RateLimitStats(MESSAGES_PER_SECOND, MESSAGE_BURST, MEMBERSHIP_PER_SECOND, MEMBERSHIP_BURST,
+                throttledMessages.sum(), throttledMemberships.sum(), userIds, counts);
+    }
+
+    private static void check(StripedLongMap<TokenBucket> buckets, long userId, double perSecond, int burst,
+                              LongAdder throttledTotal, String action) throws RateLimitedException {
+        TokenBucket bucket = buckets.get(userId);
+        if (bucket == null) {
+            TokenBucket created = new TokenBucket(perSecond, burst);
+            bucket = buckets.putIfAbsent(userId, created);
+            if (bucket == null) {
+                bucket = created;
+            }
+        }
+
+        long waitNanos = bucket.tryAcquire();
+        if (waitNanos > 0) {
+            throttledTotal.increment();
+            long waitMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitNanos));
+            throw new RateLimitedException("You are " + action + " too fast; try again in " + waitMillis + " ms");
+        }
+    }
+}
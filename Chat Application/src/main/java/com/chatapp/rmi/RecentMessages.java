@@ -0,0 +1,58 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.dto.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Fixed-size ring of the latest messages sent to one chat, in sequence order.
+ * Lets a reconnecting client catch up without reading the transcript back.
+ * Not thread-safe; it is owned by a {@link ChatActor} and only touched on its turn.
+ */
+class RecentMessages {
+
+    private final ChatMessage[] ring;
+    private int head = 0;   // slot of the oldest message
+    private int size = 0;
+
+    RecentMessages(int capacity) {
+        this.ring = new ChatMessage[Math.max(1, capacity)];
+    }
+
+    void add(ChatMessage message) {
+        int tail = (head + size) % ring.length;
+        ring[tail] = message;
+        if (size < ring.length) {
+            size++;
+        } else {
+            head = (head + 1) % ring.length;
+        }
+    }
+
+    /**
+     * Messages with a sequence above {@code lastSeenSequence}, oldest first.
+     * Returns null if some of them have already been pushed out of the ring.
+     */
+    List<ChatMessage> after(long lastSeenSequence) {
+        if (size == 0) {
+            return null;
+        }
+        if (ring[(head + size - 1) % ring.length].getSequence() <= lastSeenSequence) {
+            return Collections.emptyList();
+        }
+        if (ring[head].getSequence() > lastSeenSequence + 1) {
+            return null;
+        }
+
+        List<ChatMessage> missed = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            ChatMessage message = ring[(head + i) % ring.length];
+            if (message.getSequence() > lastSeenSequence) {
+                missed.add(message);
+            }
+        }
+        return missed;
+    }
+}
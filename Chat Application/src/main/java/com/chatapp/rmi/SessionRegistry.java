@@ -0,0 +1,253 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.entity.User;
+import com.chatapp.service.UserProfileService;
+import com.chatapp.util.StripedLongMap;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Server-wide registry of logged in users and connected clients, shared by
+ * the user and admin remote objects.
+ *
+ * Holds the session snapshot of every logged in user, the outbox of every
+ * registered user client, the callback of every registered admin client, and
+ * which users have joined which chats. All tables are keyed by primitive ids;
+ * chat membership is kept as copy-on-write id arrays so broadcasts iterate a
+ * stable snapshot without locking.
+ */
+public class SessionRegistry {
+
+    private static final long[] NONE = new long[0];
+
+    private final UserProfileService userProfileService;
+
+    private final StripedLongMap<UserSession> sessions = new StripedLongMap<>();
+    private final StripedLongMap<ClientOutbox> userClients = new StripedLongMap<>();
+    private final StripedLongMap<AdminClientCallback> adminClients = new StripedLongMap<>();
+    private final StripedLongMap<long[]> participantsByChat = new StripedLongMap<>();
+    private final StripedLongMap<long[]> chatsByUser = new StripedLongMap<>();
+
+    public SessionRegistry(UserProfileService userProfileService) {
+        this.userProfileService = userProfileService;
+    }
+
+    // Sessions
+
+    /**
+     * Create or replace the session for a user who has just logged in
+     */
+    public UserSession open(User user) {
+        UserSession session = UserSession.of(user);
+        sessions.put(session.getUserId(), session);
+        return session;
+    }
+
+    /**
+     * Resolve the session for a user id.
+     * Falls back to the database for clients whose session predates a server restart.
+     */
+    public Optional<UserSession> resolve(long userId) {
+        UserSession session = sessions.get(userId);
+        if (session != null) {
+            return Optional.of(session);
+        }
+
+        Optional<User> optionalUser = userProfileService.getUserById(userId);
+        return optionalUser.map(this::open);
+    }
+
+    /**
+     * Drop a session so the next call sees fresh user data
+     */
+    public void invalidate(long userId) {
+        sessions.remove(userId);
+    }
+
+    // User clients
+
+    /**
+     * Attach the outbox of a newly registered user client, returning the one it replaces
+     */
+    ClientOutbox attachUserClient(long userId, ClientOutbox outbox) {
+        return userClients.put(userId, outbox);
+    }
+
+    ClientOutbox detachUserClient(long userId) {
+        return userClients.remove(userId);
+    }
+
+    /**
+     * Detach only if the user hasn't registered a newer client in the meantime
+     */
+    boolean detachUserClient(long userId, ClientOutbox outbox) {
+        return userClients.remove(userId, outbox);
+    }
+
+    ClientOutbox getUserClient(long userId) {
+        return userClients.get(userId);
+    }
+
+    List<ClientOutbox> getUserClients() {
+        return userClients.values();
+    }
+
+    public boolean isUserConnected(long userId) {
+        return userClients.containsKey(userId);
+    }
+
+    // Admin clients
+
+    public void attachAdminClient(long adminId, AdminClientCallback callback) {
+        adminClients.put(adminId, callback);
+    }
+
+    public boolean detachAdminClient(long adminId) {
+        return adminClients.remove(adminId) != null;
+    }
+
+    /**
+     * Detach only if the admin hasn't registered a newer client in the meantime
+     */
+    public boolean detachAdminClient(long adminId, AdminClientCallback callback) {
+        return adminClients.remove(adminId, callback);
+    }
+
+    public boolean isAdminConnected(long adminId) {
+        return adminClients.containsKey(adminId);
+    }
+
+    public void forEachAdminClient(StripedLongMap.EntryConsumer<AdminClientCallback> consumer) {
+        adminClients.forEach(consumer);
+    }
+
+    // Chat participation
+
+    /**
+     * Record that a user has opened a chat. Returns false if they already had.
+     */
+    public boolean joinChat(long chatId, long userId) {
+        boolean[] added = new boolean[1];
+        participantsByChat.compute(chatId, (key, ids) -> {
+            long[] updated = with(ids, userId);
+            added[0] = updated != ids;
+            return updated;
+        });
+        chatsByUser.compute(userId, (key, ids) -> with(ids, chatId));
+        return added[0];
+    }
+
+    /**
+     * Record that a user has left a chat. Returns false if they were not in it.
+     */
+    public boolean leaveChat(long chatId, long userId) {
+        boolean[] removed = new boolean[1];
+        participantsByChat.compute(chatId, (key, ids) -> {
+            long[] remaining = without(ids, userId);
+            removed[0] = remaining != ids;
+            return remaining;
+        });
+        chatsByUser.compute(userId, (key, ids) -> without(ids, chatId));
+        return removed[0];
+    }
+
+    /**
+     * Forget everyone who had joined a chat, e.g. when it ends
+     */
+    public long[] clearChat(long chatId) {
+        long[] userIds = participantsByChat.remove(chatId);
+        if (userIds == null) {
+            return NONE;
+        }
+        for (long userId : userIds) {
+            chatsByUser.compute(userId, (key, ids) -> without(ids, chatId));
+        }
+        return userIds;
+    }
+
+    /**
+     * Snapshot of the users currently in a chat. Must not be modified.
+     */
+    public long[] getParticipants(long chatId) {
+        long[] ids = participantsByChat.get(chatId);
+        return ids != null ? ids : NONE;
+    }
+
+    public boolean isParticipant(long chatId, long userId) {
+        return indexOf(getParticipants(chatId), userId) >= 0;
+    }
+
+    /**
+     * Snapshot of the chats a user is currently in. Must not be modified.
+     */
+    public long[] getJoinedChats(long userId) {
+        long[] ids = chatsByUser.get(userId);
+        return ids != null ? ids : NONE;
+    }
+
+    // Counts
+
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    public int getConnectedUserCount() {
+        return userClients.size();
+    }
+
+    public int getConnectedAdminCount() {
+        return adminClients.size();
+    }
+
+    /**
+     * Number of chats that currently have at least one participant
+     */
+    public int getOccupiedChatCount() {
+        return participantsByChat.size();
+    }
+
+    public int getParticipantCount(long chatId) {
+        return getParticipants(chatId).length;
+    }
+
+    private static long[] with(long[] ids, long id) {
+        if (ids == null) {
+            return new long[]{id};
+        }
+        if (indexOf(ids, id) >= 0) {
+            return ids;
+        }
+        long[] grown = Arrays.copyOf(ids, ids.length + 1);
+        grown[ids.length] = id;
+        return grown;
+    }
+
+    // Returns the same array if id is absent, and null once the last id is gone
+    private static long[] without(long[] ids, long id) {
+        if (ids == null) {
+            return null;
+        }
+        int index = indexOf(ids, id);
+        if (index < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null;
+        }
+        long[] shrunk = new long[ids.length - 1];
+        System.arraycopy(ids, 0, shrunk, 0, index);
+        System.arraycopy(ids, index + 1, shrunk, index, ids.length - index - 1);
+        return shrunk;
+    }
+
+    private static int indexOf(long[] ids, long id) {
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
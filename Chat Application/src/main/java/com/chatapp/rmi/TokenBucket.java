@@ -0,0 +1,47 @@
+package com.chatapp.rmi;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket.
+ * Rather than a token count, it keeps the time at which the bucket would be
+ * full again; taking a token pushes that time one interval later, and a take
+ * is refused if it would land more than a full burst ahead of now. One CAS per
+ * call, no refill thread.
+ */
+class TokenBucket {
+
+    private final long intervalNanos;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+    private final AtomicLong throttled = new AtomicLong();
+
+    TokenBucket(double perSecond, int burst) {
+        this.intervalNanos = (long) (1_000_000_000L / perSecond);
+        this.burstNanos = intervalNanos * Math.max(1, burst);
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Take a token. Returns 0 on success, otherwise the nanoseconds until one is available.
+     */
+    long tryAcquire() {
+        while (true) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long next = (current - now > 0 ? current : now) + intervalNanos;
+            long ahead = next - now;
+            if (ahead > burstNanos) {
+                throttled.incrementAndGet();
+                return ahead - burstNanos;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    long getThrottledCount() {
+        return throttled.get();
+    }
+}
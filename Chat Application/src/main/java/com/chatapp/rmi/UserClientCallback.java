@@ -1,8 +1,12 @@
 package com.chatapp.rmi;
 
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.PresenceEvent;
+
 import java.rmi.Remote;
 import java.rmi.RemoteException;
-import java.util.Map;
+import java.util.List;
 
 
  //Callback interface for user client notifications
@@ -12,17 +16,22 @@ public interface UserClientCallback extends Remote {
 
       //Receive a message from another user
 
-    void receiveMessage(Map<String, Object> messageData) throws RemoteException;
+    void receiveMessage(ChatMessage message) throws RemoteException;
+
+
+     //Receive several messages at once, in the order they were sent
+
+    void receiveMessages(List<ChatMessage> messages) throws RemoteException;
 
 
     // Notification when another user joins the chat
 
-    void userJoined(Map<String, Object> userData) throws RemoteException;
+    void userJoined(PresenceEvent event) throws RemoteException;
 
 
      //Notification when another user leaves the chat
 
-    void userLeft(Map<String, Object> userData) throws RemoteException;
+    void userLeft(PresenceEvent event) throws RemoteException;
 
 
     // Notification when subscription to a chat changes
@@ -32,15 +41,25 @@ public interface UserClientCallback extends Remote {
 
     // Notification when a chat is started
 
-    void chatStarted(Map<String, Object> chatData) throws RemoteException;
+    void chatStarted(ChatSummary chat) throws RemoteException;
 
 
      //Notification when a chat is ended
 
-    void chatEnded(Map<String, Object> chatData) throws RemoteException;
+    void chatEnded(ChatSummary chat) throws RemoteException;
+
+
+     //Notification that some earlier notifications were dropped because this client fell behind
+
+    void deliveryGap(int droppedCount) throws RemoteException;
 
 
      //Notification when user is removed from the system
 
     void userRemoved() throws RemoteException;
+
+
+     //Notification that the server is shutting down; nothing more will be delivered
+
+    void serverShuttingDown() throws RemoteException;
 }
\ No newline at end of file
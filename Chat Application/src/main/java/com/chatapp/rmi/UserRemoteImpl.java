@@ -1,34 +1,54 @@
 package com.chatapp.rmi;
 
+import com.chatapp.model.dto.AvatarImage;
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.PresenceEvent;
+import com.chatapp.model.dto.UserSummary;
 import com.chatapp.model.entity.Chat;
-import com.chatapp.model.entity.ChatSubscription;
 import com.chatapp.model.entity.User;
+import com.chatapp.model.entity.UserAvatar;
 import com.chatapp.service.UserChatService;
 import com.chatapp.service.UserProfileService;
+import com.chatapp.util.CallMetrics;
+import com.chatapp.util.LatencyHistogram;
 
-import java.io.IOException;
 import java.rmi.RemoteException;
-import java.rmi.server.UnicastRemoteObject;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Implementation of the user remote interface
  */
-public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInterface {
+public class UserRemoteImpl implements UserRemoteInterface {
+
+    // Phases of sendMessage; the call as a whole is timed by the instrumented wrapper
+    private static final LatencyHistogram SEND_LOOKUP = CallMetrics.getInstance().histogram("sendMessage/lookup");
+    private static final LatencyHistogram SEND_QUEUED = CallMetrics.getInstance().histogram("sendMessage/queued");
+    private static final LatencyHistogram SEND_TRANSCRIPT = CallMetrics.getInstance().histogram("sendMessage/transcript");
+    private static final LatencyHistogram SEND_FAN_OUT = CallMetrics.getInstance().histogram("sendMessage/fanOut");
 
     private final UserProfileService userProfileService;
     private final UserChatService userChatService;
-    private final Map<Long, UserClientCallback> connectedUsers;
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-    public UserRemoteImpl() throws RemoteException {
-        super();
+    private final CallbackDispatcher dispatcher;
+    private final SessionRegistry sessions;
+    private final ChatActors chatActors;
+    private final LeaseTable leases;
+    private final RateLimiter rateLimiter;
+    private final ClusterRelay cluster;
+
+    public UserRemoteImpl(SessionRegistry sessions, CallbackDispatcher dispatcher, ChatActors chatActors,
+                          RateLimiter rateLimiter, ClusterRelay cluster) throws RemoteException {
         this.userProfileService = new UserProfileService();
         this.userChatService = new UserChatService();
-        this.connectedUsers = new ConcurrentHashMap<>();
+        this.sessions = sessions;
+        this.dispatcher = dispatcher;
+        this.chatActors = chatActors;
+        this.rateLimiter = rateLimiter;
+        this.cluster = cluster;
+        this.leases = new LeaseTable(this::clientDeparted);
+        this.dispatcher.setFailureListener(this::clientDeparted);
+        this.cluster.setMessageRecorder(this::recordForwardedMessage);
+        this.cluster.setUserRemover(this::removedElsewhere);
     }
 
     @Override
@@ -42,74 +62,106 @@ public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInt
     }
 
     @Override
-    public Map<String, Object> login(String username, String password) throws RemoteException {
+    public UserSummary login(String username, String password) throws RemoteException {
         Optional<User> optionalUser = userProfileService.authenticate(username, password);
 
         if (optionalUser.isPresent()) {
             User user = optionalUser.get();
-            Map<String, Object> userData = new HashMap<>();
-            userData.put("id", user.getId());
-            userData.put("email", user.getEmail());
-            userData.put("username", user.getUsername());
-            userData.put("nickName", user.getNickName());
-            userData.put("isAdmin", user.isAdmin());
-
-            return userData;
+            sessions.open(user);
+            return UserSummary.from(user);
         } else {
             throw new RemoteException("Invalid credentials");
         }
     }
 
     @Override
-    public void sendMessage(long userId, String message) throws RemoteException {
-        Optional<User> optionalUser = userProfileService.getUserById(userId);
-        Optional<Chat> optionalActiveChat = userChatService.getActiveChat();
-
-        if (optionalUser.isPresent() && optionalActiveChat.isPresent()) {
-            User user = optionalUser.get();
-            Chat activeChat = optionalActiveChat.get();
+    public void sendMessage(long userId, long chatId, String message) throws RemoteException {
+        // Checked before any lookup, so a flood costs nothing beyond this call
+        rateLimiter.checkMessage(userId);
 
-            if (userChatService.isUserSubscribedToChat(user, activeChat)) {
-                try {
+        long lookupStart = System.nanoTime();
+        Optional<UserSession> optionalSession = sessions.resolve(userId);
+        Optional<Chat> optionalActiveChat = userChatService.getActiveChat(chatId);
 
-                    userChatService.appendMessageToChatTranscript(activeChat, user, message);
+        if (optionalSession.isPresent() && optionalActiveChat.isPresent()) {
+            UserSession session = optionalSession.get();
+            Chat activeChat = optionalActiveChat.get();
 
+            if (userChatService.isUserSubscribedToChat(userId, activeChat)) {
+                SEND_LOOKUP.recordSince(lookupStart);
+                boolean bye = "Bye".equalsIgnoreCase(message.trim());
 
-                    if ("Bye".equalsIgnoreCase(message.trim())) {
-                        leaveChat(userId);
-                        return;
+                if (cluster.ownsChat(chatId)) {
+                    recordMessage(activeChat, userId, session.getNickName(), session.getAvatarHash(), message, true);
+                } else {
+                    // The owning node numbers and records it, then relays it back to our participants
+                    if (!bye) {
+                        sessions.joinChat(chatId, userId);
                     }
+                    cluster.forwardMessage(chatId, userId, session.getNickName(), session.getAvatarHash(), message);
+                }
 
-                    // Broadcast message to all participants
-                    Map<String, Object> messageData = new HashMap<>();
-                    messageData.put("userId", user.getId());
-                    messageData.put("nickName", user.getNickName());
-                    messageData.put("message", message);
-                    messageData.put("timestamp", LocalDateTime.now().format(formatter));
-                    messageData.put("hasProfilePicture", user.getProfilePicture() != null && user.getProfilePicture().length > 0);
-
-                    for (ChatSubscription subscription : userChatService.getChatSubscribers(activeChat)) {
-                        User subscriber = subscription.getUser();
-                        UserClientCallback callback = connectedUsers.get(subscriber.getId());
-
-                        if (callback != null) {
-                            try {
-                                callback.receiveMessage(messageData);
-                            } catch (RemoteException e) {
-
-                                connectedUsers.remove(subscriber.getId());  // Client might be disconnected, remove from connected clients
-                            }
-                        }
-                    }
-                } catch (IOException e) {
-                    throw new RemoteException("Failed to record message: " + e.getMessage());
+                if (bye) {
+                    departChat(userId, chatId);
                 }
             } else {
-                throw new RemoteException("You are not subscribed to the active chat");
+                throw new RemoteException("You are not subscribed to this chat");
             }
         } else {
-            throw new RemoteException("Invalid user ID or no active chat");
+            throw new RemoteException("Invalid user ID or chat is not active");
+        }
+    }
+
+    /**
+     * Number, record and fan out a message on the chat's turn, so every
+     * participant sees messages in the order the transcript records them.
+     * A "Bye" is only written to the transcript.
+     */
+    private void recordMessage(Chat activeChat, long userId, String nickName, String avatarHash, String message,
+                               boolean localSender) throws RemoteException {
+        long chatId = activeChat.getId();
+        boolean bye = "Bye".equalsIgnoreCase(message.trim());
+
+        long queuedAt = System.nanoTime();
+        chatActors.call(chatId, "Failed to record message", actor -> {
+            SEND_QUEUED.recordSince(queuedAt);
+            requireStillActive(chatId);
+            long sequence = bye ? 0 : nextSequence(actor, activeChat);
+            long transcriptStart = System.nanoTime();
+            userChatService.appendMessageToChatTranscript(activeChat, sequence, nickName, message);
+            SEND_TRANSCRIPT.recordSince(transcriptStart);
+
+            if (!bye) {
+                if (localSender) {
+                    // A client whose join predates a server restart is re-added on its first message
+                    sessions.joinChat(chatId, userId);
+                }
+
+                // Broadcast message to all participants
+                ChatMessage chatMessage = new ChatMessage(chatId, sequence, userId,
+                        nickName, message, System.currentTimeMillis(), avatarHash);
+                actor.recordMessage(chatMessage);
+
+                // Queue for each participant; delivery happens off the chat's turn
+                long fanOutStart = System.nanoTime();
+                dispatcher.broadcast(sessions.getParticipants(chatId), 0,
+                        new ClientOutbox.MessageDelivery(chatMessage));
+                cluster.publishMessage(chatMessage);
+                SEND_FAN_OUT.recordSince(fanOutStart);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Record a message sent through another node, for a chat this node owns
+     */
+    private void recordForwardedMessage(long chatId, long userId, String nickName, String avatarHash, String message) throws RemoteException {
+        Optional<Chat> optionalActiveChat = userChatService.getActiveChat(chatId);
+        if (!optionalActiveChat.isPresent()) {
+            throw new RemoteException("Chat is not active");
         }
+        recordMessage(optionalActiveChat.get(), userId, nickName, avatarHash, message, false);
     }
 
     @Override
@@ -122,16 +174,10 @@ public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInt
             Chat chat = optionalChat.get();
 
             userChatService.subscribeUserToChat(user, chat);
+            cluster.publishSubscribed(chatId, userId);
 
             // Notify the user about subscription change
-            UserClientCallback callback = connectedUsers.get(userId);
-            if (callback != null) {
-                try {
-                    callback.subscriptionChanged(true, chatId);
-                } catch (RemoteException e) {
-                    connectedUsers.remove(userId);
-                }
-            }
+            dispatcher.enqueue(userId, callback -> callback.subscriptionChanged(true, chatId));
         } else {
             throw new RemoteException("Invalid user ID or chat ID");
         }
@@ -147,16 +193,10 @@ public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInt
             Chat chat = optionalChat.get();
 
             userChatService.unsubscribeUserFromChat(user, chat);
+            cluster.publishUnsubscribed(chatId, userId);
 
             // Notify the user about subscription change
-            UserClientCallback callback = connectedUsers.get(userId);
-            if (callback != null) {
-                try {
-                    callback.subscriptionChanged(false, chatId);
-                } catch (RemoteException e) {
-                    connectedUsers.remove(userId);
-                }
-            }
+            dispatcher.enqueue(userId, callback -> callback.subscriptionChanged(false, chatId));
         } else {
             throw new RemoteException("Invalid user ID or chat ID");
         }
@@ -164,27 +204,13 @@ public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInt
 
 
     @Override
-    public List<Map<String, Object>> getAllChats() throws RemoteException {
+    public List<ChatSummary> getAllChats() throws RemoteException {
         try {
-            List<Chat> chats = userChatService.getAllChats(); // You'll need to implement this method in UserChatService
-            List<Map<String, Object>> chatDataList = new ArrayList<>();
+            List<Chat> chats = userChatService.getAllChats();
+            List<ChatSummary> chatDataList = new ArrayList<>(chats.size());
 
             for (Chat chat : chats) {
-                Map<String, Object> chatData = new HashMap<>();
-                chatData.put("id", chat.getId());
-                chatData.put("name", chat.getName());
-                chatData.put("isActive", chat.isActive());
-                chatData.put("createdAt", chat.getCreatedAt().format(formatter));
-
-                if (chat.getStartedAt() != null) {
-                    chatData.put("startedAt", chat.getStartedAt().format(formatter));
-                }
-
-                if (chat.getEndedAt() != null) {
-                    chatData.put("endedAt", chat.getEndedAt().format(formatter));
-                }
-
-                chatDataList.add(chatData);
+                chatDataList.add(ChatSummary.from(chat));
             }
 
             return chatDataList;
@@ -195,30 +221,16 @@ public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInt
 
 
     @Override
-    public List<Map<String, Object>> getUserChats(long userId) throws RemoteException {
+    public List<ChatSummary> getUserChats(long userId) throws RemoteException {
         Optional<User> optionalUser = userProfileService.getUserById(userId);
 
         if (optionalUser.isPresent()) {
             User user = optionalUser.get();
             List<Chat> chats = userChatService.getUserSubscribedChats(user);
-            List<Map<String, Object>> chatDataList = new ArrayList<>();
+            List<ChatSummary> chatDataList = new ArrayList<>(chats.size());
 
             for (Chat chat : chats) {
-                Map<String, Object> chatData = new HashMap<>();
-                chatData.put("id", chat.getId());
-                chatData.put("name", chat.getName());
-                chatData.put("isActive", chat.isActive());
-                chatData.put("createdAt", chat.getCreatedAt().format(formatter));
-
-                if (chat.getStartedAt() != null) {
-                    chatData.put("startedAt", chat.getStartedAt().format(formatter));
-                }
-
-                if (chat.getEndedAt() != null) {
-                    chatData.put("endedAt", chat.getEndedAt().format(formatter));
-                }
-
-                chatDataList.add(chatData);
+                chatDataList.add(ChatSummary.from(chat));
             }
 
             return chatDataList;
@@ -229,10 +241,12 @@ public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInt
 
     @Override
     public void registerClient(long userId, UserClientCallback callback) throws RemoteException {
-        Optional<User> optionalUser = userProfileService.getUserById(userId);
+        Optional<UserSession> optionalSession = sessions.resolve(userId);
 
-        if (optionalUser.isPresent()) {
-            connectedUsers.put(userId, callback);
+        if (optionalSession.isPresent()) {
+            dispatcher.register(userId, callback);
+            leases.grant(userId);
+            cluster.userConnected(userId);
         } else {
             throw new RemoteException("Invalid user ID");
         }
@@ -240,104 +254,174 @@ public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInt
 
     @Override
     public void unregisterClient(long userId) throws RemoteException {
-        connectedUsers.remove(userId);
+        leases.revoke(userId);
+        dispatcher.unregister(userId);
+        sessions.invalidate(userId);
+        cluster.userDisconnected(userId);
     }
 
     @Override
-    public Map<String, Object> joinChat(long userId) throws RemoteException {
-        Optional<User> optionalUser = userProfileService.getUserById(userId);
-        Optional<Chat> optionalActiveChat = userChatService.getActiveChat();
+    public long renewLease(long userId) throws RemoteException {
+        if (dispatcher.isConnected(userId) && leases.renew(userId)) {
+            return LeaseTable.LEASE_MILLIS;
+        }
+        return 0;
+    }
 
-        if (optionalUser.isPresent() && optionalActiveChat.isPresent()) {
-            User user = optionalUser.get();
-            Chat activeChat = optionalActiveChat.get();
+    /**
+     * Drop a client whose lease expired or whose callback failed, and tell the
+     * rest of the chat it has gone. Runs on the lease sweeper or a delivery
+     * worker, so the chats are told on their own turns without waiting.
+     */
+    private void clientDeparted(long userId) {
+        leases.revoke(userId);
+        dispatcher.unregister(userId);
+        cluster.userDisconnected(userId);
+        for (long chatId : sessions.getJoinedChats(userId)) {
+            departChatLater(userId, chatId);
+        }
 
-            if (userChatService.isUserSubscribedToChat(user, activeChat)) {
-                try {
-
-                    userChatService.recordUserJoinedChat(activeChat, user);   // Record user join in chat transcript
-
-                    // Prepare response data
-                    Map<String, Object> chatData = new HashMap<>();
-                    chatData.put("chatId", activeChat.getId());
-                    chatData.put("chatName", activeChat.getName());
-                    chatData.put("startTime", activeChat.getStartedAt().format(formatter));
-
-                    // Notify other participants about the user joining
-                    Map<String, Object> userData = new HashMap<>();
-                    userData.put("userId", user.getId());
-                    userData.put("nickName", user.getNickName());
-                    userData.put("timestamp", LocalDateTime.now().format(formatter));
-                    userData.put("hasProfilePicture", user.getProfilePicture() != null && user.getProfilePicture().length > 0);
-
-                    for (ChatSubscription subscription : userChatService.getChatSubscribers(activeChat)) {
-                        User subscriber = subscription.getUser();
-                        if (!subscriber.getId().equals(user.getId())) {
-                            UserClientCallback callback = connectedUsers.get(subscriber.getId());
-
-                            if (callback != null) {
-                                try {
-                                    callback.userJoined(userData);
-                                } catch (RemoteException e) {
-                                    connectedUsers.remove(subscriber.getId());
-                                }
-                            }
-                        }
-                    }
+        sessions.invalidate(userId);
+        rateLimiter.forget(userId);
+        System.out.println("Client of user " + userId + " disconnected");
+    }
 
-                    return chatData;
-                } catch (IOException e) {
-                    throw new RemoteException("Failed to join chat: " + e.getMessage());
-                }
+    /**
+     * Take a user an admin is removing out of their chats the way a departing
+     * client leaves, then tell their client and drop it. Runs before the
+     * account is deleted, while the session can still be resolved.
+     */
+    void removeUser(long userId) {
+        leases.revoke(userId);
+        departAllChats(userId);
+
+        dispatcher.enqueue(userId, UserClientCallback::userRemoved);
+        dispatcher.unregisterAfterDelivery(userId);
+        cluster.userDisconnected(userId);
+        rateLimiter.forget(userId);
+    }
+
+    /**
+     * Drop the client of a user an admin removed through another node. Runs
+     * on the cluster bus reader, so the chats are told without waiting.
+     */
+    private void removedElsewhere(long userId) {
+        boolean connected = sessions.isUserConnected(userId);
+        leases.revoke(userId);
+        for (long chatId : sessions.getJoinedChats(userId)) {
+            departChatLater(userId, chatId);
+        }
+
+        if (connected) {
+            dispatcher.enqueue(userId, UserClientCallback::userRemoved);
+            dispatcher.unregisterAfterDelivery(userId);
+            cluster.userDisconnected(userId);
+        }
+        rateLimiter.forget(userId);
+        sessions.invalidate(userId);
+    }
+
+    private void departAllChats(long userId) {
+        for (long chatId : sessions.getJoinedChats(userId)) {
+            try {
+                departChat(userId, chatId);
+            } catch (RemoteException e) {
+                System.err.println("Failed to remove departed user " + userId + " from chat " + chatId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public ChatSummary joinChat(long userId, long chatId) throws RemoteException {
+        rateLimiter.checkMembership(userId);
+
+        Optional<UserSession> optionalSession = sessions.resolve(userId);
+        Optional<Chat> optionalActiveChat = userChatService.getActiveChat(chatId);
+
+        if (optionalSession.isPresent() && optionalActiveChat.isPresent()) {
+            UserSession session = optionalSession.get();
+            Chat activeChat = optionalActiveChat.get();
+
+            if (userChatService.isUserSubscribedToChat(userId, activeChat)) {
+                return chatActors.call(chatId, "Failed to join chat", actor -> {
+                    requireStillActive(chatId);
+                    announceJoin(activeChat, session);
+                    return ChatSummary.from(activeChat);
+                });
             } else {
-                throw new RemoteException("You are not subscribed to the active chat");
+                throw new RemoteException("You are not subscribed to this chat");
             }
         } else {
-            throw new RemoteException("Invalid user ID or no active chat");
+            throw new RemoteException("Invalid user ID or chat is not active");
         }
     }
 
     @Override
-    public void leaveChat(long userId) throws RemoteException {
-        Optional<User> optionalUser = userProfileService.getUserById(userId);
-        Optional<Chat> optionalActiveChat = userChatService.getActiveChat();
+    public void leaveChat(long userId, long chatId) throws RemoteException {
+        rateLimiter.checkMembership(userId);
+        departChat(userId, chatId);
+    }
 
-        if (optionalUser.isPresent() && optionalActiveChat.isPresent()) {
-            User user = optionalUser.get();
+    /**
+     * Leave a chat without counting against the rate limit, for leaves the server initiates
+     */
+    private void departChat(long userId, long chatId) throws RemoteException {
+        ChatActor.Command<Void> departure = departure(userId, chatId);
+        if (departure == null) {
+            throw new RemoteException("Invalid user ID or chat is not active");
+        }
+        chatActors.call(chatId, "Failed to leave chat", departure);
+    }
+
+    /**
+     * Leave a chat on its next turn without waiting for it, so a busy chat
+     * can't hold up whoever noticed the user had gone
+     */
+    private void departChatLater(long userId, long chatId) {
+        ChatActor.Command<Void> departure = departure(userId, chatId);
+        if (departure != null) {
+            chatActors.ask(chatId, departure).whenComplete((result, e) -> {
+                if (e != null) {
+                    System.err.println("Failed to remove departed user " + userId + " from chat " + chatId + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+
+    /**
+     * Drop the membership, and build the turn that tells the rest of the chat
+     * and ends it if nobody is left. Null if the user or the active chat is gone.
+     */
+    private ChatActor.Command<Void> departure(long userId, long chatId) {
+        // Drop the membership even if the chat has already ended
+        sessions.leaveChat(chatId, userId);
+
+        Optional<UserSession> optionalSession = sessions.resolve(userId);
+        Optional<Chat> optionalActiveChat = userChatService.getActiveChat(chatId);
+
+        if (optionalSession.isPresent() && optionalActiveChat.isPresent()) {
+            UserSession session = optionalSession.get();
             Chat activeChat = optionalActiveChat.get();
 
-            try {
+            return actor -> {
+                requireStillActive(chatId);
+
                 // Record user leaving in chat transcript
-                userChatService.recordUserLeftChat(activeChat, user);
+                userChatService.recordUserLeftChat(activeChat, session.getNickName());
 
                 // Notify other participants about the user leaving
-                Map<String, Object> userData = new HashMap<>();
-                userData.put("userId", user.getId());
-                userData.put("nickName", user.getNickName());
-                userData.put("timestamp", LocalDateTime.now().format(formatter));
-
-                for (ChatSubscription subscription : userChatService.getChatSubscribers(activeChat)) {
-                    User subscriber = subscription.getUser();
-                    if (!subscriber.getId().equals(user.getId())) {
-                        UserClientCallback callback = connectedUsers.get(subscriber.getId());
-
-                        if (callback != null) {
-                            try {
-                                callback.userLeft(userData);
-                            } catch (RemoteException e) {
-                                connectedUsers.remove(subscriber.getId());
-                            }
-                        }
-                    }
-                }
+                PresenceEvent event = new PresenceEvent(PresenceEvent.Type.LEFT, chatId, userId,
+                        session.getNickName(), System.currentTimeMillis(), session.getAvatarHash());
+
+                dispatcher.broadcast(sessions.getParticipants(chatId), userId,
+                        callback -> callback.userLeft(event));
+                cluster.publishPresence(event);
 
                 // Check if this was the last user in the chat
-                List<ChatSubscription> activeSubscribers = userChatService.getChatSubscribers(activeChat);
                 boolean anyOtherActive = false;
 
-                for (ChatSubscription subscription : activeSubscribers) {
-                    if (!subscription.getUser().getId().equals(user.getId()) &&
-                            connectedUsers.containsKey(subscription.getUser().getId())) {
+                for (Long subscriberId : userChatService.getChatSubscriberIds(activeChat)) {
+                    if (subscriberId != userId && cluster.isConnectedAnywhere(subscriberId)) {
                         anyOtherActive = true;
                         break;
                     }
@@ -346,27 +430,97 @@ public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInt
                 if (!anyOtherActive) {
                     // End the chat since this was the last active user
                     Chat endedChat = userChatService.endChat(activeChat);
+                    sessions.clearChat(chatId);
+                    chatActors.retire(actor);
+                    cluster.publishChatEnded(chatId);
 
                     // Notify the user who left about chat ending
-                    UserClientCallback callback = connectedUsers.get(userId);
-                    if (callback != null) {
-                        Map<String, Object> chatData = new HashMap<>();
-                        chatData.put("chatId", endedChat.getId());
-                        chatData.put("chatName", endedChat.getName());
-                        chatData.put("endTime", endedChat.getEndedAt().format(formatter));
-
-                        try {
-                            callback.chatEnded(chatData);
-                        } catch (RemoteException e) {
-                            connectedUsers.remove(userId);
-                        }
-                    }
+                    ChatSummary chatData = ChatSummary.from(endedChat);
+                    dispatcher.enqueue(userId, callback -> callback.chatEnded(chatData));
                 }
-            } catch (IOException e) {
-                throw new RemoteException("Failed to leave chat: " + e.getMessage());
+                return null;
+            };
+        }
+        return null;
+    }
+
+    @Override
+    public int resume(long userId, long chatId, long lastSeenSequence) throws RemoteException {
+        Optional<UserSession> optionalSession = sessions.resolve(userId);
+        Optional<Chat> optionalActiveChat = userChatService.getActiveChat(chatId);
+
+        if (!optionalSession.isPresent() || !optionalActiveChat.isPresent()) {
+            throw new RemoteException("Invalid user ID or chat is not active");
+        }
+        if (!dispatcher.isConnected(userId)) {
+            throw new RemoteException("Register the client before resuming");
+        }
+
+        UserSession session = optionalSession.get();
+        Chat activeChat = optionalActiveChat.get();
+
+        if (!userChatService.isUserSubscribedToChat(userId, activeChat)) {
+            throw new RemoteException("You are not subscribed to this chat");
+        }
+
+        // Runs on the chat's turn, so the replay is queued before any message sent after it
+        return chatActors.call(chatId, "Failed to resume chat", actor -> {
+            requireStillActive(chatId);
+            if (!sessions.isParticipant(chatId, userId)) {
+                // Dropped while away (lease expiry or failed callback) - rejoin first
+                announceJoin(activeChat, session);
             }
-        } else {
-            throw new RemoteException("Invalid user ID or no active chat");
+
+            List<ChatMessage> missed = actor.messagesAfter(lastSeenSequence);
+            if (missed == null) {
+                // Older than the replay buffer reaches; read the gap back from the transcript
+                missed = userChatService.readTranscriptMessages(activeChat, lastSeenSequence);
+            }
+
+            if (!missed.isEmpty()) {
+                List<ChatMessage> replay = missed;
+                dispatcher.enqueue(userId, callback -> callback.receiveMessages(replay));
+            }
+            return missed.size();
+        });
+    }
+
+    /**
+     * Record a user joining a chat and tell the others. Must run on the chat's turn.
+     */
+    private void announceJoin(Chat activeChat, UserSession session) throws Exception {
+        long chatId = activeChat.getId();
+        long userId = session.getUserId();
+
+        userChatService.recordUserJoinedChat(activeChat, session.getNickName());   // Record user join in chat transcript
+        sessions.joinChat(chatId, userId);
+
+        // Notify other participants about the user joining
+        PresenceEvent event = new PresenceEvent(PresenceEvent.Type.JOINED, chatId, userId,
+                session.getNickName(), System.currentTimeMillis(), session.getAvatarHash());
+
+        dispatcher.broadcast(sessions.getParticipants(chatId), userId,
+                callback -> callback.userJoined(event));
+        cluster.publishPresence(event);
+    }
+
+    /**
+     * Number the next message, continuing from the transcript the first time
+     * this server handles the chat. Must run on the chat's turn.
+     */
+    private long nextSequence(ChatActor actor, Chat activeChat) throws Exception {
+        if (!actor.hasSequence()) {
+            actor.seedSequence(userChatService.findLastTranscriptSequence(activeChat));
+        }
+        return actor.nextSequence();
+    }
+
+    /**
+     * Fail a queued chat command if the chat ended while it was waiting its turn
+     */
+    private void requireStillActive(long chatId) throws RemoteException {
+        if (!userChatService.getActiveChat(chatId).isPresent()) {
+            throw new RemoteException("Chat has ended");
         }
     }
 
@@ -379,6 +533,8 @@ public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInt
 
             try {
                 userProfileService.updateProfile(user, username, password, nickName, profilePicture);
+                // Nickname or avatar may have changed; rebuild the snapshot on next use
+                sessions.invalidate(userId);
             } catch (Exception e) {
                 throw new RemoteException("Failed to update profile: " + e.getMessage());
             }
@@ -388,20 +544,11 @@ public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInt
     }
 
     @Override
-    public Map<String, Object> getUserProfile(long userId) throws RemoteException {
+    public UserSummary getUserProfile(long userId) throws RemoteException {
         Optional<User> optionalUser = userProfileService.getUserById(userId);
 
         if (optionalUser.isPresent()) {
-            User user = optionalUser.get();
-            Map<String, Object> profileData = new HashMap<>();
-            profileData.put("id", user.getId());
-            profileData.put("email", user.getEmail());
-            profileData.put("username", user.getUsername());
-            profileData.put("nickName", user.getNickName());
-            profileData.put("isAdmin", user.isAdmin());
-            profileData.put("hasProfilePicture", user.getProfilePicture() != null && user.getProfilePicture().length > 0);
-
-            return profileData;
+            return UserSummary.from(optionalUser.get());
         } else {
             throw new RemoteException("Invalid user ID");
         }
@@ -409,13 +556,48 @@ public class UserRemoteImpl extends UnicastRemoteObject implements UserRemoteInt
 
     @Override
     public byte[] getUserProfilePicture(long userId) throws RemoteException {
-        Optional<User> optionalUser = userProfileService.getUserById(userId);
+        Optional<byte[]> picture = userProfileService.getProfilePicture(userId);
+        if (picture.isPresent()) {
+            return picture.get();
+        }
 
-        if (optionalUser.isPresent()) {
-            User user = optionalUser.get();
-            return user.getProfilePicture();
+        // No picture stored: either the user hasn't set one or there is no such user
+        if (userProfileService.getUserById(userId).isPresent()) {
+            return null;
         } else {
             throw new RemoteException("Invalid user ID");
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    public AvatarImage getUserProfilePicture(long userId, String knownHash) throws RemoteException {
+        List<AvatarImage> avatars = getUserProfilePictures(Collections.singletonMap(userId, knownHash));
+        return avatars.isEmpty() ? null : avatars.get(0);
+    }
+
+    @Override
+    public List<AvatarImage> getUserProfilePictures(Map<Long, String> knownHashes) throws RemoteException {
+        try {
+            // Compare hashes first so unchanged pictures are never read from the database
+            Map<Long, String> currentHashes = userProfileService.getProfilePictureHashes(knownHashes.keySet());
+            List<AvatarImage> avatars = new ArrayList<>(currentHashes.size());
+            List<Long> changedUserIds = new ArrayList<>();
+
+            for (Map.Entry<Long, String> entry : currentHashes.entrySet()) {
+                if (entry.getValue().equals(knownHashes.get(entry.getKey()))) {
+                    avatars.add(AvatarImage.notModified(entry.getKey(), entry.getValue()));
+                } else {
+                    changedUserIds.add(entry.getKey());
+                }
+            }
+
+            for (UserAvatar avatar : userProfileService.getProfilePictures(changedUserIds)) {
+                avatars.add(new AvatarImage(avatar.getUserId(), avatar.getContentHash(), avatar.getImageData()));
+            }
+
+            return avatars;
+        } catch (Exception e) {
+            throw new RemoteException("Failed to get profile pictures: " + e.getMessage());
+        }
+    }
+}
@@ -1,5 +1,9 @@
 package com.chatapp.rmi;
 
+import com.chatapp.model.dto.AvatarImage;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.UserSummary;
+
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.util.List;
@@ -18,12 +22,12 @@ public interface UserRemoteInterface extends Remote {
     /**
      * Authenticate a user
      */
-    Map<String, Object> login(String username, String password) throws RemoteException;
+    UserSummary login(String username, String password) throws RemoteException;
 
     /**
-     * Send a message to the chat
+     * Send a message to an active chat the user has joined
      */
-    void sendMessage(long userId, String message) throws RemoteException;
+    void sendMessage(long userId, long chatId, String message) throws RemoteException;
 
     /**
      * Subscribe user to a chat
@@ -38,10 +42,10 @@ public interface UserRemoteInterface extends Remote {
     /**
      * Get all available chats for a user
      */
-    List<Map<String, Object>> getUserChats(long userId) throws RemoteException;
+    List<ChatSummary> getUserChats(long userId) throws RemoteException;
 
 
-    List<Map<String, Object>> getAllChats() throws RemoteException;
+    List<ChatSummary> getAllChats() throws RemoteException;
 
     /**
      * Register client for receiving notifications
@@ -54,14 +58,28 @@ public interface UserRemoteInterface extends Remote {
     void unregisterClient(long userId) throws RemoteException;
 
     /**
-     * Join the active chat
+     * Keep this client's registration alive. Returns the lease duration in
+     * milliseconds, or 0 if the lease has lapsed and the client must register again.
+     */
+    long renewLease(long userId) throws RemoteException;
+
+    /**
+     * Join an active chat the user is subscribed to
+     */
+    ChatSummary joinChat(long userId, long chatId) throws RemoteException;
+
+    /**
+     * Leave a chat the user has joined
      */
-    Map<String, Object> joinChat(long userId) throws RemoteException;
+    void leaveChat(long userId, long chatId) throws RemoteException;
 
     /**
-     * Leave the active chat
+     * Catch up on a chat after a reconnect. Messages with a sequence above
+     * {@code lastSeenSequence} are queued to the registered callback ahead of any
+     * newer ones, and the user rejoins the chat if they had been dropped from it.
+     * Returns the number of messages replayed.
      */
-    void leaveChat(long userId) throws RemoteException;
+    int resume(long userId, long chatId, long lastSeenSequence) throws RemoteException;
 
     /**
      * Update user profile
@@ -71,12 +89,25 @@ public interface UserRemoteInterface extends Remote {
     /**
      * Get user profile data
      */
-    Map<String, Object> getUserProfile(long userId) throws RemoteException;
+    UserSummary getUserProfile(long userId) throws RemoteException;
 
     /**
      * Get user profile picture
      */
     byte[] getUserProfilePicture(long userId) throws RemoteException;
 
+    /**
+     * Get a user's profile picture unless the caller already holds it.
+     * Returns null if the user has no picture, and a not-modified answer
+     * without image data if knownHash matches the current picture.
+     */
+    AvatarImage getUserProfilePicture(long userId, String knownHash) throws RemoteException;
+
+    /**
+     * Conditional fetch for several users at once, keyed by user id with the
+     * caller's known hash (or null) as value. Users without a picture are omitted.
+     */
+    List<AvatarImage> getUserProfilePictures(Map<Long, String> knownHashes) throws RemoteException;
+
 
 }
\ No newline at end of file
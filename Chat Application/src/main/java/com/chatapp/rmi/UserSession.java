@@ -0,0 +1,36 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.entity.User;
+
+/**
+ * Immutable snapshot of the user data the message path needs.
+ * Created at login so remote calls don't have to reload the User entity.
+ */
+public final class UserSession {
+
+    private final long userId;
+    private final String nickName;
+    private final String avatarHash;
+
+    public UserSession(long userId, String nickName, String avatarHash) {
+        this.userId = userId;
+        this.nickName = nickName;
+        this.avatarHash = avatarHash;
+    }
+
+    public static UserSession of(User user) {
+        return new UserSession(user.getId(), user.getNickName(), user.hasProfilePicture() ? user.getAvatarHash() : null);
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getNickName() {
+        return nickName;
+    }
+
+    public String getAvatarHash() {
+        return avatarHash;
+    }
+}
@@ -0,0 +1,85 @@
+package com.chatapp.service;
+
+import com.chatapp.model.dao.ChatDAO;
+import com.chatapp.model.entity.Chat;
+import com.chatapp.util.StripedLongMap;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Server-side record of the chats that are currently active.
+ * Loaded from the database once, then updated only by the start/end chat
+ * transitions. Each chat is tracked independently, so any number of chats
+ * can be live at once and readers on the message path never hit the database.
+ */
+public class ActiveChatState {
+
+    private static final ActiveChatState INSTANCE = new ActiveChatState();
+
+    private final ChatDAO chatDAO;
+    private final StripedLongMap<Chat> activeChats = new StripedLongMap<>();
+    private volatile boolean loaded = false;
+
+    private ActiveChatState() {
+        this.chatDAO = new ChatDAO();
+    }
+
+    public static ActiveChatState getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get a chat if it is currently active
+     */
+    public Optional<Chat> get(long chatId) {
+        ensureLoaded();
+        return Optional.ofNullable(activeChats.get(chatId));
+    }
+
+    /**
+     * Get all currently active chats
+     */
+    public List<Chat> getAll() {
+        ensureLoaded();
+        return activeChats.values();
+    }
+
+    /**
+     * Record a chat that has just been started and saved
+     */
+    public void activated(Chat chat) {
+        ensureLoaded();
+        activeChats.put(chat.getId(), withoutSubscriptions(chat));
+    }
+
+    /**
+     * Record that a chat has ended or been deleted
+     */
+    public void deactivated(Chat chat) {
+        ensureLoaded();
+        activeChats.remove(chat.getId());
+    }
+
+    // A cached chat outlives the subscriptions it was loaded with; saving it would merge
+    // stale ones back over later changes, so it is kept without them
+    private static Chat withoutSubscriptions(Chat chat) {
+        chat.setChatSubscriptions(new HashSet<>());
+        return chat;
+    }
+
+    // Load the active chats from the database on first use
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    for (Chat chat : chatDAO.findActiveChats()) {
+                        activeChats.put(chat.getId(), withoutSubscriptions(chat));
+                    }
+                    loaded = true;
+                }
+            }
+        }
+    }
+}
@@ -16,6 +16,7 @@ import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * Service class for Admin Chat related operations
@@ -24,12 +25,16 @@ public class AdminChatService {
 
     private final ChatDAO chatDAO;
     private final ChatSubscriptionDAO subscriptionDAO;
+    private final ChatRosterCache rosterCache;
+    private final ActiveChatState activeChatState;
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final String CHAT_LOGS_DIR = "chat_logs";
 
     public AdminChatService() {
         this.chatDAO = new ChatDAO();
         this.subscriptionDAO = new ChatSubscriptionDAO();
+        this.rosterCache = ChatRosterCache.getInstance();
+        this.activeChatState = ActiveChatState.getInstance();
 
         // Create chat logs directory if it doesn't exist
         createChatLogsDirectory();
@@ -58,16 +63,16 @@ public class AdminChatService {
      * Start a chat
      */
     public Chat startChat(Chat chat) {
-        // Check if there's already an active chat
-        Optional<Chat> activeChat = chatDAO.findActiveChat();
-        if (activeChat.isPresent() && !activeChat.get().getId().equals(chat.getId())) {
-            throw new IllegalStateException("Another chat is already active");
+        if (chat.isActive()) {
+            throw new IllegalStateException("Chat is already active");
         }
 
         chat.setActive(true);
         chat.setStartedAt(LocalDateTime.now());
 
-        return chatDAO.save(chat);
+        Chat startedChat = chatDAO.save(chat);
+        activeChatState.activated(startedChat);
+        return startedChat;
     }
 
     /**
@@ -86,7 +91,9 @@ public class AdminChatService {
         String filePath = saveChatTranscript(chat);
         chat.setFilePath(filePath);
 
-        return chatDAO.save(chat);
+        Chat endedChat = chatDAO.save(chat);
+        activeChatState.deactivated(endedChat);
+        return endedChat;
     }
 
     /**
@@ -134,10 +141,17 @@ public class AdminChatService {
     }
 
     /**
-     * Get active chat
+     * Get a chat if it is currently active
+     */
+    public Optional<Chat> getActiveChat(long chatId) {
+        return activeChatState.get(chatId);
+    }
+
+    /**
+     * Get all currently active chats
      */
-    public Optional<Chat> getActiveChat() {
-        return chatDAO.findActiveChat();
+    public List<Chat> getActiveChats() {
+        return activeChatState.getAll();
     }
 
     /**
@@ -147,11 +161,26 @@ public class AdminChatService {
         return subscriptionDAO.findActiveSubscriptionsByChat(chat);
     }
 
+    /**
+     * Get the number of subscribers of a chat from the in-memory roster
+     */
+    public int getSubscriberCount(Chat chat) {
+        return rosterCache.getSubscriberCount(chat.getId());
+    }
+
+    /**
+     * Get the ids of all subscribers of a chat from the in-memory roster
+     */
+    public Set<Long> getChatSubscriberIds(Chat chat) {
+        return rosterCache.getSubscriberIds(chat.getId());
+    }
+
     /**
      * Force unsubscribe a user from a chat (admin function)
      */
     public void forceUnsubscribeUserFromChat(User user, Chat chat) {
         subscriptionDAO.unsubscribe(user, chat);
+        rosterCache.subscriberRemoved(chat.getId(), user.getId());
     }
 
     /**
@@ -159,6 +188,8 @@ public class AdminChatService {
      */
     public void deleteChat(Chat chat) {
         chatDAO.delete(chat);
+        rosterCache.evict(chat.getId());
+        activeChatState.deactivated(chat);
     }
 
     /**
@@ -186,19 +217,21 @@ public class AdminChatService {
     public ChatSubscription subscribeUserToChat(User user, Chat chat) {
         Optional<ChatSubscription> existingSubscription = subscriptionDAO.findByUserAndChat(user, chat);
 
+        ChatSubscription subscription;
         if (existingSubscription.isPresent()) {
-            ChatSubscription subscription = existingSubscription.get();
+            subscription = existingSubscription.get();
             if (!subscription.isActive()) {
                 subscription.setActive(true);
                 subscription.setUnsubscribedAt(null);
                 subscription.setSubscribedAt(LocalDateTime.now());
-                return subscriptionDAO.save(subscription);
+                subscription = subscriptionDAO.save(subscription);
             }
-            return subscription;
         } else {
-            ChatSubscription newSubscription = new ChatSubscription(user, chat);
-            return subscriptionDAO.save(newSubscription);
+            subscription = subscriptionDAO.save(new ChatSubscription(user, chat));
         }
+
+        rosterCache.subscriberAdded(chat.getId(), user.getId());
+        return subscription;
     }
 
 }
\ No newline at end of file
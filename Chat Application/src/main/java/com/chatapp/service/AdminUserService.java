@@ -1,5 +1,7 @@
 package com.chatapp.service;
 
+import com.chatapp.model.dao.ChatSubscriptionDAO;
+import com.chatapp.model.dao.UserAvatarDAO;
 import com.chatapp.model.dao.UserDAO;
 import com.chatapp.model.entity.User;
 
@@ -12,9 +14,13 @@ import java.util.Optional;
 public class AdminUserService {
 
     private final UserDAO userDAO;
+    private final UserAvatarDAO avatarDAO;
+    private final ChatSubscriptionDAO subscriptionDAO;
 
     public AdminUserService() {
         this.userDAO = new UserDAO();
+        this.avatarDAO = new UserAvatarDAO();
+        this.subscriptionDAO = new ChatSubscriptionDAO();
     }
 
     /**
@@ -51,7 +57,11 @@ public class AdminUserService {
      * Delete a user
      */
     public void deleteUser(User user) {
+        // Chats still reference the subscriptions, which stops the cascade from removing them
+        subscriptionDAO.deleteByUserId(user.getId());
         userDAO.delete(user);
+        avatarDAO.deleteByUserId(user.getId());
+        ChatRosterCache.getInstance().userRemoved(user.getId());
     }
 
     /**
@@ -0,0 +1,98 @@
+package com.chatapp.service;
+
+import com.chatapp.model.dao.ChatSubscriptionDAO;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory roster of active subscriber ids per chat.
+ * A chat's roster is loaded from the database the first time it is needed
+ * and is then kept current by the subscribe/unsubscribe operations of the
+ * chat services, so message fan-out never has to query subscriptions.
+ */
+public class ChatRosterCache {
+
+    private static final ChatRosterCache INSTANCE = new ChatRosterCache();
+
+    private final ChatSubscriptionDAO subscriptionDAO;
+    private final Map<Long, Set<Long>> rosters = new ConcurrentHashMap<>();
+
+    private ChatRosterCache() {
+        this.subscriptionDAO = new ChatSubscriptionDAO();
+    }
+
+    public static ChatRosterCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get the subscriber ids of a chat, loading them on first access
+     */
+    public Set<Long> getSubscriberIds(long chatId) {
+        return Collections.unmodifiableSet(roster(chatId));
+    }
+
+    public boolean isSubscribed(long chatId, long userId) {
+        return roster(chatId).contains(userId);
+    }
+
+    public int getSubscriberCount(long chatId) {
+        return roster(chatId).size();
+    }
+
+    /**
+     * Record a new or reactivated subscription
+     */
+    public void subscriberAdded(long chatId, long userId) {
+        // computeIfPresent waits for an in-flight load of the same chat, so the update cannot be lost;
+        // a roster that isn't loaded yet will pick the subscription up from the database
+        rosters.computeIfPresent(chatId, (id, roster) -> {
+            roster.add(userId);
+            return roster;
+        });
+    }
+
+    /**
+     * Record an ended subscription
+     */
+    public void subscriberRemoved(long chatId, long userId) {
+        rosters.computeIfPresent(chatId, (id, roster) -> {
+            roster.remove(userId);
+            return roster;
+        });
+    }
+
+    /**
+     * Drop a deleted user from every loaded roster
+     */
+    public void userRemoved(long userId) {
+        for (Long chatId : rosters.keySet()) {
+            subscriberRemoved(chatId, userId);
+        }
+    }
+
+    /**
+     * Forget a chat's roster, e.g. after the chat is deleted
+     */
+    public void evict(long chatId) {
+        rosters.remove(chatId);
+    }
+
+    /**
+     * Forget every roster, so each reloads from the database when next needed
+     */
+    public void clear() {
+        rosters.clear();
+    }
+
+    private Set<Long> roster(long chatId) {
+        return rosters.computeIfAbsent(chatId, id -> {
+            Set<Long> roster = ConcurrentHashMap.newKeySet();
+            roster.addAll(subscriptionDAO.findActiveSubscriberIdsByChatId(id));
+            return roster;
+        });
+    }
+}
@@ -1,13 +1,17 @@
 package com.chatapp.service;
 
 import com.chatapp.model.dao.ChatDAO;
+import com.chatapp.model.dto.ChatMessage;
 import com.chatapp.model.dao.ChatSubscriptionDAO;
 import com.chatapp.model.entity.Chat;
 import com.chatapp.model.entity.ChatSubscription;
 import com.chatapp.model.entity.User;
+import com.chatapp.util.TimeUtil;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.nio.file.Files;
@@ -15,9 +19,13 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 /**
@@ -27,12 +35,18 @@ public class UserChatService {
 
     private final ChatDAO chatDAO;
     private final ChatSubscriptionDAO subscriptionDAO;
+    private final ChatRosterCache rosterCache;
+    private final ActiveChatState activeChatState;
     private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
     private static final String CHAT_LOGS_DIR = "chat_logs";
+    // A sequenced message line: [timestamp] #sequence nickname: message
+    private static final Pattern SEQUENCED_LINE = Pattern.compile("^\\[([^\\]]+)\\] #(\\d+) (.*?): (.*)$");
 
     public UserChatService() {
         this.chatDAO = new ChatDAO();
         this.subscriptionDAO = new ChatSubscriptionDAO();
+        this.rosterCache = ChatRosterCache.getInstance();
+        this.activeChatState = ActiveChatState.getInstance();
 
         // Create chat logs directory if it doesn't exist
         createChatLogsDirectory();
@@ -61,19 +75,21 @@ public class UserChatService {
     public ChatSubscription subscribeUserToChat(User user, Chat chat) {
         Optional<ChatSubscription> existingSubscription = subscriptionDAO.findByUserAndChat(user, chat);
 
+        ChatSubscription subscription;
         if (existingSubscription.isPresent()) {
-            ChatSubscription subscription = existingSubscription.get();
+            subscription = existingSubscription.get();
             if (!subscription.isActive()) {
                 subscription.setActive(true);
                 subscription.setUnsubscribedAt(null);
                 subscription.setSubscribedAt(LocalDateTime.now());
-                return subscriptionDAO.save(subscription);
+                subscription = subscriptionDAO.save(subscription);
             }
-            return subscription;
         } else {
-            ChatSubscription newSubscription = new ChatSubscription(user, chat);
-            return subscriptionDAO.save(newSubscription);
+            subscription = subscriptionDAO.save(new ChatSubscription(user, chat));
         }
+
+        rosterCache.subscriberAdded(chat.getId(), user.getId());
+        return subscription;
     }
 
     /**
@@ -81,6 +97,7 @@ public class UserChatService {
      */
     public void unsubscribeUserFromChat(User user, Chat chat) {
         subscriptionDAO.unsubscribe(user, chat);
+        rosterCache.subscriberRemoved(chat.getId(), user.getId());
     }
 
     /**
@@ -91,10 +108,17 @@ public class UserChatService {
     }
 
     /**
-     * Get active chat
+     * Get a chat if it is currently active
+     */
+    public Optional<Chat> getActiveChat(long chatId) {
+        return activeChatState.get(chatId);
+    }
+
+    /**
+     * Get all currently active chats
      */
-    public Optional<Chat> getActiveChat() {
-        return chatDAO.findActiveChat();
+    public List<Chat> getActiveChats() {
+        return activeChatState.getAll();
     }
 
     /**
@@ -104,12 +128,18 @@ public class UserChatService {
         return subscriptionDAO.findActiveSubscriptionsByChat(chat);
     }
 
+    /**
+     * Get the ids of all subscribers of a chat from the in-memory roster
+     */
+    public Set<Long> getChatSubscriberIds(Chat chat) {
+        return rosterCache.getSubscriberIds(chat.getId());
+    }
+
     /**
      * Check if user is subscribed to chat
      */
-    public boolean isUserSubscribedToChat(User user, Chat chat) {
-        Optional<ChatSubscription> subscription = subscriptionDAO.findByUserAndChat(user, chat);
-        return subscription.isPresent() && subscription.get().isActive();
+    public boolean isUserSubscribedToChat(long userId, Chat chat) {
+        return rosterCache.isSubscribed(chat.getId(), userId);
     }
 
     /**
@@ -125,7 +155,14 @@ public class UserChatService {
     /**
      * Append message to chat transcript
      */
-    public void appendMessageToChatTranscript(Chat chat, User user, String message) throws IOException {
+    public void appendMessageToChatTranscript(Chat chat, String nickName, String message) throws IOException {
+        appendMessageToChatTranscript(chat, 0, nickName, message);
+    }
+
+    /**
+     * Append message to chat transcript, tagged with its chat sequence number if it has one
+     */
+    public void appendMessageToChatTranscript(Chat chat, long sequence, String nickName, String message) throws IOException {
         if (chat.getFilePath() == null) {
             String fileName = String.format("%s_chat_%d.txt",
                     chat.getStartedAt().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")),
@@ -143,15 +180,60 @@ public class UserChatService {
 
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(chat.getFilePath(), true))) {
             String timestamp = LocalDateTime.now().format(TIME_FORMATTER);
-            String formattedMessage = String.format("[%s] %s: %s\n", timestamp, user.getNickName(), message);
+            String formattedMessage = sequence > 0
+                    ? String.format("[%s] #%d %s: %s\n", timestamp, sequence, nickName, message)
+                    : String.format("[%s] %s: %s\n", timestamp, nickName, message);
             writer.write(formattedMessage);
         }
     }
 
+    /**
+     * Read the sequenced messages after {@code afterSequence} back from a chat's transcript.
+     * Lines have no sender id or avatar, so those are left unset.
+     */
+    public List<ChatMessage> readTranscriptMessages(Chat chat, long afterSequence) throws IOException {
+        List<ChatMessage> messages = new ArrayList<>();
+        if (chat.getFilePath() == null || !Files.exists(Paths.get(chat.getFilePath()))) {
+            return messages;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(chat.getFilePath()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Matcher matcher = SEQUENCED_LINE.matcher(line);
+                if (!matcher.matches()) {
+                    continue;   // presence lines, unsequenced messages, or a message's continuation lines
+                }
+                long sequence = Long.parseLong(matcher.group(2));
+                if (sequence > afterSequence) {
+                    messages.add(new ChatMessage(chat.getId(), sequence, 0, matcher.group(3), matcher.group(4),
+                            parseTranscriptTime(matcher.group(1)), null));
+                }
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * Highest message sequence recorded in a chat's transcript, 0 if none
+     */
+    public long findLastTranscriptSequence(Chat chat) throws IOException {
+        List<ChatMessage> messages = readTranscriptMessages(chat, 0);
+        return messages.isEmpty() ? 0 : messages.get(messages.size() - 1).getSequence();
+    }
+
+    private static long parseTranscriptTime(String text) {
+        try {
+            return TimeUtil.toEpochMillis(LocalDateTime.parse(text, TIME_FORMATTER));
+        } catch (DateTimeParseException e) {
+            return 0;
+        }
+    }
+
     /**
      * Record user join event in chat transcript
      */
-    public void recordUserJoinedChat(Chat chat, User user) throws IOException {
+    public void recordUserJoinedChat(Chat chat, String nickName) throws IOException {
         if (chat.getFilePath() == null) {
             String fileName = String.format("%s_chat_%d.txt",
                     chat.getStartedAt().format(DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss")),
@@ -169,7 +251,7 @@ public class UserChatService {
 
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(chat.getFilePath(), true))) {
             String timestamp = LocalDateTime.now().format(TIME_FORMATTER);
-            String message = String.format("[%s] \"%s\" has joined\n", timestamp, user.getNickName());
+            String message = String.format("[%s] \"%s\" has joined\n", timestamp, nickName);
             writer.write(message);
         }
     }
@@ -177,10 +259,10 @@ public class UserChatService {
     /**
      * Record user leave event in chat transcript
      */
-    public void recordUserLeftChat(Chat chat, User user) throws IOException {
+    public void recordUserLeftChat(Chat chat, String nickName) throws IOException {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(chat.getFilePath(), true))) {
             String timestamp = LocalDateTime.now().format(TIME_FORMATTER);
-            String message = String.format("[%s] \"%s\" left\n", timestamp, user.getNickName());
+            String message = String.format("[%s] \"%s\" left\n", timestamp, nickName);
             writer.write(message);
         }
     }
@@ -217,6 +299,8 @@ public class UserChatService {
             writer.write("\n\n--- Chat ended at: " + endTime.format(TIME_FORMATTER) + " ---\n");
         }
 
-        return chatDAO.save(chat);
+        Chat endedChat = chatDAO.save(chat);
+        activeChatState.deactivated(endedChat);
+        return endedChat;
     }
 }
\ No newline at end of file
@@ -1,9 +1,13 @@
 package com.chatapp.service;
 
+import com.chatapp.model.dao.UserAvatarDAO;
 import com.chatapp.model.dao.UserDAO;
 import com.chatapp.model.entity.User;
+import com.chatapp.model.entity.UserAvatar;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -12,9 +16,11 @@ import java.util.Optional;
 public class UserProfileService {
 
     private final UserDAO userDAO;
+    private final UserAvatarDAO avatarDAO;
 
     public UserProfileService() {
         this.userDAO = new UserDAO();
+        this.avatarDAO = new UserAvatarDAO();
     }
 
     /**
@@ -33,14 +39,17 @@ public class UserProfileService {
 
         // Create and save new user
         User user = new User(email, username, password, nickName);
-        user.setProfilePicture(profilePicture);
 
         // Check if this is the first user, make them admin if so
         if (userDAO.findAll().isEmpty()) {
             user.setAdmin(true);
         }
 
-        return userDAO.save(user);
+        user = userDAO.save(user);
+        if (profilePicture != null && profilePicture.length > 0) {
+            user = storeProfilePicture(user, profilePicture);
+        }
+        return user;
     }
 
     /**
@@ -72,13 +81,63 @@ public class UserProfileService {
         user.setUsername(username);
         user.setPassword(password);
         user.setNickName(nickName);
-        if (profilePicture != null) {
-            user.setProfilePicture(profilePicture);
+        if (profilePicture != null && profilePicture.length > 0) {
+            return storeProfilePicture(user, profilePicture);
         }
 
         return userDAO.save(user);
     }
 
+    /**
+     * Get a user's profile picture, loaded from the avatar store
+     */
+    public Optional<byte[]> getProfilePicture(Long userId) {
+        return avatarDAO.findByUserId(userId).map(UserAvatar::getImageData);
+    }
+
+    /**
+     * Get the current avatar hash of each user who has a profile picture
+     */
+    public Map<Long, String> getProfilePictureHashes(Collection<Long> userIds) {
+        return avatarDAO.findContentHashes(userIds);
+    }
+
+    /**
+     * Load the avatars of several users in one query
+     */
+    public List<UserAvatar> getProfilePictures(Collection<Long> userIds) {
+        return avatarDAO.findByUserIds(userIds);
+    }
+
+    /**
+     * Move pictures left in the legacy users.profile_picture column into the avatar store
+     */
+    public int migrateLegacyProfilePictures() {
+        int migrated = 0;
+        for (Object[] row : avatarDAO.findLegacyProfilePictures()) {
+            Long userId = ((Number) row[0]).longValue();
+            byte[] picture = (byte[]) row[1];
+            Optional<User> optionalUser = userDAO.findById(userId);
+
+            if (optionalUser.isPresent() && picture.length > 0) {
+                storeProfilePicture(optionalUser.get(), picture);
+                migrated++;
+            }
+            avatarDAO.clearLegacyProfilePicture(userId);
+        }
+        return migrated;
+    }
+
+    /**
+     * Save the picture in the avatar store and record its size and hash on the user
+     */
+    private User storeProfilePicture(User user, byte[] profilePicture) {
+        UserAvatar avatar = avatarDAO.save(new UserAvatar(user.getId(), profilePicture));
+        user.setAvatarSize(profilePicture.length);
+        user.setAvatarHash(avatar.getContentHash());
+        return userDAO.save(user);
+    }
+
     /**
      * Get user by ID
      */
@@ -0,0 +1,305 @@
+package com.chatapp.tools;
+
+import com.chatapp.model.dto.CallStats;
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.PresenceEvent;
+import com.chatapp.model.dto.UserSummary;
+import com.chatapp.rmi.AdminRemoteInterface;
+import com.chatapp.rmi.CompressingSocketFactory;
+import com.chatapp.rmi.LeaseTable;
+import com.chatapp.rmi.RMIServer;
+import com.chatapp.rmi.RateLimitedException;
+import com.chatapp.rmi.UserClientCallback;
+import com.chatapp.rmi.UserRemoteInterface;
+import com.chatapp.util.LatencyHistogram;
+
+import java.rmi.RemoteException;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load generator.
+ * Registers synthetic users, subscribes them to chats through the admin
+ * service, connects a callback for each over loopback RMI and has every user
+ * send messages at a fixed rate. Each message carries its send time, so the
+ * callbacks measure end-to-end delivery latency.
+ *
+ * With chatapp.load.server=embedded (the default) the server runs in this JVM
+ * on an in-memory H2 database, so it needs the embedded-db profile's classpath:
+ * <pre>
+ *   mvn -Pembedded-db compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ *   java -cp target/classes:$(cat cp.txt) -Dchatapp.load.users=100 com.chatapp.tools.LoadGenerator
+ * </pre>
+ * Any other value is the host of an already running server.
+ */
+public class LoadGenerator {
+
+    private static final String SERVER = System.getProperty("chatapp.load.server", "embedded");
+    private static final int USERS = Integer.getInteger("chatapp.load.users", 50);
+    private static final int CHATS = Integer.getInteger("chatapp.load.chats", 5);
+    // Per user
+    private static final double MESSAGES_PER_SECOND = Double.parseDouble(System.getProperty("chatapp.load.messagesPerSecond", "1"));
+    private static final int DURATION_SECONDS = Integer.getInteger("chatapp.load.seconds", 30);
+    private static final int SENDER_THREADS = Integer.getInteger("chatapp.load.threads", 16);
+    private static final long DRAIN_MILLIS = 10_000;
+    private static final String PASSWORD = "load-test";
+
+    private final UserRemoteInterface userService;
+    private final AdminRemoteInterface adminService;
+    // Marks this run's messages, so leftovers from an earlier run against the same server are ignored
+    private final String runId = Long.toString(System.currentTimeMillis(), 36);
+    private final List<SyntheticClient> clients = new ArrayList<>();
+    private final int[] participantsByChat = new int[CHATS];
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder expectedDeliveries = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder reportedGaps = new LongAdder();
+
+    private LoadGenerator(UserRemoteInterface userService, AdminRemoteInterface adminService) {
+        this.userService = userService;
+        this.adminService = adminService;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String host = SERVER;
+        if (SERVER.equals("embedded")) {
+            startEmbeddedServer();
+            host = "localhost";
+        }
+
+        Registry registry = LocateRegistry.getRegistry(host, Integer.getInteger("chatapp.rmi.port", 1099));
+        LoadGenerator generator = new LoadGenerator(
+                (UserRemoteInterface) registry.lookup("UserService"),
+                (AdminRemoteInterface) registry.lookup("AdminService"));
+        try {
+            generator.setUp();
+            generator.run();
+            generator.report();
+        } finally {
+            generator.tearDown();
+        }
+        System.exit(0);
+    }
+
+    // In-memory database and no extra listeners, unless overridden on the command line
+    private static void startEmbeddedServer() throws Exception {
+        setDefault("chatapp.db.url", "jdbc:h2:mem:chatapp-load;DB_CLOSE_DELAY=-1");
+        setDefault("chatapp.db.driver", "org.h2.Driver");
+        setDefault("chatapp.db.user", "sa");
+        setDefault("chatapp.db.password", "");
+        setDefault("chatapp.db.schema", "create");
+        setDefault("chatapp.db.showSql", "false");
+        setDefault("chatapp.nio.port", "0");
+        setDefault("chatapp.http.port", "0");
+        RMIServer.start();
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    /**
+     * Create the chats and users, and connect a callback for every user
+     */
+    private void setUp() throws RemoteException {
+        long[] chatIds = new long[CHATS];
+        for (int i = 0; i < CHATS; i++) {
+            chatIds[i] = adminService.createChat("load-" + runId + "-" + i);
+            adminService.startChat(chatIds[i]);
+        }
+
+        for (int i = 0; i < USERS; i++) {
+            String username = "load-" + runId + "-" + i;
+            userService.registerUser(username + "@load.test", username, PASSWORD, "Load " + i, null);
+            UserSummary user = userService.login(username, PASSWORD);
+
+            int chat = i % CHATS;
+            adminService.subscribeUserToChat(user.getId(), chatIds[chat]);
+
+            SyntheticClient client = new SyntheticClient(this, user.getId(), chatIds[chat]);
+            UserClientCallback stub = (UserClientCallback) UnicastRemoteObject.exportObject(client, 0,
+                    CompressingSocketFactory.forExport(), CompressingSocketFactory.forExport());
+            userService.registerClient(user.getId(), stub);
+            userService.joinChat(user.getId(), chatIds[chat]);
+            clients.add(client);
+            participantsByChat[chat]++;
+        }
+        System.out.println("Connected " + USERS + " users to " + CHATS + " chats");
+    }
+
+    /**
+     * Send from every user at the configured rate, then wait for deliveries to settle
+     */
+    private void run() throws InterruptedException {
+        ScheduledExecutorService senders = Executors.newScheduledThreadPool(SENDER_THREADS);
+        long periodNanos = (long) (1_000_000_000L / MESSAGES_PER_SECOND);
+        for (int i = 0; i < clients.size(); i++) {
+            SyntheticClient client = clients.get(i);
+            int participants = participantsByChat[i % CHATS];
+            long initialDelay = ThreadLocalRandom.current().nextLong(periodNanos);
+            senders.scheduleAtFixedRate(() -> send(client, participants), initialDelay, periodNanos, TimeUnit.NANOSECONDS);
+        }
+
+        // Keep every callback's lease alive for the length of the run
+        long renewMillis = LeaseTable.LEASE_MILLIS / 3;
+        senders.scheduleAtFixedRate(this::renewLeases, renewMillis, renewMillis, TimeUnit.MILLISECONDS);
+
+        System.out.println("Sending " + MESSAGES_PER_SECOND + " msg/s from each user for " + DURATION_SECONDS + " s");
+        Thread.sleep(DURATION_SECONDS * 1000L);
+        senders.shutdown();
+        senders.awaitTermination(30, TimeUnit.SECONDS);
+
+        long deadline = System.currentTimeMillis() + DRAIN_MILLIS;
+        while (delivered.sum() + reportedGaps.sum() < expectedDeliveries.sum() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+
+    private void send(SyntheticClient client, int participants) {
+        String message = "load " + runId + " " + System.nanoTime();
+        try {
+            userService.sendMessage(client.userId, client.chatId, message);
+            sent.increment();
+            expectedDeliveries.add(participants);
+        } catch (RateLimitedException e) {
+            throttled.increment();
+        } catch (RemoteException e) {
+            if (failed.sum() == 0) {
+                System.err.println("Send failed: " + e.getMessage());
+            }
+            failed.increment();
+        }
+    }
+
+    private void renewLeases() {
+        for (SyntheticClient client : clients) {
+            try {
+                userService.renewLease(client.userId);
+            } catch (RemoteException e) {
+                System.err.println("Failed to renew lease for user " + client.userId + ": " + e.getMessage());
+            }
+        }
+    }
+
+    // Called from the RMI threads delivering callbacks
+    private void received(ChatMessage message) {
+        String[] parts = message.getMessage().split(" ");
+        if (parts.length == 3 && parts[0].equals("load") && parts[1].equals(runId)) {
+            latency.record((System.nanoTime() - Long.parseLong(parts[2])) / 1000);
+            delivered.increment();
+        }
+    }
+
+    private void report() {
+        double seconds = DURATION_SECONDS;
+        System.out.println();
+        System.out.printf("Sent       %d messages (%d throttled, %d failed), %.1f msg/s%n",
+                sent.sum(), throttled.sum(), failed.sum(), sent.sum() / seconds);
+        System.out.printf("Delivered  %d of %d expected (%d reported dropped), %.1f deliveries/s%n",
+                delivered.sum(), expectedDeliveries.sum(), reportedGaps.sum(), delivered.sum() / seconds);
+        System.out.printf("Latency ms p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                latency.getPercentileMicros(50) / 1000.0, latency.getPercentileMicros(90) / 1000.0,
+                latency.getPercentileMicros(99) / 1000.0, latency.getPercentileMicros(99.9) / 1000.0,
+                latency.getMaxMicros() / 1000.0);
+
+        try {
+            CallStats stats = adminService.getCallStats();
+            System.out.println("Server-side sendMessage, us:");
+            for (int i = 0; i < stats.getCount(); i++) {
+                if (stats.getName(i).contains("sendMessage") || stats.getName(i).startsWith("delivery/")) {
+                    System.out.printf("  %-36s mean %6d  p50 %6d  p99 %6d  max %6d%n", stats.getName(i),
+                            stats.getMeanMicros(i), stats.getP50Micros(i), stats.getP99Micros(i), stats.getMaxMicros(i));
+                }
+            }
+        } catch (RemoteException e) {
+            System.err.println("Failed to read server call stats: " + e.getMessage());
+        }
+    }
+
+    private void tearDown() {
+        for (SyntheticClient client : clients) {
+            try {
+                userService.unregisterClient(client.userId);
+                UnicastRemoteObject.unexportObject(client, true);
+            } catch (RemoteException e) {
+                // Server already gone
+            }
+        }
+    }
+
+    /**
+     * Callback for one synthetic user; only counts what arrives
+     */
+    private static class SyntheticClient implements UserClientCallback {
+
+        private final LoadGenerator generator;
+        private final long userId;
+        private final long chatId;
+
+        SyntheticClient(LoadGenerator generator, long userId, long chatId) {
+            this.generator = generator;
+            this.userId = userId;
+            this.chatId = chatId;
+        }
+
+        @Override
+        public void receiveMessage(ChatMessage message) {
+            generator.received(message);
+        }
+
+        @Override
+        public void receiveMessages(List<ChatMessage> messages) {
+            for (ChatMessage message : messages) {
+                generator.received(message);
+            }
+        }
+
+        @Override
+        public void deliveryGap(int droppedCount) {
+            generator.reportedGaps.add(droppedCount);
+        }
+
+        @Override
+        public void userJoined(PresenceEvent event) {
+        }
+
+        @Override
+        public void userLeft(PresenceEvent event) {
+        }
+
+        @Override
+        public void subscriptionChanged(boolean subscribed, long chatId) {
+        }
+
+        @Override
+        public void chatStarted(ChatSummary chat) {
+        }
+
+        @Override
+        public void chatEnded(ChatSummary chat) {
+        }
+
+        @Override
+        public void userRemoved() {
+        }
+
+        @Override
+        public void serverShuttingDown() {
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.chatapp.util;
+
+import com.chatapp.model.dto.CallStats;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Server-wide call counts, errors and latency histograms.
+ * Remote objects are wrapped with {@link #instrument} to time every method;
+ * code on the hot path takes a named histogram once with {@link #histogram}
+ * and records its own phases into it.
+ */
+public class CallMetrics {
+
+    private static final CallMetrics INSTANCE = new CallMetrics();
+
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    private CallMetrics() {
+    }
+
+    public static CallMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Get or create the histogram with the given name
+     */
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    /**
+     * Wrap an implementation so every call through the interface is timed,
+     * under "InterfaceName.method"
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T instrument(Class<T> type, T target) {
+        // Resolve every histogram up front; the call path only does a read-only lookup
+        Map<Method, LatencyHistogram> byMethod = new HashMap<>();
+        for (Method method : type.getMethods()) {
+            byMethod.put(method, histogram(type.getSimpleName() + "." + method.getName()));
+        }
+
+        InvocationHandler handler = (proxy, method, args) -> {
+            LatencyHistogram histogram = byMethod.get(method);
+            if (histogram == null) {
+                // equals, hashCode and toString
+                return method.getName().equals("equals") ? proxy == args[0] : method.invoke(target, args);
+            }
+
+            long start = System.nanoTime();
+            try {
+                Object result = method.invoke(target, args);
+                histogram.recordSince(start);
+                return result;
+            } catch (InvocationTargetException e) {
+                histogram.recordErrorSince(start);
+                throw e.getCause();
+            }
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, handler);
+    }
+
+    /**
+     * Snapshot of every histogram, sorted by name
+     */
+    public CallStats getStats() {
+        List<String> names = new ArrayList<>(histograms.keySet());
+        names.sort(null);
+
+        int count = names.size();
+        long[] calls = new long[count];
+        long[] errors = new long[count];
+        long[] meanMicros = new long[count];
+        long[] p50Micros = new long[count];
+        long[] p99Micros = new long[count];
+        long[] maxMicros = new long[count];
+        for (int i = 0; i < count; i++) {
+            LatencyHistogram histogram = histograms.get(names.get(i));
+            calls[i] = histogram.getCalls();
+            errors[i] = histogram.getErrors();
+            meanMicros[i] = calls[i] > 0 ? histogram.getTotalMicros() / calls[i] : 0;
+            p50Micros[i] = histogram.getPercentileMicros(50);
+            p99Micros[i] = histogram.getPercentileMicros(99);
+            maxMicros[i] = histogram.getMaxMicros();
+        }
+        return new CallStats(names.toArray(new String[0]), calls, errors, meanMicros, p50Micros, p99Micros, maxMicros);
+    }
+}
@@ -0,0 +1,142 @@
+package com.chatapp.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Consistent-hash ring that places keys (chat ids, user names) on nodes.
+ * Every node is hashed onto the ring at many points, its virtual nodes, and a
+ * key belongs to the node of the first point at or after the key's hash. Load
+ * spreads evenly, and adding or removing a node only moves the keys next to
+ * its points, about 1/n of them.
+ *
+ * Rings are immutable; {@link #withNode} and {@link #withoutNode} build the
+ * next one, so a ring can be swapped in and read without locking.
+ */
+public final class ConsistentHashRing {
+
+    /**
+     * Points per node. Servers and clients must agree on it to place keys alike.
+     */
+    public static final int VIRTUAL_NODES = Integer.getInteger("chatapp.cluster.virtualNodes", 128);
+
+    private final int[] nodes;
+    private final int virtualNodes;
+    // Sorted ring positions, and the node at each
+    private final long[] points;
+    private final int[] owners;
+
+    public ConsistentHashRing(int[] nodes) {
+        this(nodes, VIRTUAL_NODES);
+    }
+
+    public ConsistentHashRing(int[] nodes, int virtualNodes) {
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.nodes = Arrays.stream(nodes).distinct().sorted().toArray();
+        this.virtualNodes = virtualNodes;
+
+        int count = this.nodes.length * virtualNodes;
+        long[] positions = new long[count];
+        for (int i = 0; i < this.nodes.length; i++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                positions[i * virtualNodes + v] = mix(((long) this.nodes[i] << 32) | v);
+            }
+        }
+        // Sort the positions, carrying each one's node index along
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> {
+            int c = Long.compare(positions[a], positions[b]);
+            return c != 0 ? c : Integer.compare(a, b);
+        });
+        this.points = new long[count];
+        this.owners = new int[count];
+        for (int i = 0; i < count; i++) {
+            points[i] = positions[order[i]];
+            owners[i] = this.nodes[order[i] / virtualNodes];
+        }
+    }
+
+    /**
+     * The node a key belongs to
+     */
+    public int ownerOf(long key) {
+        if (points.length == 0) {
+            throw new IllegalStateException("The ring has no nodes");
+        }
+        int index = Arrays.binarySearch(points, mix(key));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        // Past the last point wraps round to the first
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public int ownerOf(String key) {
+        return ownerOf(hash(key));
+    }
+
+    public boolean contains(int node) {
+        return Arrays.binarySearch(nodes, node) >= 0;
+    }
+
+    /**
+     * This ring with another node added, or this ring if it is already on it
+     */
+    public ConsistentHashRing withNode(int node) {
+        if (contains(node)) {
+            return this;
+        }
+        int[] next = Arrays.copyOf(nodes, nodes.length + 1);
+        next[nodes.length] = node;
+        return new ConsistentHashRing(next, virtualNodes);
+    }
+
+    /**
+     * This ring with a node removed, or this ring if it is not on it
+     */
+    public ConsistentHashRing withoutNode(int node) {
+        if (!contains(node)) {
+            return this;
+        }
+        return new ConsistentHashRing(Arrays.stream(nodes).filter(n -> n != node).toArray(), virtualNodes);
+    }
+
+    public int[] getNodes() {
+        return nodes.clone();
+    }
+
+    public int size() {
+        return nodes.length;
+    }
+
+    public boolean isEmpty() {
+        return nodes.length == 0;
+    }
+
+    // 64-bit FNV-1a, so clients on any JVM place a name where the servers do
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // SplitMix64 finaliser; spreads sequential ids and node numbers round the ring
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(nodes) + " x " + virtualNodes;
+    }
+}
@@ -7,19 +7,46 @@ import jakarta.persistence.Persistence;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
- * Utility class for Hibernate operations
+ * Utility class for Hibernate operations.
+ * The connection settings in persistence.xml can be overridden with
+ * chatapp.db.* system properties, e.g. to run against an embedded database.
  */
 public class HibernateUtil {
     private static final String PERSISTENCE_UNIT_NAME = "ChatAppPU";
+
+    // System property -> persistence unit property it overrides
+    private static final String[][] OVERRIDES = {
+            {"chatapp.db.url", "jakarta.persistence.jdbc.url"},
+            {"chatapp.db.driver", "jakarta.persistence.jdbc.driver"},
+            {"chatapp.db.user", "jakarta.persistence.jdbc.user"},
+            {"chatapp.db.password", "jakarta.persistence.jdbc.password"},
+            {"chatapp.db.schema", "hibernate.hbm2ddl.auto"},
+            {"chatapp.db.showSql", "hibernate.show_sql"},
+    };
+
     private static volatile EntityManagerFactory entityManagerFactory;
 
+    /**
+     * Build the EntityManagerFactory now rather than on the first query
+     */
+    public static void initialize() {
+        getEntityManagerFactory();
+    }
+
     public static EntityManager getEntityManager() {
+        return getEntityManagerFactory().createEntityManager();
+    }
+
+    private static EntityManagerFactory getEntityManagerFactory() {
         if (entityManagerFactory == null) {
             synchronized (HibernateUtil.class) {
                 if (entityManagerFactory == null) {
                     try {
-                        entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME);
+                        entityManagerFactory = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT_NAME, overrides());
                     } catch (Exception e) {
                         System.err.println("Failed to create EntityManagerFactory: " + e.getMessage());
                         throw new RuntimeException("Could not initialize JPA", e);
@@ -27,7 +54,18 @@ public class HibernateUtil {
                 }
             }
         }
-        return entityManagerFactory.createEntityManager();
+        return entityManagerFactory;
+    }
+
+    private static Map<String, String> overrides() {
+        Map<String, String> properties = new HashMap<>();
+        for (String[] override : OVERRIDES) {
+            String value = System.getProperty(override[0]);
+            if (value != null) {
+                properties.put(override[1], value);
+            }
+        }
+        return properties;
     }
 
     public static void shutdown() {
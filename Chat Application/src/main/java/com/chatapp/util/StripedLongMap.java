@@ -0,0 +1,297 @@
+package com.chatapp.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Concurrent map keyed by primitive long ids.
+ * Keys are spread over independently locked stripes, each an open-addressing
+ * table of long keys, so lookups never box the id and writers to different
+ * stripes never contend.
+ */
+public class StripedLongMap<V> {
+
+    private static final int DEFAULT_STRIPES = 16;
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+
+    /**
+     * Computes a new value from the current one (null if absent); returning null removes the entry
+     */
+    public interface Remapping<V> {
+        V apply(long key, V current);
+    }
+
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+    private final Stripe<V>[] stripes;
+    private final int stripeShift;
+
+    public StripedLongMap() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public StripedLongMap(int concurrency) {
+        int count = Integer.highestOneBit(Math.max(1, concurrency - 1) << 1);
+        this.stripes = newStripes(count);
+        this.stripeShift = 32 - Integer.numberOfTrailingZeros(count);
+        for (int i = 0; i < count; i++) {
+            stripes[i] = new Stripe<>();
+        }
+    }
+
+    // Java can't create an array of a generic type directly
+    @SuppressWarnings("unchecked")
+    private static <V> Stripe<V>[] newStripes(int count) {
+        return (Stripe<V>[]) new Stripe<?>[count];
+    }
+
+    public V get(long key) {
+        return stripeFor(key).get(key, hash(key));
+    }
+
+    public boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Returns the previous value, or null
+     */
+    public V put(long key, V value) {
+        requireValue(value);
+        return stripeFor(key).put(key, hash(key), value, false);
+    }
+
+    /**
+     * Returns the existing value, or null if the value was added
+     */
+    public V putIfAbsent(long key, V value) {
+        requireValue(value);
+        return stripeFor(key).put(key, hash(key), value, true);
+    }
+
+    /**
+     * Returns the removed value, or null
+     */
+    public V remove(long key) {
+        return stripeFor(key).remove(key, hash(key), null);
+    }
+
+    /**
+     * Remove the entry only if it currently maps to the given value (by identity or equals)
+     */
+    public boolean remove(long key, V value) {
+        return value != null && stripeFor(key).remove(key, hash(key), value) != null;
+    }
+
+    /**
+     * Atomically replace the value for a key, holding the stripe lock while the function runs.
+     * Returns the new value.
+     */
+    public V compute(long key, Remapping<V> remapping) {
+        return stripeFor(key).compute(key, hash(key), remapping);
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Visit every entry. Each stripe is copied under its lock and visited
+     * outside it, so the consumer may call back into the map.
+     */
+    public void forEach(EntryConsumer<V> consumer) {
+        for (Stripe<V> stripe : stripes) {
+            long[] keys;
+            Object[] values;
+            synchronized (stripe) {
+                keys = new long[stripe.size];
+                values = new Object[stripe.size];
+                stripe.copyTo(keys, values);
+            }
+            for (int i = 0; i < keys.length; i++) {
+                @SuppressWarnings("unchecked")
+                V value = (V) values[i];
+                consumer.accept(keys[i], value);
+            }
+        }
+    }
+
+    public List<V> values() {
+        List<V> values = new ArrayList<>(size());
+        forEach((key, value) -> values.add(value));
+        return values;
+    }
+
+    public void clear() {
+        for (Stripe<V> stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    private Stripe<V> stripeFor(long key) {
+        return stripes[hash(key) >>> stripeShift];
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static void requireValue(Object value) {
+        if (value == null) {
+            throw new NullPointerException("Null values are not supported");
+        }
+    }
+
+    /**
+     * One lock-protected, linearly probed table. A slot is free when its value is null.
+     */
+    private static final class Stripe<V> {
+
+        private long[] keys = new long[INITIAL_STRIPE_CAPACITY];
+        private Object[] values = new Object[INITIAL_STRIPE_CAPACITY];
+        private volatile int size;
+
+        synchronized V get(long key, int hash) {
+            int slot = find(key, hash);
+            return slot < 0 ? null : value(slot);
+        }
+
+        synchronized V put(long key, int hash, V value, boolean onlyIfAbsent) {
+            int slot = find(key, hash);
+            if (slot >= 0) {
+                V previous = value(slot);
+                if (!onlyIfAbsent) {
+                    values[slot] = value;
+                }
+                return previous;
+            }
+            insert(key, hash, value);
+            return null;
+        }
+
+        synchronized V remove(long key, int hash, V expected) {
+            int slot = find(key, hash);
+            if (slot < 0) {
+                return null;
+            }
+            V current = value(slot);
+            if (expected != null && current != expected && !current.equals(expected)) {
+                return null;
+            }
+            delete(slot);
+            return current;
+        }
+
+        synchronized V compute(long key, int hash, Remapping<V> remapping) {
+            int slot = find(key, hash);
+            V current = slot < 0 ? null : value(slot);
+            V updated = remapping.apply(key, current);
+
+            if (updated == null) {
+                if (slot >= 0) {
+                    delete(slot);
+                }
+            } else if (slot >= 0) {
+                values[slot] = updated;
+            } else {
+                insert(key, hash, updated);
+            }
+            return updated;
+        }
+
+        synchronized void clear() {
+            keys = new long[INITIAL_STRIPE_CAPACITY];
+            values = new Object[INITIAL_STRIPE_CAPACITY];
+            size = 0;
+        }
+
+        // Caller holds the lock
+        void copyTo(long[] keyCopy, Object[] valueCopy) {
+            int n = 0;
+            for (int i = 0; i < values.length && n < keyCopy.length; i++) {
+                if (values[i] != null) {
+                    keyCopy[n] = keys[i];
+                    valueCopy[n] = values[i];
+                    n++;
+                }
+            }
+        }
+
+        private int find(long key, int hash) {
+            int mask = values.length - 1;
+            for (int slot = hash & mask; values[slot] != null; slot = (slot + 1) & mask) {
+                if (keys[slot] == key) {
+                    return slot;
+                }
+            }
+            return -1;
+        }
+
+        private void insert(long key, int hash, V value) {
+            // Keep the table at most half full so probe sequences stay short
+            if ((size + 1) * 2 > values.length) {
+                resize(values.length * 2);
+            }
+            int mask = values.length - 1;
+            int slot = hash & mask;
+            while (values[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+
+        // Backward-shift deletion keeps every remaining key reachable from its home slot
+        private void delete(int slot) {
+            int mask = values.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (values[next] != null) {
+                int home = hash(keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    keys[hole] = keys[next];
+                    values[hole] = values[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            values[hole] = null;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[capacity];
+            values = new Object[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldValues.length; i++) {
+                if (oldValues[i] != null) {
+                    int slot = hash(oldKeys[i]) & mask;
+                    while (values[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    values[slot] = oldValues[i];
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private V value(int slot) {
+            return (V) values[slot];
+        }
+    }
+}
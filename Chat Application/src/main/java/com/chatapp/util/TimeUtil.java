@@ -0,0 +1,33 @@
+package com.chatapp.util;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Conversions between entity timestamps and the epoch-millis values used on the wire
+ */
+public class TimeUtil {
+    private static final DateTimeFormatter DISPLAY_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    /**
+     * Convert to epoch milliseconds in the system zone, 0 for null
+     */
+    public static long toEpochMillis(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return 0;
+        }
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Format epoch milliseconds for display, empty string for 0
+     */
+    public static String format(long epochMillis) {
+        if (epochMillis == 0) {
+            return "";
+        }
+        return DISPLAY_FORMATTER.format(LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()));
+    }
+}
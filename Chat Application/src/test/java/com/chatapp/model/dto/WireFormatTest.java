@@ -0,0 +1,83 @@
+package com.chatapp.model.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WireFormatTest {
+
+    @Test
+    void varLongRoundTrips() throws IOException {
+        long[] values = {0, 1, 127, 128, 300, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (long value : values) {
+            WireFormat.writeVarLong(out, value);
+        }
+
+        DataInputStream in = input(bytes.toByteArray());
+        for (long value : values) {
+            assertEquals(value, WireFormat.readVarLong(in));
+        }
+    }
+
+    @Test
+    void smallValuesTakeOneByte() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WireFormat.writeVarLong(new DataOutputStream(bytes), 127);
+        assertEquals(1, bytes.size());
+    }
+
+    @Test
+    void stringsAndBytesRoundTripIncludingNull() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        WireFormat.writeString(out, "héllo ✓");
+        WireFormat.writeString(out, "");
+        WireFormat.writeString(out, null);
+        WireFormat.writeBytes(out, new byte[]{1, 2, 3});
+        WireFormat.writeBytes(out, null);
+
+        DataInputStream in = input(bytes.toByteArray());
+        assertEquals("héllo ✓", WireFormat.readString(in));
+        assertEquals("", WireFormat.readString(in));
+        assertNull(WireFormat.readString(in));
+        assertArrayEquals(new byte[]{1, 2, 3}, WireFormat.readBytes(in));
+        assertNull(WireFormat.readBytes(in));
+    }
+
+    @Test
+    void rejectsOverlongVarint() {
+        byte[] tooLong = new byte[11];
+        java.util.Arrays.fill(tooLong, (byte) 0x80);
+        assertThrows(InvalidObjectException.class, () -> WireFormat.readVarLong(input(tooLong)));
+    }
+
+    @Test
+    void rejectsNewerVersion() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WireFormat.writeVersion(new DataOutputStream(bytes), 2);
+        assertThrows(InvalidObjectException.class,
+                () -> WireFormat.readVersion(input(bytes.toByteArray()), 1, ChatMessage.class));
+    }
+
+    @Test
+    void truncatedStringFailsWithoutHanging() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        WireFormat.writeVarLong(new DataOutputStream(bytes), 11);
+        bytes.write(new byte[]{'s', 'h', 'o', 'r', 't'});
+        assertThrows(EOFException.class, () -> WireFormat.readString(input(bytes.toByteArray())));
+    }
+
+    private static DataInputStream input(byte[] bytes) {
+        return new DataInputStream(new ByteArrayInputStream(bytes));
+    }
+}
@@ -0,0 +1,114 @@
+package com.chatapp.net;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClusterBusTest {
+
+    private static final int ECHO = 1;
+    private static final int NOTE = 2;
+
+    private final List<ClusterBus> buses = new ArrayList<>();
+
+    @AfterEach
+    void closeBuses() {
+        for (ClusterBus bus : buses) {
+            bus.close();
+        }
+    }
+
+    @Test
+    void deliversEventsInOrderAndAnswersCalls() throws Exception {
+        Map<Integer, InetSocketAddress> nodes = twoNodes();
+        Recorder second = new Recorder();
+        ClusterBus bus1 = start(1, nodes, "secret", new Recorder());
+        ClusterBus bus2 = start(2, nodes, "secret", second);
+        awaitConnected(bus1, 2);
+        awaitConnected(bus2, 1);
+
+        for (long i = 0; i < 100; i++) {
+            bus1.publish(NOTE, i);
+        }
+        for (long i = 0; i < 100; i++) {
+            assertEquals(List.of(i), second.events.poll(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals("node 2 got hello", bus1.call(2, ECHO, "hello"));
+    }
+
+    @Test
+    void hangsUpOnANodeWithTheWrongSecret() throws Exception {
+        Map<Integer, InetSocketAddress> nodes = twoNodes();
+        Recorder first = new Recorder();
+        start(1, nodes, "secret", first);
+        ClusterBus impostor = start(2, nodes, "guess", new Recorder());
+        awaitConnected(impostor, 1);
+
+        impostor.publish(NOTE, 42L);
+        assertNull(first.events.poll(500, TimeUnit.MILLISECONDS));
+    }
+
+    private ClusterBus start(int nodeId, Map<Integer, InetSocketAddress> nodes, String secret, Recorder recorder)
+            throws IOException {
+        ClusterBus bus = new ClusterBus(nodeId, nodes, null, secret, recorder);
+        recorder.nodeId = nodeId;
+        buses.add(bus);
+        bus.start();
+        return bus;
+    }
+
+    private static Map<Integer, InetSocketAddress> twoNodes() throws IOException {
+        Map<Integer, InetSocketAddress> nodes = new LinkedHashMap<>();
+        for (int nodeId = 1; nodeId <= 2; nodeId++) {
+            try (ServerSocket free = new ServerSocket(0)) {
+                nodes.put(nodeId, new InetSocketAddress(InetAddress.getLoopbackAddress(), free.getLocalPort()));
+            }
+        }
+        return nodes;
+    }
+
+    private static void awaitConnected(ClusterBus bus, int node) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!bus.isConnected(node) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(bus.isConnected(node), "not connected to node " + node);
+    }
+
+    private static final class Recorder implements ClusterBus.Handler {
+        private final BlockingQueue<List<?>> events = new LinkedBlockingQueue<>();
+        private int nodeId;
+
+        @Override
+        public Object call(int fromNode, int operation, List<?> args) {
+            return "node " + nodeId + " got " + args.get(0);
+        }
+
+        @Override
+        public void event(int fromNode, int operation, List<?> args) {
+            events.add(args);
+        }
+
+        @Override
+        public void peerConnected(int nodeId) {
+        }
+
+        @Override
+        public void peerLost(int nodeId) {
+        }
+    }
+}
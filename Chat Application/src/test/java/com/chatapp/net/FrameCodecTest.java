@@ -0,0 +1,137 @@
+package com.chatapp.net;
+
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.model.dto.SessionStats;
+import com.chatapp.model.dto.WireFormat;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameCodecTest {
+
+    @Test
+    void headerCarriesTheBodyLength() throws IOException {
+        FrameCodec.FrameWriter writer = FrameCodec.newFrame(FrameCodec.CALL, 7, 3);
+        FrameCodec.writeValue(writer, "hello");
+        ByteBuffer frame = writer.toFrame();
+
+        assertEquals(frame.remaining() - FrameCodec.HEADER_BYTES, frame.getInt(0));
+    }
+
+    @Test
+    void callFrameRoundTrips() throws IOException {
+        Map<Object, Object> map = new LinkedHashMap<>();
+        map.put("count", 3);
+        map.put(42L, List.of(true, false));
+
+        FrameCodec.FrameWriter writer = FrameCodec.newFrame(FrameCodec.CALL, 1234567890123L, 17);
+        FrameCodec.writeValue(writer, null);
+        FrameCodec.writeValue(writer, -5);
+        FrameCodec.writeValue(writer, Long.MIN_VALUE);
+        FrameCodec.writeValue(writer, "chat ✓");
+        FrameCodec.writeValue(writer, new byte[]{9, 8, 7});
+        FrameCodec.writeValue(writer, map);
+
+        FrameCodec.FrameReader reader = new FrameCodec.FrameReader(body(writer));
+        assertEquals(FrameCodec.CALL, reader.readUnsignedByte());
+        assertEquals(1234567890123L, WireFormat.readVarLong(reader));
+        assertEquals(17, WireFormat.readVarLong(reader));
+        assertNull(FrameCodec.readValue(reader));
+        assertEquals(-5, FrameCodec.readValue(reader));
+        assertEquals(Long.MIN_VALUE, FrameCodec.readValue(reader));
+        assertEquals("chat ✓", FrameCodec.readValue(reader));
+        assertArrayEquals(new byte[]{9, 8, 7}, (byte[]) FrameCodec.readValue(reader));
+        assertEquals(map, FrameCodec.readValue(reader));
+        assertEquals(0, reader.available());
+    }
+
+    @Test
+    void dtosRoundTrip() throws IOException {
+        ChatMessage message = new ChatMessage(5, 99, 12, "alice", "hi there", 1700000000000L, null);
+
+        FrameCodec.FrameWriter writer = FrameCodec.newFrame(FrameCodec.PUSH, 0, 1);
+        FrameCodec.writeValue(writer, message);
+        FrameCodec.writeValue(writer, new SessionStats(4, 3, 1, 2));
+
+        FrameCodec.FrameReader reader = reader(body(writer));
+        skipHeader(reader);
+        ChatMessage read = (ChatMessage) FrameCodec.readValue(reader);
+        assertEquals(5, read.getChatId());
+        assertEquals(99, read.getSequence());
+        assertEquals(12, read.getUserId());
+        assertEquals("alice", read.getNickName());
+        assertEquals("hi there", read.getMessage());
+        assertEquals(1700000000000L, read.getTimestamp());
+        assertNull(read.getAvatarHash());
+
+        SessionStats stats = (SessionStats) FrameCodec.readValue(reader);
+        assertEquals(4, stats.getSessions());
+        assertEquals(2, stats.getOccupiedChats());
+    }
+
+    @Test
+    void rejectsUnknownTypes() {
+        FrameCodec.FrameWriter writer = new FrameCodec.FrameWriter();
+        assertThrows(IOException.class, () -> FrameCodec.writeValue(writer, new Object()));
+    }
+
+    @Test
+    void rejectsUnknownValueTag() {
+        assertThrows(InvalidObjectException.class, () -> FrameCodec.readValue(reader(new byte[]{99})));
+    }
+
+    @Test
+    void rejectsUnknownDtoType() {
+        assertThrows(InvalidObjectException.class, () -> FrameCodec.readValue(reader(new byte[]{9, 100})));
+    }
+
+    @Test
+    void rejectsLengthsLongerThanTheFrame() {
+        // A string claiming about 2 GB inside a 6-byte body is refused before anything is allocated
+        byte[] body = {5, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        assertThrows(InvalidObjectException.class, () -> FrameCodec.readValue(reader(body)));
+    }
+
+    @Test
+    void rejectsCountsLongerThanTheFrame() {
+        byte[] list = {7, (byte) 0xE8, 0x07, 0, 0};
+        assertThrows(InvalidObjectException.class, () -> FrameCodec.readValue(reader(list)));
+        byte[] map = {8, 3, 0, 0};
+        assertThrows(InvalidObjectException.class, () -> FrameCodec.readValue(reader(map)));
+    }
+
+    @Test
+    void truncatedFrameFails() throws IOException {
+        FrameCodec.FrameWriter writer = FrameCodec.newFrame(FrameCodec.RESULT, 1, 0);
+        FrameCodec.writeValue(writer, new ChatMessage(1, 2, 3, "bob", "message text", 4, "hash"));
+        byte[] body = body(writer);
+
+        FrameCodec.FrameReader reader = reader(Arrays.copyOf(body, body.length - 4));
+        skipHeader(reader);
+        assertThrows(IOException.class, () -> FrameCodec.readValue(reader));
+    }
+
+    private static byte[] body(FrameCodec.FrameWriter writer) {
+        ByteBuffer frame = writer.toFrame();
+        return Arrays.copyOfRange(frame.array(), FrameCodec.HEADER_BYTES, frame.limit());
+    }
+
+    // Kind, call id and operation
+    private static void skipHeader(FrameCodec.FrameReader reader) throws IOException {
+        reader.readUnsignedByte();
+        WireFormat.readVarLong(reader);
+        WireFormat.readVarLong(reader);
+    }
+
+    private static FrameCodec.FrameReader reader(byte[] body) {
+        return new FrameCodec.FrameReader(body);
+    }
+}
@@ -0,0 +1,87 @@
+package com.chatapp.rmi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdminRemoteImplTest {
+
+    private ServerFixture server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new ServerFixture();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void endingAChatKeepsTheMessagesQueuedAheadOfIt() throws Exception {
+        long alice = server.newUser();
+        long bob = server.newUser();
+        long chatId = server.startedChat(alice, bob);
+
+        // Hold the chat's turn so the messages and the end queue up behind it
+        ChatActor actor = server.chatActors.ask(chatId, current -> current).get(5, TimeUnit.SECONDS);
+        CountDownLatch release = new CountDownLatch(1);
+        server.chatActors.ask(chatId, current -> {
+            release.await();
+            return null;
+        });
+
+        List<CompletableFuture<Void>> sends = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            long sender = i % 2 == 0 ? alice : bob;
+            String message = "message " + i;
+            sends.add(CompletableFuture.runAsync(() -> {
+                try {
+                    server.users.sendMessage(sender, chatId, message);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }));
+        }
+        awaitMailbox(actor, 6);
+
+        // Loaded before any message has named the transcript file
+        CompletableFuture<Void> end = CompletableFuture.runAsync(() -> {
+            try {
+                server.admin.endChat(chatId);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        awaitMailbox(actor, 7);
+
+        release.countDown();
+        CompletableFuture.allOf(sends.toArray(new CompletableFuture<?>[0])).get(10, TimeUnit.SECONDS);
+        end.get(10, TimeUnit.SECONDS);
+
+        String transcript = String.join("\n", server.transcript(chatId));
+        for (int i = 0; i < 6; i++) {
+            assertTrue(transcript.contains(": message " + i), "missing message " + i + " in\n" + transcript);
+        }
+        assertTrue(transcript.contains("--- Chat ended by admin at: "), transcript);
+        assertFalse(server.admin.getAdminChatList().stream()
+                .anyMatch(chat -> chat.getId() == chatId && chat.isActive()));
+    }
+
+    private static void awaitMailbox(ChatActor actor, int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (actor.getMailboxSize() < size && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(size, actor.getMailboxSize());
+    }
+}
@@ -0,0 +1,119 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.service.UserProfileService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallbackDispatcherTest {
+
+    private final SessionRegistry sessions = new SessionRegistry(new UserProfileService());
+    private final CallbackDispatcher dispatcher = new CallbackDispatcher(sessions);
+    private final List<RecordingClient> clients = new ArrayList<>();
+
+    @AfterEach
+    void stopDispatcher() {
+        for (RecordingClient client : clients) {
+            client.release();
+        }
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void queuedMessagesArriveInOrderInBatches() throws Exception {
+        RecordingClient client = connect(1, true);
+        dispatcher.enqueue(1, UserClientCallback::userRemoved);
+        client.awaitHolding();
+
+        for (int i = 1; i <= 120; i++) {
+            dispatcher.enqueue(1, message(i));
+        }
+        client.release();
+
+        List<String> calls = client.await(4);
+        assertEquals("removed", calls.get(0));
+        assertEquals("messages " + range(1, 50), calls.get(1));
+        assertEquals("messages " + range(51, 100), calls.get(2));
+        assertEquals("messages " + range(101, 120), calls.get(3));
+    }
+
+    @Test
+    void aLoneMessageGoesOutOnItsOwn() throws Exception {
+        RecordingClient client = connect(1, false);
+        dispatcher.enqueue(1, message(1));
+        assertEquals("message 1", client.next());
+    }
+
+    @Test
+    void broadcastSkipsTheSenderAndAbsentUsers() throws Exception {
+        RecordingClient first = connect(1, false);
+        RecordingClient sender = connect(2, false);
+        RecordingClient third = connect(3, false);
+
+        dispatcher.broadcast(new long[]{1, 2, 3, 4}, 2, UserClientCallback::userRemoved);
+
+        assertEquals("removed", first.next());
+        assertEquals("removed", third.next());
+        assertNull(sender.next(100));
+        assertFalse(dispatcher.enqueue(4, UserClientCallback::userRemoved));
+    }
+
+    @Test
+    void aClientWhoseCallbackFailsIsDropped() throws Exception {
+        BlockingQueue<Long> failed = new LinkedBlockingQueue<>();
+        dispatcher.setFailureListener(failed::add);
+        RecordingClient client = connect(1, false);
+
+        dispatcher.enqueue(1, callback -> {
+            throw new RemoteException("Connection refused");
+        });
+        dispatcher.enqueue(1, message(1));
+
+        assertEquals(1L, failed.poll(5, TimeUnit.SECONDS));
+        assertFalse(dispatcher.isConnected(1));
+        assertNull(client.next(100));
+    }
+
+    @Test
+    void unregisterAfterDeliveryStillSendsWhatIsQueued() throws Exception {
+        RecordingClient client = connect(1, true);
+        dispatcher.enqueue(1, message(1));
+        client.awaitHolding();
+        dispatcher.enqueue(1, UserClientCallback::userRemoved);
+
+        dispatcher.unregisterAfterDelivery(1);
+        assertFalse(dispatcher.isConnected(1));
+        assertFalse(dispatcher.enqueue(1, message(2)));
+
+        client.release();
+        assertEquals(List.of("message 1", "removed"), client.await(2));
+    }
+
+    private RecordingClient connect(long userId, boolean holdFirstCall) {
+        RecordingClient client = new RecordingClient(holdFirstCall);
+        clients.add(client);
+        dispatcher.register(userId, client);
+        return client;
+    }
+
+    private static ClientOutbox.MessageDelivery message(int n) {
+        return new ClientOutbox.MessageDelivery(new ChatMessage(1, n, 2, "bob", String.valueOf(n), 0, null));
+    }
+
+    private static List<String> range(int from, int to) {
+        List<String> texts = new ArrayList<>();
+        for (int i = from; i <= to; i++) {
+            texts.add(String.valueOf(i));
+        }
+        return texts;
+    }
+}
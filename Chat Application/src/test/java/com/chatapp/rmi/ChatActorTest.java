@@ -0,0 +1,134 @@
+package com.chatapp.rmi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatActorTest {
+
+    private final ChatActors actors = new ChatActors();
+
+    @AfterEach
+    void shutdown() {
+        actors.shutdown();
+    }
+
+    @Test
+    void runsCommandsOneAtATimeInArrivalOrder() throws Exception {
+        List<Integer> seen = new ArrayList<>();
+        AtomicBoolean running = new AtomicBoolean(false);
+        AtomicInteger overlaps = new AtomicInteger();
+
+        List<CompletableFuture<Integer>> turns = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            int n = i;
+            turns.add(actors.ask(1, actor -> {
+                if (!running.compareAndSet(false, true)) {
+                    overlaps.incrementAndGet();
+                }
+                seen.add(n);
+                running.set(false);
+                return n;
+            }));
+        }
+
+        for (int i = 0; i < turns.size(); i++) {
+            assertEquals(i, turns.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(0, overlaps.get());
+        for (int i = 0; i < seen.size(); i++) {
+            assertEquals(i, seen.get(i));
+        }
+    }
+
+    @Test
+    void reportsWhatTheCommandThrew() {
+        CompletableFuture<Object> turn = actors.ask(1, actor -> {
+            throw new IllegalStateException("Chat is not active");
+        });
+
+        Exception e = assertThrows(Exception.class, () -> turn.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, e.getCause());
+    }
+
+    @Test
+    void cancelledCommandNeverRuns() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean ran = new AtomicBoolean(false);
+
+        CompletableFuture<Object> blocker = actors.ask(1, actor -> {
+            started.countDown();
+            release.await();
+            return null;
+        });
+        CompletableFuture<Object> queued = actors.ask(1, actor -> {
+            ran.set(true);
+            return null;
+        });
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertFalse(blocker.cancel(false), "a running command can't be called off");
+        assertTrue(queued.cancel(false));
+        release.countDown();
+
+        blocker.get(5, TimeUnit.SECONDS);
+        actors.ask(1, actor -> null).get(5, TimeUnit.SECONDS);
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void retiredActorIsDroppedOnceItsMailboxRunsDry() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        actors.ask(1, actor -> {
+            actor.seedSequence(41);
+            actors.retire(actor);
+            release.await();
+            return null;
+        });
+        // Posted after the retiring command, so it still runs on the same actor
+        CompletableFuture<Long> after = actors.ask(1, ChatActor::nextSequence);
+
+        assertEquals(1, actors.size());
+        release.countDown();
+        assertEquals(42, after.get(5, TimeUnit.SECONDS));
+
+        awaitSize(0);
+
+        // The chat starts over with a fresh actor
+        assertFalse(actors.ask(1, ChatActor::hasSequence).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void drainWaitsForQueuedCommands() throws Exception {
+        AtomicInteger done = new AtomicInteger();
+        for (long chatId = 1; chatId <= 8; chatId++) {
+            for (int i = 0; i < 50; i++) {
+                actors.ask(chatId, actor -> {
+                    Thread.sleep(0, 1000);
+                    return done.incrementAndGet();
+                });
+            }
+        }
+
+        assertTrue(actors.drain(10_000));
+        assertEquals(400, done.get());
+    }
+
+    private void awaitSize(int size) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (actors.size() != size && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(size, actors.size());
+    }
+}
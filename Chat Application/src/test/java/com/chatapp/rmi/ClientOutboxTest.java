@@ -0,0 +1,106 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.service.UserProfileService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientOutboxTest {
+
+    private static final long USER = 7;
+    private static final int CAPACITY = 3;
+
+    private final SessionRegistry sessions = new SessionRegistry(new UserProfileService());
+    private final CallbackDispatcher dispatcher = new CallbackDispatcher(sessions);
+    private final BlockingQueue<Long> failed = new LinkedBlockingQueue<>();
+    private final RecordingClient client = new RecordingClient(true);
+
+    @AfterEach
+    void stopDispatcher() {
+        client.release();
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void dropAndMarkGapEvictsTheOldestMessagesAndReportsHowMany() throws Exception {
+        backUp(OverflowPolicy.DROP_AND_MARK_GAP);
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(dispatcher.enqueue(USER, message(i)));
+        }
+        assertEquals(CAPACITY, sessions.getUserClient(USER).getQueueDepth());
+
+        client.release();
+        assertEquals(List.of("started 1", "gap 2", "messages [3, 4, 5]"), client.await(3));
+        assertEquals(2, sessions.getUserClient(USER).getDroppedCount());
+        assertEquals(2, dispatcher.getStats().getDroppedDeliveries());
+    }
+
+    @Test
+    void dropOldestEvictsWithoutTellingTheClient() throws Exception {
+        backUp(OverflowPolicy.DROP_OLDEST);
+        for (int i = 1; i <= 5; i++) {
+            assertTrue(dispatcher.enqueue(USER, message(i)));
+        }
+
+        client.release();
+        assertEquals(List.of("started 1", "messages [3, 4, 5]"), client.await(2));
+        assertNull(client.next(100));
+        assertEquals(2, sessions.getUserClient(USER).getDroppedCount());
+    }
+
+    @Test
+    void disconnectDropsTheClientInsteadOfEvicting() throws Exception {
+        backUp(OverflowPolicy.DISCONNECT);
+        for (int i = 1; i <= CAPACITY; i++) {
+            assertTrue(dispatcher.enqueue(USER, message(i)));
+        }
+
+        assertFalse(dispatcher.enqueue(USER, message(4)));
+        assertEquals(USER, failed.poll(5, TimeUnit.SECONDS));
+        assertFalse(dispatcher.isConnected(USER));
+        assertEquals(1, dispatcher.getStats().getSlowConsumerDisconnects());
+    }
+
+    @Test
+    void otherNotificationsAreNeverEvicted() throws Exception {
+        backUp(OverflowPolicy.DROP_OLDEST);
+        for (int i = 2; i < 2 + CAPACITY; i++) {
+            long chatId = i;
+            assertTrue(dispatcher.enqueue(USER, callback -> callback.chatEnded(chat(chatId))));
+        }
+
+        // Nothing to evict, so the new message is the one dropped
+        assertTrue(dispatcher.enqueue(USER, message(1)));
+        assertEquals(1, sessions.getUserClient(USER).getDroppedCount());
+
+        // and a notification that doesn't fit disconnects the client
+        assertFalse(dispatcher.enqueue(USER, callback -> callback.chatEnded(chat(9))));
+        assertEquals(USER, failed.poll(5, TimeUnit.SECONDS));
+    }
+
+    /**
+     * Register the client and hold its first delivery, so whatever is queued next waits
+     */
+    private void backUp(OverflowPolicy policy) throws InterruptedException {
+        dispatcher.setFailureListener(failed::add);
+        dispatcher.register(USER, client, CAPACITY, policy);
+        assertTrue(dispatcher.enqueue(USER, callback -> callback.chatStarted(chat(1))));
+        client.awaitHolding();
+    }
+
+    private static ClientOutbox.MessageDelivery message(int n) {
+        return new ClientOutbox.MessageDelivery(new ChatMessage(1, n, 2, "bob", String.valueOf(n), 0, null));
+    }
+
+    private static ChatSummary chat(long chatId) {
+        return new ChatSummary(chatId, "chat " + chatId, true, 0, 0, 0, 0);
+    }
+}
@@ -0,0 +1,101 @@
+package com.chatapp.rmi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Two nodes in one JVM, sharing the test database the way a real cluster shares its database
+ */
+class ClusterRelayTest {
+
+    private ServerFixture node1;
+    private ServerFixture node2;
+
+    @BeforeEach
+    void startNodes() throws Exception {
+        String nodes = "1=127.0.0.1:" + freePort() + ",2=127.0.0.1:" + freePort();
+        node1 = new ServerFixture(1, nodes, "test-secret");
+        node2 = new ServerFixture(2, nodes, "test-secret");
+        node1.cluster.start();
+        node2.cluster.start();
+        await(() -> node1.cluster.isConnected(2) && node2.cluster.isConnected(1));
+    }
+
+    @AfterEach
+    void stopNodes() {
+        node1.close();
+        node2.close();
+    }
+
+    @Test
+    void messagesSentOnEitherNodeReachEveryoneInOneOrder() throws Exception {
+        long alice = node1.newUser();
+        long bob = node1.newUser();
+        long chatId = node1.startedChat(alice, bob);
+        ServerFixture owner = node1.cluster.ownsChat(chatId) ? node1 : node2;
+        ServerFixture other = owner == node1 ? node2 : node1;
+
+        RecordingClient aliceClient = join(owner, alice, chatId);
+        RecordingClient bobClient = join(other, bob, chatId);
+
+        // Forwarded to the owner, which numbers and records it
+        other.users.sendMessage(bob, chatId, "from afar");
+        owner.users.sendMessage(alice, chatId, "from home");
+
+        List<String> expected = List.of("from afar", "from home");
+        assertEquals(expected, aliceClient.awaitMessages(2));
+        assertEquals(expected, bobClient.awaitMessages(2));
+
+        List<String> transcript = owner.transcript(chatId);
+        assertEquals(1, transcript.stream().filter(line -> line.endsWith(": from afar")).count(), transcript.toString());
+    }
+
+    @Test
+    void removingAUserDropsTheirClientOnTheNodeItIsOn() throws Exception {
+        long alice = node1.newUser();
+        long bob = node1.newUser();
+        long chatId = node1.startedChat(alice, bob);
+
+        RecordingClient aliceClient = join(node1, alice, chatId);
+        RecordingClient bobClient = join(node2, bob, chatId);
+        // So bob's node doesn't end the chat as he leaves, thinking he was the last one in it
+        await(() -> node2.cluster.isConnectedAnywhere(alice));
+
+        node1.admin.removeUser(bob);
+
+        bobClient.awaitCall("removed");
+        aliceClient.awaitCall("left " + bob);
+        await(() -> !node2.sessions.isUserConnected(bob) && node2.sessions.getJoinedChats(bob).length == 0);
+        assertEquals(0, node1.sessions.getJoinedChats(bob).length);
+    }
+
+    private static RecordingClient join(ServerFixture node, long userId, long chatId) throws Exception {
+        RecordingClient client = new RecordingClient();
+        node.users.registerClient(userId, client);
+        node.users.joinChat(userId, chatId);
+        return client;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+}
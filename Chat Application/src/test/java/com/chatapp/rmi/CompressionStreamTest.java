@@ -0,0 +1,138 @@
+package com.chatapp.rmi;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompressionStreamTest {
+
+    private static final int THRESHOLD = 256;
+
+    @Test
+    void smallWritesGoOutRaw() throws IOException {
+        byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+        byte[] wire = compress(data);
+
+        assertEquals(CompressingOutputStream.RAW, wire[0]);
+        assertArrayEquals(data, decompress(wire));
+    }
+
+    @Test
+    void compressibleDataRoundTripsSmaller() throws IOException {
+        // Spans several blocks
+        byte[] data = repeat("a chat message that repeats ", 5000);
+        byte[] wire = compress(data);
+
+        assertEquals(CompressingOutputStream.DEFLATED, wire[0]);
+        assertTrue(wire.length < data.length / 4, "wire " + wire.length + " of " + data.length);
+        assertArrayEquals(data, decompress(wire));
+    }
+
+    @Test
+    void incompressibleDataFallsBackToRaw() throws IOException {
+        byte[] data = new byte[CompressingOutputStream.BLOCK_SIZE * 2 + 100];
+        new Random(7).nextBytes(data);
+        byte[] wire = compress(data);
+
+        assertEquals(CompressingOutputStream.RAW, wire[0]);
+        assertArrayEquals(data, decompress(wire));
+    }
+
+    @Test
+    void eachFlushEndsABlock() throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        CompressingOutputStream out = new CompressingOutputStream(wire, THRESHOLD, Deflater.DEFAULT_COMPRESSION);
+        out.write(1);
+        out.flush();
+        out.write(new byte[]{2, 3});
+        out.flush();
+        out.flush();   // nothing buffered, nothing written
+
+        assertArrayEquals(new byte[]{0, 1, 1, 0, 2, 2, 3}, wire.toByteArray());
+    }
+
+    @Test
+    void singleByteReadsSeeEverything() throws IOException {
+        byte[] data = repeat("xyz", 2000);
+        InputStream in = new DecompressingInputStream(new ByteArrayInputStream(compress(data)));
+
+        ByteArrayOutputStream read = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) >= 0) {
+            read.write(b);
+        }
+        assertArrayEquals(data, read.toByteArray());
+    }
+
+    @Test
+    void rejectsUnknownBlockType() {
+        IOException e = assertThrows(IOException.class, () -> decompress(new byte[]{7, 1, 0}));
+        assertTrue(e.getMessage().contains("Unknown block type"));
+    }
+
+    @Test
+    void rejectsRawBlockLargerThanABlock() {
+        // Raw length BLOCK_SIZE + 1
+        int length = CompressingOutputStream.BLOCK_SIZE + 1;
+        byte[] wire = {0, (byte) ((length & 0x7F) | 0x80), (byte) (((length >>> 7) & 0x7F) | 0x80),
+                (byte) (length >>> 14)};
+        IOException e = assertThrows(IOException.class, () -> decompress(wire));
+        assertTrue(e.getMessage().startsWith("Bad block length"));
+    }
+
+    @Test
+    void rejectsDeflatedBlockNoSmallerThanItsRawLength() {
+        IOException e = assertThrows(IOException.class, () -> decompress(new byte[]{1, 10, 10}));
+        assertTrue(e.getMessage().startsWith("Bad block length"));
+    }
+
+    @Test
+    void rejectsCorruptDeflatedBlock() throws IOException {
+        byte[] wire = compress(repeat("corrupt me ", 200));
+        assertEquals(CompressingOutputStream.DEFLATED, wire[0]);
+        // Keep the header, scramble the payload
+        for (int i = wire.length / 2; i < wire.length; i++) {
+            wire[i] = (byte) 0xFF;
+        }
+        assertThrows(IOException.class, () -> decompress(wire));
+    }
+
+    @Test
+    void truncatedStreamFails() throws IOException {
+        byte[] wire = compress(repeat("cut short ", 200));
+        assertThrows(EOFException.class, () -> decompress(Arrays.copyOf(wire, wire.length - 5)));
+        assertThrows(EOFException.class, () -> decompress(Arrays.copyOf(wire, 2)));
+    }
+
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream wire = new ByteArrayOutputStream();
+        try (CompressingOutputStream out = new CompressingOutputStream(wire, THRESHOLD, Deflater.DEFAULT_COMPRESSION)) {
+            out.write(data);
+        }
+        return wire.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] wire) throws IOException {
+        try (InputStream in = new DecompressingInputStream(new ByteArrayInputStream(wire))) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] repeat(String text, int times) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            builder.append(text);
+        }
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,170 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.dto.ChatMessage;
+import com.chatapp.model.dto.ChatSummary;
+import com.chatapp.model.dto.PresenceEvent;
+
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A user client that writes down every callback it gets, e.g. "message 3" or
+ * "messages [1, 2]". It can be told to hold its first callback until
+ * released, so deliveries back up behind it.
+ */
+class RecordingClient implements UserClientCallback {
+
+    private final BlockingQueue<String> calls = new LinkedBlockingQueue<>();
+    private final CountDownLatch holding = new CountDownLatch(1);
+    private final CountDownLatch release;
+
+    RecordingClient() {
+        this(false);
+    }
+
+    RecordingClient(boolean holdFirstCall) {
+        this.release = new CountDownLatch(holdFirstCall ? 1 : 0);
+    }
+
+    /**
+     * Wait until the first callback is being held
+     */
+    void awaitHolding() throws InterruptedException {
+        if (!holding.await(5, TimeUnit.SECONDS)) {
+            throw new AssertionError("No callback arrived");
+        }
+    }
+
+    void release() {
+        release.countDown();
+    }
+
+    /**
+     * The next callback, or null if none comes within the timeout
+     */
+    String next(long timeoutMillis) throws InterruptedException {
+        return calls.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+    }
+
+    String next() throws InterruptedException {
+        return next(5_000);
+    }
+
+    /**
+     * Every callback so far, waiting until at least {@code count} have arrived
+     */
+    List<String> await(int count) throws InterruptedException {
+        List<String> received = new ArrayList<>();
+        while (received.size() < count) {
+            String call = next();
+            if (call == null) {
+                throw new AssertionError("Expected " + count + " callbacks but got " + received);
+            }
+            received.add(call);
+        }
+        calls.drainTo(received);
+        return received;
+    }
+
+    /**
+     * The texts of the next {@code count} messages, skipping other callbacks
+     */
+    List<String> awaitMessages(int count) throws InterruptedException {
+        List<String> texts = new ArrayList<>();
+        while (texts.size() < count) {
+            String call = next();
+            if (call == null) {
+                throw new AssertionError("Expected " + count + " messages but got " + texts);
+            } else if (call.startsWith("message ")) {
+                texts.add(call.substring("message ".length()));
+            } else if (call.startsWith("messages [")) {
+                texts.addAll(Arrays.asList(call.substring("messages [".length(), call.length() - 1).split(", ")));
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * Wait for a particular callback, skipping any others
+     */
+    void awaitCall(String expected) throws InterruptedException {
+        List<String> skipped = new ArrayList<>();
+        for (String call = next(); !expected.equals(call); call = next()) {
+            if (call == null) {
+                throw new AssertionError("Expected " + expected + " but got " + skipped);
+            }
+            skipped.add(call);
+        }
+    }
+
+    private void record(String call) throws RemoteException {
+        calls.add(call);
+        holding.countDown();
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RemoteException("Interrupted");
+        }
+    }
+
+    @Override
+    public void receiveMessage(ChatMessage message) throws RemoteException {
+        record("message " + message.getMessage());
+    }
+
+    @Override
+    public void receiveMessages(List<ChatMessage> messages) throws RemoteException {
+        List<String> texts = new ArrayList<>();
+        for (ChatMessage message : messages) {
+            texts.add(message.getMessage());
+        }
+        record("messages " + texts);
+    }
+
+    @Override
+    public void userJoined(PresenceEvent event) throws RemoteException {
+        record("joined " + event.getUserId());
+    }
+
+    @Override
+    public void userLeft(PresenceEvent event) throws RemoteException {
+        record("left " + event.getUserId());
+    }
+
+    @Override
+    public void subscriptionChanged(boolean subscribed, long chatId) throws RemoteException {
+        record((subscribed ? "subscribed " : "unsubscribed ") + chatId);
+    }
+
+    @Override
+    public void chatStarted(ChatSummary chat) throws RemoteException {
+        record("started " + chat.getId());
+    }
+
+    @Override
+    public void chatEnded(ChatSummary chat) throws RemoteException {
+        record("ended " + chat.getId());
+    }
+
+    @Override
+    public void deliveryGap(int droppedCount) throws RemoteException {
+        record("gap " + droppedCount);
+    }
+
+    @Override
+    public void userRemoved() throws RemoteException {
+        record("removed");
+    }
+
+    @Override
+    public void serverShuttingDown() throws RemoteException {
+        record("shutdown");
+    }
+}
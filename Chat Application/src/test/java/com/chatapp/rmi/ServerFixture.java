@@ -0,0 +1,81 @@
+package com.chatapp.rmi;
+
+import com.chatapp.model.entity.Chat;
+import com.chatapp.service.AdminChatService;
+import com.chatapp.service.UserProfileService;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The user and admin services wired together the way RMIServer does it, on
+ * the in-memory test database, without exporting anything
+ */
+class ServerFixture implements AutoCloseable {
+
+    private static final AtomicInteger names = new AtomicInteger();
+
+    final SessionRegistry sessions = new SessionRegistry(new UserProfileService());
+    final CallbackDispatcher dispatcher = new CallbackDispatcher(sessions);
+    final ChatActors chatActors = new ChatActors();
+    final RateLimiter rateLimiter = new RateLimiter();
+    final ClusterRelay cluster;
+    final UserRemoteImpl users;
+    final AdminRemoteImpl admin;
+
+    ServerFixture() throws Exception {
+        this(0, "", "");
+    }
+
+    /**
+     * One node of a cluster, listening once {@link ClusterRelay#start()} is called
+     */
+    ServerFixture(int nodeId, String nodes, String secret) throws Exception {
+        cluster = new ClusterRelay(sessions, dispatcher, chatActors, nodeId, nodes, "", secret);
+        users = new UserRemoteImpl(sessions, dispatcher, chatActors, rateLimiter, cluster);
+        admin = new AdminRemoteImpl(sessions, dispatcher, chatActors, rateLimiter, cluster, users);
+        // The first user registered becomes the admin, so get that out of the way
+        newUser();
+    }
+
+    /**
+     * Register a user with a unique name and log them in; returns the user id
+     */
+    long newUser() throws Exception {
+        String name = "user" + names.incrementAndGet() + "_" + System.nanoTime();
+        long userId = users.registerUser(name + "@example.com", name, "secret", name, null);
+        users.login(name, "secret");
+        return userId;
+    }
+
+    /**
+     * Create a chat, subscribe the given users and start it; returns the chat id
+     */
+    long startedChat(long... subscribers) throws Exception {
+        long chatId = admin.createChat("chat" + names.incrementAndGet());
+        for (long userId : subscribers) {
+            users.subscribeToChat(userId, chatId);
+        }
+        admin.startChat(chatId);
+        return chatId;
+    }
+
+    /**
+     * Every line of a chat's transcript
+     */
+    List<String> transcript(long chatId) throws Exception {
+        Chat chat = new AdminChatService().getChatById(chatId).orElseThrow();
+        Path path = Paths.get(chat.getFilePath());
+        return Files.readAllLines(path);
+    }
+
+    @Override
+    public void close() {
+        cluster.close();
+        chatActors.shutdown();
+        dispatcher.shutdown();
+    }
+}
@@ -0,0 +1,107 @@
+package com.chatapp.rmi;
+
+import com.chatapp.service.UserProfileService;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SessionRegistryTest {
+
+    private final SessionRegistry sessions = new SessionRegistry(new UserProfileService());
+
+    @Test
+    void tracksMembershipFromBothSides() {
+        assertTrue(sessions.joinChat(10, 1));
+        assertTrue(sessions.joinChat(10, 2));
+        assertTrue(sessions.joinChat(11, 1));
+        assertFalse(sessions.joinChat(10, 1));
+
+        assertArrayEquals(new long[]{1, 2}, sessions.getParticipants(10));
+        assertArrayEquals(new long[]{10, 11}, sessions.getJoinedChats(1));
+        assertTrue(sessions.isParticipant(11, 1));
+        assertEquals(2, sessions.getOccupiedChatCount());
+
+        assertTrue(sessions.leaveChat(10, 1));
+        assertFalse(sessions.leaveChat(10, 1));
+        assertFalse(sessions.leaveChat(12, 1));
+        assertArrayEquals(new long[]{2}, sessions.getParticipants(10));
+        assertArrayEquals(new long[]{11}, sessions.getJoinedChats(1));
+
+        assertTrue(sessions.leaveChat(11, 1));
+        assertEquals(0, sessions.getJoinedChats(1).length);
+        assertEquals(1, sessions.getOccupiedChatCount());
+    }
+
+    @Test
+    void snapshotsDontChangeUnderneathTheirReaders() {
+        sessions.joinChat(10, 1);
+        sessions.joinChat(10, 2);
+        long[] snapshot = sessions.getParticipants(10);
+
+        sessions.joinChat(10, 3);
+        sessions.leaveChat(10, 1);
+
+        assertArrayEquals(new long[]{1, 2}, snapshot);
+        assertArrayEquals(new long[]{2, 3}, sessions.getParticipants(10));
+    }
+
+    @Test
+    void clearingAChatTakesItOffEveryoneInIt() {
+        sessions.joinChat(10, 1);
+        sessions.joinChat(10, 2);
+        sessions.joinChat(11, 2);
+
+        long[] cleared = sessions.clearChat(10);
+        Arrays.sort(cleared);
+
+        assertArrayEquals(new long[]{1, 2}, cleared);
+        assertEquals(0, sessions.getParticipants(10).length);
+        assertEquals(0, sessions.getJoinedChats(1).length);
+        assertArrayEquals(new long[]{11}, sessions.getJoinedChats(2));
+        assertEquals(0, sessions.clearChat(10).length);
+    }
+
+    @Test
+    void concurrentJoinsAndLeavesLoseNothing() throws InterruptedException {
+        int threads = 8;
+        int usersEach = 500;
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            long firstUser = (long) t * usersEach;
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (long userId = firstUser; userId < firstUser + usersEach; userId++) {
+                    sessions.joinChat(10, userId);
+                    sessions.joinChat(11, userId);
+                    // Leave every other chat again, so joins and leaves interleave
+                    if (userId % 2 == 0) {
+                        sessions.leaveChat(11, userId);
+                    }
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        assertEquals(threads * usersEach, sessions.getParticipantCount(10));
+        assertEquals(threads * usersEach / 2, sessions.getParticipantCount(11));
+        for (long userId = 0; userId < threads * usersEach; userId++) {
+            assertEquals(userId % 2 == 0 ? 1 : 2, sessions.getJoinedChats(userId).length, "user " + userId);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.chatapp.rmi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+
+    @Test
+    void allowsAFullBurstThenThrottles() {
+        // One token every 100 ms
+        TokenBucket bucket = new TokenBucket(10, 5);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, bucket.tryAcquire(), "token " + i);
+        }
+
+        long wait = bucket.tryAcquire();
+        assertTrue(wait > 0 && wait <= TimeUnit.MILLISECONDS.toNanos(100), "wait " + wait);
+        assertEquals(1, bucket.getThrottledCount());
+    }
+
+    @Test
+    void refillsOverTime() throws InterruptedException {
+        // One token every 20 ms
+        TokenBucket bucket = new TokenBucket(50, 2);
+        assertEquals(0, bucket.tryAcquire());
+        assertEquals(0, bucket.tryAcquire());
+
+        long wait = bucket.tryAcquire();
+        assertTrue(wait > 0);
+        TimeUnit.NANOSECONDS.sleep(wait + TimeUnit.MILLISECONDS.toNanos(2));
+        assertEquals(0, bucket.tryAcquire());
+    }
+
+    @Test
+    void idleTimeRefillsNoMoreThanTheBurst() throws InterruptedException {
+        // One token every 10 ms; idle long enough for 10
+        TokenBucket bucket = new TokenBucket(100, 3);
+        Thread.sleep(100);
+
+        int granted = 0;
+        while (bucket.tryAcquire() == 0) {
+            granted++;
+        }
+        // A token may refill while the loop runs
+        assertTrue(granted == 3 || granted == 4, "granted " + granted);
+    }
+
+    @Test
+    void concurrentTakersNeverExceedTheBurst() throws InterruptedException {
+        // Effectively no refill during the test, so only the burst is handed out
+        TokenBucket bucket = new TokenBucket(0.01, 1000);
+        AtomicInteger granted = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 500; i++) {
+                    if (bucket.tryAcquire() == 0) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(1000, granted.get());
+        assertEquals(3000, bucket.getThrottledCount());
+    }
+}
@@ -0,0 +1,111 @@
+package com.chatapp.rmi;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.rmi.RemoteException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserRemoteImplTest {
+
+    private ServerFixture server;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        server = new ServerFixture();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.close();
+    }
+
+    @Test
+    void profilePictureIsNullOnlyForAUserWithoutOne() throws Exception {
+        byte[] picture = {1, 2, 3, 4};
+        String name = "pictured_" + System.nanoTime();
+        long pictured = server.users.registerUser(name + "@example.com", name, "secret", name, picture);
+        long plain = server.newUser();
+
+        assertArrayEquals(picture, server.users.getUserProfilePicture(pictured));
+        assertNull(server.users.getUserProfilePicture(plain));
+        RemoteException e = assertThrows(RemoteException.class, () -> server.users.getUserProfilePicture(-1));
+        assertEquals("Invalid user ID", e.getMessage());
+    }
+
+    @Test
+    void messagesReachEveryParticipantInTranscriptOrder() throws Exception {
+        long alice = server.newUser();
+        long bob = server.newUser();
+        long chatId = server.startedChat(alice, bob);
+        RecordingClient aliceClient = join(alice, chatId);
+        RecordingClient bobClient = join(bob, chatId);
+
+        server.users.sendMessage(alice, chatId, "one");
+        server.users.sendMessage(bob, chatId, "two");
+        server.users.sendMessage(alice, chatId, "three");
+
+        List<String> expected = List.of("one", "two", "three");
+        assertEquals(expected, aliceClient.awaitMessages(3));
+        assertEquals(expected, bobClient.awaitMessages(3));
+
+        String transcript = String.join("\n", server.transcript(chatId));
+        assertTrue(transcript.indexOf(": one") < transcript.indexOf(": two")
+                && transcript.indexOf(": two") < transcript.indexOf(": three"), transcript);
+    }
+
+    @Test
+    void onlySubscribersOfAnActiveChatCanSend() throws Exception {
+        long alice = server.newUser();
+        long outsider = server.newUser();
+        long chatId = server.startedChat(alice);
+
+        RemoteException notSubscribed = assertThrows(RemoteException.class,
+                () -> server.users.sendMessage(outsider, chatId, "hi"));
+        assertEquals("You are not subscribed to this chat", notSubscribed.getMessage());
+
+        RemoteException unknownUser = assertThrows(RemoteException.class,
+                () -> server.users.sendMessage(-1, chatId, "hi"));
+        assertEquals("Invalid user ID or chat is not active", unknownUser.getMessage());
+    }
+
+    @Test
+    void resumeReplaysWhatTheClientMissed() throws Exception {
+        long alice = server.newUser();
+        long bob = server.newUser();
+        long chatId = server.startedChat(alice, bob);
+        join(alice, chatId);
+        join(bob, chatId);
+
+        server.users.sendMessage(alice, chatId, "one");
+        server.users.sendMessage(alice, chatId, "two");
+        server.users.sendMessage(alice, chatId, "three");
+
+        // Bob comes back with a new client, having seen only the first message
+        RecordingClient returning = new RecordingClient();
+        server.users.registerClient(bob, returning);
+        assertEquals(2, server.users.resume(bob, chatId, 1));
+        assertEquals(List.of("two", "three"), returning.awaitMessages(2));
+
+        assertEquals(0, server.users.resume(bob, chatId, 3));
+    }
+
+    @Test
+    void resumeNeedsARegisteredClient() throws Exception {
+        long alice = server.newUser();
+        long chatId = server.startedChat(alice);
+
+        RemoteException e = assertThrows(RemoteException.class, () -> server.users.resume(alice, chatId, 0));
+        assertEquals("Register the client before resuming", e.getMessage());
+    }
+
+    private RecordingClient join(long userId, long chatId) throws Exception {
+        RecordingClient client = new RecordingClient();
+        server.users.registerClient(userId, client);
+        server.users.joinChat(userId, chatId);
+        return client;
+    }
+}
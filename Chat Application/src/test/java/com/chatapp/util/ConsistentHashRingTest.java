@@ -0,0 +1,85 @@
+package com.chatapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 100_000;
+
+    @Test
+    void addingANodeOnlyMovesKeysToIt() {
+        ConsistentHashRing before = new ConsistentHashRing(new int[]{1, 2, 3, 4});
+        ConsistentHashRing after = before.withNode(5);
+
+        int moved = 0;
+        for (long key = 0; key < KEYS; key++) {
+            int owner = after.ownerOf(key);
+            if (owner != before.ownerOf(key)) {
+                assertEquals(5, owner, "key " + key + " moved between old nodes");
+                moved++;
+            }
+        }
+        // About a fifth of the keys should now belong to the new node
+        assertTrue(moved > KEYS * 0.15 && moved < KEYS * 0.25, "moved " + moved);
+    }
+
+    @Test
+    void removingANodeOnlyMovesItsKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(new int[]{1, 2, 3, 4, 5});
+        ConsistentHashRing after = before.withoutNode(3);
+
+        for (long key = 0; key < KEYS; key++) {
+            int owner = before.ownerOf(key);
+            if (owner != 3) {
+                assertEquals(owner, after.ownerOf(key), "key " + key);
+            } else {
+                assertNotEquals(3, after.ownerOf(key));
+            }
+        }
+    }
+
+    @Test
+    void spreadsKeysEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(new int[]{10, 20, 30, 40});
+        Map<Integer, Integer> load = new HashMap<>();
+        for (long key = 0; key < KEYS; key++) {
+            load.merge(ring.ownerOf(key), 1, Integer::sum);
+        }
+
+        assertEquals(4, load.size());
+        for (int count : load.values()) {
+            assertTrue(count > KEYS / 4 * 0.75 && count < KEYS / 4 * 1.25, "load " + load);
+        }
+    }
+
+    @Test
+    void placementDependsOnlyOnTheNodeSet() {
+        ConsistentHashRing a = new ConsistentHashRing(new int[]{3, 1, 2, 2});
+        ConsistentHashRing b = new ConsistentHashRing(new int[]{1, 2}).withNode(3);
+
+        assertArrayEquals(new int[]{1, 2, 3}, a.getNodes());
+        for (long key = 0; key < 1000; key++) {
+            assertEquals(a.ownerOf(key), b.ownerOf(key));
+            assertEquals(a.ownerOf("user" + key), b.ownerOf("user" + key));
+        }
+    }
+
+    @Test
+    void addingOrRemovingTwiceIsANoOp() {
+        ConsistentHashRing ring = new ConsistentHashRing(new int[]{1, 2});
+        assertSame(ring, ring.withNode(2));
+        assertSame(ring, ring.withoutNode(7));
+    }
+
+    @Test
+    void emptyRingHasNoOwner() {
+        ConsistentHashRing ring = new ConsistentHashRing(new int[]{1}).withoutNode(1);
+        assertTrue(ring.isEmpty());
+        assertThrows(IllegalStateException.class, () -> ring.ownerOf(42L));
+    }
+}
@@ -0,0 +1,80 @@
+package com.chatapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void smallValuesAreExact() {
+        for (long micros = 0; micros < 8; micros++) {
+            assertEquals(micros, upperBoundOf(micros));
+        }
+    }
+
+    @Test
+    void bucketsAreWithinAQuarterOfTheirValues() {
+        for (long micros = 8; micros < 1L << 40; micros = micros * 3 / 2 + 1) {
+            long bound = upperBoundOf(micros);
+            assertTrue(bound >= micros, micros + " -> " + bound);
+            assertTrue(bound - micros <= micros / 4, micros + " -> " + bound);
+        }
+    }
+
+    @Test
+    void bucketsMeetWithoutGapsOrOverlap() {
+        // Each bound is the last value of its bucket; the next value starts a new one
+        for (long micros = 0; micros < 100_000; micros++) {
+            long bound = upperBoundOf(micros);
+            assertEquals(bound, upperBoundOf(bound));
+            assertTrue(upperBoundOf(bound + 1) > bound);
+            micros = bound;
+        }
+    }
+
+    @Test
+    void largestValuesFit() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+
+        assertEquals(2, histogram.getCalls());
+        assertEquals(0, histogram.getPercentileMicros(50));
+        assertEquals(Long.MAX_VALUE, histogram.getPercentileMicros(100));
+    }
+
+    @Test
+    void percentilesNeverExceedTheMax() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.getPercentileMicros(99));
+
+        for (long micros = 1; micros <= 100; micros++) {
+            histogram.record(micros);
+        }
+
+        long median = histogram.getPercentileMicros(50);
+        assertTrue(median >= 50 && median <= 55, "median " + median);
+        assertEquals(100, histogram.getPercentileMicros(99.9));
+        assertEquals(100, histogram.getMaxMicros());
+        assertEquals(5050, histogram.getTotalMicros());
+    }
+
+    @Test
+    void errorsCountAsCalls() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordSince(System.nanoTime());
+        histogram.recordErrorSince(System.nanoTime());
+
+        assertEquals(2, histogram.getCalls());
+        assertEquals(1, histogram.getErrors());
+    }
+
+    // Upper bound of the bucket a value lands in, read back through the median
+    private static long upperBoundOf(long micros) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(micros);
+        histogram.record(Long.MAX_VALUE);
+        return histogram.getPercentileMicros(50);
+    }
+}
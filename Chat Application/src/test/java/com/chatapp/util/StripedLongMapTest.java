@@ -0,0 +1,93 @@
+package com.chatapp.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedLongMapTest {
+
+    @Test
+    void putGetAndRemove() {
+        StripedLongMap<String> map = new StripedLongMap<>();
+
+        assertNull(map.put(1, "a"));
+        assertEquals("a", map.put(1, "b"));
+        assertEquals("b", map.putIfAbsent(1, "c"));
+        assertNull(map.putIfAbsent(2, "c"));
+
+        assertEquals("b", map.get(1));
+        assertEquals(2, map.size());
+        assertFalse(map.remove(1, "other"));
+        assertTrue(map.remove(1, "b"));
+        assertEquals("c", map.remove(2));
+        assertTrue(map.isEmpty());
+    }
+
+    @Test
+    void computeReturningNullRemoves() {
+        StripedLongMap<Integer> map = new StripedLongMap<>();
+
+        assertEquals(1, map.compute(7, (key, current) -> current == null ? 1 : current + 1));
+        assertEquals(2, map.compute(7, (key, current) -> current == null ? 1 : current + 1));
+        assertNull(map.compute(7, (key, current) -> null));
+        assertFalse(map.containsKey(7));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void rejectsNullValues() {
+        StripedLongMap<String> map = new StripedLongMap<>();
+        assertThrows(NullPointerException.class, () -> map.put(1, null));
+    }
+
+    @Test
+    void deletionKeepsCollidingKeysReachable() {
+        // One stripe, so every key shares a table and probe chains wrap and overlap
+        StripedLongMap<Long> map = new StripedLongMap<>(1);
+        for (long key = 0; key < 200; key++) {
+            map.put(key, key);
+        }
+
+        // Remove every third key, each deletion shifting the chain behind it back
+        for (long key = 0; key < 200; key += 3) {
+            assertEquals(key, map.remove(key));
+        }
+
+        for (long key = 0; key < 200; key++) {
+            if (key % 3 == 0) {
+                assertNull(map.get(key), "removed key " + key);
+            } else {
+                assertEquals(key, map.get(key), "kept key " + key);
+            }
+        }
+        assertEquals(133, map.size());
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        StripedLongMap<Long> map = new StripedLongMap<>(2);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 50_000; i++) {
+            long key = random.nextInt(500);
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long key = 0; key < 500; key++) {
+            assertEquals(expected.get(key), map.get(key));
+        }
+        Map<Long, Long> visited = new HashMap<>();
+        map.forEach(visited::put);
+        assertEquals(expected, visited);
+    }
+}